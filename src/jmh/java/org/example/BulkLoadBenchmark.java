@@ -0,0 +1,75 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// ===================== BulkLoadBenchmark CLASS =====================
+// Loading a parsed batch into an agent: repeated addProperty against bulkLoad, on the
+// default skip-list store and on a TreeSet store. Fresh instances per iteration, so
+// every total price is computed inside the measurement.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Dfile.encoding=UTF-8"})
+@State(Scope.Benchmark)
+public class BulkLoadBenchmark {
+    private List<RealEstate> properties;
+
+    @Setup(Level.Iteration)
+    public void copy(ListingData data) {
+        properties = Arrays.asList(data.freshCopies());
+    }
+
+    @Benchmark
+    public RealEstateAgent addProperty() {
+        RealEstateAgent agent = new RealEstateAgent();
+        for (RealEstate property : properties) {
+            agent.addProperty(property);
+        }
+        return agent;
+    }
+
+    @Benchmark
+    public RealEstateAgent bulkLoad() {
+        RealEstateAgent agent = new RealEstateAgent();
+        agent.bulkLoad(properties);
+        return agent;
+    }
+
+    @Benchmark
+    public RealEstateAgent addPropertyTreeSet() {
+        RealEstateAgent agent = new RealEstateAgent(() -> new SortedSetPropertyStore(new TreeSet<>()));
+        for (RealEstate property : properties) {
+            agent.addProperty(property);
+        }
+        return agent;
+    }
+
+    @Benchmark
+    public RealEstateAgent bulkLoadTreeSet() {
+        RealEstateAgent agent = new RealEstateAgent(() -> new SortedSetPropertyStore(new TreeSet<>()));
+        agent.bulkLoad(properties);
+        return agent;
+    }
+
+    // The sort and dedup alone, without building a store
+    @Benchmark
+    public RealEstate[] sortUnique() {
+        return ListingSorter.sortUnique(properties);
+    }
+}
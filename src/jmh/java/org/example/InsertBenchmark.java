@@ -0,0 +1,62 @@
+package org.example;
+
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// ===================== InsertBenchmark CLASS =====================
+// Bulk insert of parsed listings in file order. Each iteration gets fresh instances,
+// so the first getTotalPrice() per listing is part of the measurement.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Dfile.encoding=UTF-8"})
+@State(Scope.Benchmark)
+public class InsertBenchmark {
+    private RealEstate[] properties;
+
+    @Setup(Level.Iteration)
+    public void copy(ListingData data) {
+        properties = data.freshCopies();
+    }
+
+    @Benchmark
+    public TreeSet<RealEstate> treeSet() {
+        TreeSet<RealEstate> set = new TreeSet<>();
+        for (RealEstate property : properties) {
+            set.add(property);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public PropertyStore defaultStore() {
+        PropertyStore store = new SortedSetPropertyStore(new ConcurrentSkipListSet<>());
+        for (RealEstate property : properties) {
+            store.add(property);
+        }
+        return store;
+    }
+
+    @Benchmark
+    public PropertyStore columnarStore() {
+        PropertyStore store = new ColumnarPropertyStore(properties.length);
+        for (RealEstate property : properties) {
+            store.add(property);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,51 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// ===================== ListingData CLASS =====================
+// Shared benchmark input: the same seeded lines as text, as a file on disk and as
+// parsed listings. Pick sizes with -p rows=10000,1000000; 10M rows needs about 4 GB of heap.
+@State(Scope.Benchmark)
+public class ListingData {
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    List<String> lines;
+    Path file;
+    RealEstate[] properties;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        lines = SyntheticListings.lines(SyntheticListings.DEFAULT_SEED, rows);
+        file = Files.createTempFile("listings-" + rows + "-", ".txt");
+        SyntheticListings.write(file, SyntheticListings.DEFAULT_SEED, rows);
+        properties = new RealEstate[rows];
+        for (int i = 0; i < rows; i++) {
+            properties[i] = RealEstateAgent.parsePropertyLine(lines.get(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    // Fresh instances with no cached total price, so every measured insert computes it
+    RealEstate[] freshCopies() {
+        RealEstate[] copies = new RealEstate[properties.length];
+        for (int i = 0; i < copies.length; i++) {
+            copies[i] = RealEstateAgent.parsePropertyLine(lines.get(i));
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,35 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// ===================== ParseBenchmark CLASS =====================
+// Line parsing: String-based parsePropertyLine versus the memory-mapped chunked loader
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Dfile.encoding=UTF-8"})
+public class ParseBenchmark {
+
+    @Benchmark
+    public void parsePropertyLine(ListingData data, Blackhole blackhole) {
+        for (String line : data.lines) {
+            blackhole.consume(RealEstateAgent.parsePropertyLine(line));
+        }
+    }
+
+    @Benchmark
+    public ChunkedListingLoader.Result chunkedLoader(ListingData data) throws IOException {
+        return new ChunkedListingLoader().load(data.file);
+    }
+}
@@ -0,0 +1,147 @@
+package org.example;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ===================== QueryServiceLoadTest CLASS =====================
+// Load test of ListingQueryService over loopback: reader threads alternate GET /report
+// and GET /listings for a rotating city while writer threads POST one new listing per
+// request, which moves the collection version on and invalidates the response cache.
+// Prints requests per second and p50/p99 latency per request kind.
+//
+//   java -cp target/benchmarks.jar org.example.QueryServiceLoadTest [rows] [readers] [writers] [seconds]
+public class QueryServiceLoadTest {
+    private static final String[] CITIES = {"Budapest", "Debrecen", "Szeged", "Miskolc", "Pécs", "Győr"};
+
+    // Latencies of one request kind, in nanoseconds
+    private static final class Samples {
+        long[] values = new long[1 << 16];
+        int size;
+        long errors;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+            errors += other.errors;
+        }
+
+        long percentile(double p) {
+            if (size == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.min(size - 1, Math.ceil(p * size) - 1)];
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int writers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        RealEstateAgent agent = new RealEstateAgent();
+        List<RealEstate> listings = new ArrayList<>(rows);
+        for (String line : SyntheticListings.lines(SyntheticListings.DEFAULT_SEED, rows)) {
+            listings.add(RealEstateAgent.parsePropertyLine(line));
+        }
+        agent.bulkLoad(listings);
+        // Lines the writers add; another seed, so most of them are new listings
+        List<String> additions = SyntheticListings.lines(SyntheticListings.DEFAULT_SEED + 1, 200_000);
+
+        try (ListingQueryService service = agent.serve(0)) {
+            String base = "http://localhost:" + service.getPort();
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            long warmupEnd = System.nanoTime() + 3_000_000_000L;
+            long end = warmupEnd + seconds * 1_000_000_000L;
+            AtomicLong nextAddition = new AtomicLong();
+
+            List<Samples[]> perThread = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+            CountDownLatch start = new CountDownLatch(1);
+            for (int t = 0; t < readers + writers; t++) {
+                boolean writer = t >= readers;
+                int id = t;
+                Samples[] samples = {new Samples(), new Samples(), new Samples()};  // report, listings, add
+                perThread.add(samples);
+                threads.add(new Thread(() -> {
+                    try {
+                        start.await();
+                        long n = id;
+                        long now;
+                        while ((now = System.nanoTime()) < end) {
+                            int kind;
+                            HttpRequest request;
+                            if (writer) {
+                                kind = 2;
+                                String line = additions.get((int) (nextAddition.getAndIncrement() % additions.size()));
+                                request = HttpRequest.newBuilder(URI.create(base + "/listings"))
+                                        .POST(HttpRequest.BodyPublishers.ofString(line)).build();
+                            } else if (n++ % 2 == 0) {
+                                kind = 0;
+                                request = HttpRequest.newBuilder(URI.create(base + "/report")).build();
+                            } else {
+                                kind = 1;
+                                String city = CITIES[(int) (n % CITIES.length)];
+                                request = HttpRequest.newBuilder(URI.create(base + "/listings?limit=20&city="
+                                        + URLEncoder.encode(city, StandardCharsets.UTF_8))).build();
+                            }
+                            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                            long latency = System.nanoTime() - now;
+                            if (now >= warmupEnd) {
+                                if (response.statusCode() == 200) {
+                                    samples[kind].add(latency);
+                                } else {
+                                    samples[kind].errors++;
+                                }
+                            }
+                        }
+                    } catch (Exception e) {
+                        System.err.println("Load thread failed: " + e);
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            String[] names = {"GET /report", "GET /listings", "POST /listings"};
+            System.out.printf("%d listings, %d readers, %d writers, %d s measured (after 3 s warm-up)%n",
+                    rows, readers, writers, seconds);
+            long total = 0;
+            for (int kind = 0; kind < names.length; kind++) {
+                Samples merged = new Samples();
+                for (Samples[] samples : perThread) {
+                    merged.addAll(samples[kind]);
+                }
+                total += merged.size;
+                System.out.printf("%-15s %9.0f req/s   p50 %7.2f ms   p99 %7.2f ms   errors %d%n", names[kind],
+                        merged.size / (double) seconds, merged.percentile(0.50) / 1e6,
+                        merged.percentile(0.99) / 1e6, merged.errors);
+            }
+            System.out.printf("%-15s %9.0f req/s   cache hits %d, misses %d, final size %d%n", "all",
+                    total / (double) seconds, service.getCacheHits(), service.getCacheMisses(),
+                    agent.getCollectionSize());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// ===================== ReportBenchmark CLASS =====================
+// Full report generation, including formatting and writing the file. Console output
+// goes to a null stream so terminal speed is not measured.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Dfile.encoding=UTF-8"})
+@State(Scope.Benchmark)
+public class ReportBenchmark {
+    private RealEstateAgent agent;
+    private File output;
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void load(ListingData data) throws IOException {
+        agent = new RealEstateAgent();
+        for (RealEstate property : data.properties) {
+            agent.addProperty(property);
+        }
+        output = File.createTempFile("report", ".txt");
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void restore() {
+        System.setOut(console);
+        output.delete();
+    }
+
+    // Running aggregates plus index lookups
+    @Benchmark
+    public void incrementalReport() {
+        agent.generateAnalysisReport(output.getPath());
+    }
+
+    // Full recompute from a snapshot
+    @Benchmark
+    public void aggregatedReport() {
+        agent.generateAnalysisReport(output.getPath(), new ReportAggregator());
+    }
+
+    @Benchmark
+    public void parallelAggregatedReport() {
+        agent.generateAnalysisReport(output.getPath(), ReportAggregator.parallel());
+    }
+}
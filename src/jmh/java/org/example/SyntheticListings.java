@@ -0,0 +1,126 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+// ===================== SyntheticListings CLASS =====================
+// Seeded generator of listing lines in the input file format. The same seed and row
+// count always give the same lines. Cities are weighted towards Budapest, price per
+// sqm and area depend on city and genre, and about a third of condominiums are panels.
+//
+//   java -cp target/benchmarks.jar org.example.SyntheticListings <rows> <file> [seed]
+class SyntheticListings {
+    static final long DEFAULT_SEED = 20240101L;
+
+    // City, relative weight, typical price per sqm
+    private static final String[] CITIES = {
+            "Budapest", "Debrecen", "Szeged", "Miskolc", "Pécs", "Győr", "Nyíregyháza",
+            "Kecskemét", "Székesfehérvár", "Kisvárda", "Tiszaújváros", "Eger"};
+    private static final int[] CITY_WEIGHTS = {30, 8, 7, 6, 6, 6, 5, 5, 5, 2, 2, 4};
+    private static final int[] CITY_SQM_PRICE = {
+            260000, 190000, 185000, 140000, 160000, 200000, 150000,
+            165000, 170000, 110000, 105000, 175000};
+
+    private final SplittableRandom random;
+    private final int totalWeight;
+
+    SyntheticListings(long seed) {
+        this.random = new SplittableRandom(seed);
+        int sum = 0;
+        for (int weight : CITY_WEIGHTS) {
+            sum += weight;
+        }
+        this.totalWeight = sum;
+    }
+
+    static List<String> lines(long seed, int rows) {
+        SyntheticListings generator = new SyntheticListings(seed);
+        List<String> lines = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            lines.add(generator.nextLine());
+        }
+        return lines;
+    }
+
+    // Written in the platform charset, which is what the loaders read with; accented
+    // cities the charset cannot encode are replaced rather than failing the write
+    static void write(Path file, long seed, int rows) throws IOException {
+        SyntheticListings generator = new SyntheticListings(seed);
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(Files.newOutputStream(file), Charset.defaultCharset()))) {
+            for (int i = 0; i < rows; i++) {
+                writer.write(generator.nextLine());
+                writer.newLine();
+            }
+        }
+    }
+
+    String nextLine() {
+        int city = pickCity();
+        int roll = random.nextInt(100);
+        Genre genre = roll < 60 ? Genre.CONDOMINIUM : roll < 92 ? Genre.FAMILYHOUSE : Genre.FARM;
+
+        int sqm;
+        switch (genre) {
+            case CONDOMINIUM:
+                sqm = 25 + random.nextInt(96);
+                break;
+            case FAMILYHOUSE:
+                sqm = 60 + random.nextInt(191);
+                break;
+            default:
+                sqm = 80 + random.nextInt(321);
+                break;
+        }
+        int rooms = Math.max(1, Math.min(8, sqm / 25 + random.nextInt(2)));
+        // +-30% around the city's typical price, in whole units; coarser rounding would make
+        // many listings equal per compareTo and collapse large datasets on insert
+        long price = Math.round(CITY_SQM_PRICE[city] * (0.7 + random.nextDouble() * 0.6));
+
+        StringBuilder line = new StringBuilder(64);
+        boolean panel = genre == Genre.CONDOMINIUM && random.nextInt(3) == 0;
+        line.append(panel ? "PANEL" : "REALESTATE").append('#')
+                .append(CITIES[city]).append('#')
+                .append(price).append('#')
+                .append(sqm).append('#')
+                .append(rooms).append('#')
+                .append(genre.name());
+        if (panel) {
+            line.append('#').append(random.nextInt(16))
+                    .append('#').append(random.nextInt(10) < 4 ? "yes" : "no");
+        }
+        return line.toString();
+    }
+
+    private int pickCity() {
+        int pick = random.nextInt(totalWeight);
+        for (int i = 0; i < CITY_WEIGHTS.length; i++) {
+            pick -= CITY_WEIGHTS[i];
+            if (pick < 0) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SyntheticListings <rows> <file> [seed]");
+            System.exit(1);
+        }
+        int rows = Integer.parseInt(args[0]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+        Path file = Paths.get(args[1]);
+        write(file, seed, rows);
+        System.out.println(String.format(Locale.ROOT, "Wrote %d listings to %s (seed %d)", rows, file, seed));
+    }
+}
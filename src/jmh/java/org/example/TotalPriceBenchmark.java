@@ -0,0 +1,40 @@
+package org.example;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// ===================== TotalPriceBenchmark CLASS =====================
+// Total price over every listing: the uncached computation (pricing-table lookup plus
+// Panel modifiers) and the cached read that compareTo and the report normally hit
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Dfile.encoding=UTF-8"})
+public class TotalPriceBenchmark {
+
+    @Benchmark
+    public long computeTotalPrice(ListingData data) {
+        long sum = 0;
+        for (RealEstate property : data.properties) {
+            sum += property.computeTotalPrice();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long cachedTotalPrice(ListingData data) {
+        long sum = 0;
+        for (RealEstate property : data.properties) {
+            sum += property.getTotalPrice();
+        }
+        return sum;
+    }
+}
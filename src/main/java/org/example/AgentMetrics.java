@@ -0,0 +1,338 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// ===================== AgentMetrics CLASS =====================
+// Counters and timers for one RealEstateAgent: lines read, listings parsed by class,
+// problem lines by reason, parse time, and per-section report timings. Counters are
+// LongAdders so parallel loaders can bump them without contention. The same numbers
+// are available over JMX (RealEstateAgent.registerMetrics) and as JFR events.
+//
+// Problem lines are no longer printed one by one: each reason logs a burst of
+// LOG_BURST messages per LOG_WINDOW_NANOS and counts the rest, which are summarised
+// in the next message of that reason or at the end of the load.
+class AgentMetrics implements AgentMetricsMXBean {
+    static final int LOG_BURST = 10;
+    static final long LOG_WINDOW_NANOS = 1_000_000_000L;
+
+    // Why a line was rejected; BAD_GENRE lines are still loaded, as CONDOMINIUM
+    enum RejectReason {
+        NOT_ENOUGH_PARTS,
+        BAD_NUMBER,
+        BAD_GENRE,
+        MISSING_PANEL_FIELDS,
+        OTHER
+    }
+
+    enum ReportSection {
+        AGGREGATE,   // computing the metrics
+        SUMMARY,     // items 1-4
+        CONDO_LIST,  // item 5 rows
+        FINISH       // footer, timestamp, closing the file; all of a report replayed from the cache
+    }
+
+    // Receives problem lines from a parser
+    interface Rejects {
+        void reject(RejectReason reason, String message);
+    }
+
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder parsedRealEstates = new LongAdder();
+    private final LongAdder parsedPanels = new LongAdder();
+    private final LongAdder[] problems = adders(RejectReason.values().length);
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+    private final SampledLog[] logs = new SampledLog[RejectReason.values().length];
+
+    private final LongAdder reportsGenerated = new LongAdder();
+    private final LongAdder[] sectionNanos = adders(ReportSection.values().length);
+    private final long[] sectionMaxNanos = new long[ReportSection.values().length];
+
+    AgentMetrics() {
+        for (RejectReason reason : RejectReason.values()) {
+            logs[reason.ordinal()] = new SampledLog(reason);
+        }
+    }
+
+    // ---------------- Ingest ----------------
+    void linesRead(long count) {
+        linesRead.add(count);
+    }
+
+    void parsed(RealEstate property) {
+        if (property instanceof Panel) {
+            parsedPanels.increment();
+        } else {
+            parsedRealEstates.increment();
+        }
+    }
+
+    void parseTime(long nanos) {
+        parseNanos.add(nanos);
+    }
+
+    // Counts the problem and logs it subject to sampling
+    void reject(RejectReason reason, String message) {
+        problems[reason.ordinal()].increment();
+        logs[reason.ordinal()].log(message);
+        RejectedLineEvent event = new RejectedLineEvent();
+        if (event.isEnabled()) {
+            event.reason = reason.name();
+            event.message = message;
+            event.commit();
+        }
+    }
+
+    // Starts a load; pass the result to endLoad
+    LoadEvent beginLoad(String source) {
+        LoadEvent event = new LoadEvent();
+        event.source = source;
+        event.startLines = linesRead.sum();
+        event.startParsed = parsedRealEstates.sum() + parsedPanels.sum();
+        event.startRejected = getRejectedLines();
+        event.begin();
+        return event;
+    }
+
+    // Summarises suppressed messages and records the load as a JFR event
+    void endLoad(LoadEvent event) {
+        event.end();
+        for (SampledLog log : logs) {
+            log.flush();
+        }
+        if (event.shouldCommit()) {
+            event.linesRead = linesRead.sum() - event.startLines;
+            event.parsed = parsedRealEstates.sum() + parsedPanels.sum() - event.startParsed;
+            event.rejected = getRejectedLines() - event.startRejected;
+            event.commit();
+        }
+    }
+
+    // ---------------- Report ----------------
+    ReportSectionEvent beginSection(ReportSection section, String outputFilename) {
+        ReportSectionEvent event = new ReportSectionEvent();
+        event.section = section.name();
+        event.outputFile = outputFilename;
+        event.sectionOrdinal = section.ordinal();
+        event.startNanos = System.nanoTime();
+        event.begin();
+        return event;
+    }
+
+    void endSection(ReportSectionEvent event) {
+        event.commit();
+        long nanos = System.nanoTime() - event.startNanos;
+        int section = event.sectionOrdinal;
+        sectionNanos[section].add(nanos);
+        synchronized (sectionMaxNanos) {
+            sectionMaxNanos[section] = Math.max(sectionMaxNanos[section], nanos);
+        }
+        if (section == ReportSection.FINISH.ordinal()) {
+            reportsGenerated.increment();
+        }
+    }
+
+    // ---------------- JMX ----------------
+    @Override
+    public long getLinesRead() {
+        return linesRead.sum();
+    }
+
+    @Override
+    public long getParsedRealEstates() {
+        return parsedRealEstates.sum();
+    }
+
+    @Override
+    public long getParsedPanels() {
+        return parsedPanels.sum();
+    }
+
+    @Override
+    public long getRejectedLines() {
+        long rejected = 0;
+        for (RejectReason reason : RejectReason.values()) {
+            if (reason != RejectReason.BAD_GENRE) {
+                rejected += problems[reason.ordinal()].sum();
+            }
+        }
+        return rejected;
+    }
+
+    public long getProblems(RejectReason reason) {
+        return problems[reason.ordinal()].sum();
+    }
+
+    @Override
+    public Map<String, Long> getProblemsByReason() {
+        Map<String, Long> byReason = new LinkedHashMap<>();
+        for (RejectReason reason : RejectReason.values()) {
+            byReason.put(reason.name(), problems[reason.ordinal()].sum());
+        }
+        return byReason;
+    }
+
+    @Override
+    public long getSuppressedLogMessages() {
+        return suppressed.sum();
+    }
+
+    @Override
+    public double getParseThroughputLinesPerSecond() {
+        long nanos = parseNanos.sum();
+        return nanos > 0 ? linesRead.sum() * 1e9 / nanos : 0.0;
+    }
+
+    @Override
+    public long getReportsGenerated() {
+        return reportsGenerated.sum();
+    }
+
+    @Override
+    public Map<String, Double> getReportSectionAverageMillis() {
+        long reports = Math.max(1, reportsGenerated.sum());
+        Map<String, Double> averages = new LinkedHashMap<>();
+        for (ReportSection section : ReportSection.values()) {
+            averages.put(section.name(), sectionNanos[section.ordinal()].sum() / 1e6 / reports);
+        }
+        return averages;
+    }
+
+    @Override
+    public Map<String, Double> getReportSectionMaxMillis() {
+        Map<String, Double> maxima = new LinkedHashMap<>();
+        synchronized (sectionMaxNanos) {
+            for (ReportSection section : ReportSection.values()) {
+                maxima.put(section.name(), sectionMaxNanos[section.ordinal()] / 1e6);
+            }
+        }
+        return maxima;
+    }
+
+    @Override
+    public void reset() {
+        linesRead.reset();
+        parsedRealEstates.reset();
+        parsedPanels.reset();
+        parseNanos.reset();
+        suppressed.reset();
+        reportsGenerated.reset();
+        for (LongAdder adder : problems) {
+            adder.reset();
+        }
+        for (LongAdder adder : sectionNanos) {
+            adder.reset();
+        }
+        synchronized (sectionMaxNanos) {
+            Arrays.fill(sectionMaxNanos, 0);
+        }
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    // ---------------- Sampled logging ----------------
+    // At most LOG_BURST messages per window for one reason; the rest are only counted
+    private final class SampledLog {
+        private final RejectReason reason;
+        private long windowStart = Long.MIN_VALUE;
+        private int loggedInWindow;
+        private long pending;  // suppressed since the last message printed
+
+        SampledLog(RejectReason reason) {
+            this.reason = reason;
+        }
+
+        synchronized void log(String message) {
+            long now = System.nanoTime();
+            if (windowStart == Long.MIN_VALUE || now - windowStart >= LOG_WINDOW_NANOS) {
+                windowStart = now;
+                loggedInWindow = 0;
+            }
+            if (loggedInWindow >= LOG_BURST) {
+                pending++;
+                suppressed.increment();
+                return;
+            }
+            loggedInWindow++;
+            if (pending > 0) {
+                System.err.println(message + " (" + pending + " similar messages suppressed)");
+                pending = 0;
+            } else {
+                System.err.println(message);
+            }
+        }
+
+        synchronized void flush() {
+            if (pending > 0) {
+                System.err.println("Suppressed " + pending + " more " + reason + " messages");
+                pending = 0;
+            }
+        }
+    }
+
+    // ---------------- JFR events ----------------
+    @Name("org.example.ListingLoad")
+    @Label("Listing Load")
+    @Category("Real Estate")
+    @Description("One load or watch poll of a listings source")
+    @StackTrace(false)
+    static class LoadEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Lines Read")
+        long linesRead;
+        @Label("Parsed")
+        long parsed;
+        @Label("Rejected")
+        long rejected;
+
+        transient long startLines;
+        transient long startParsed;
+        transient long startRejected;
+    }
+
+    @Name("org.example.ReportSection")
+    @Label("Report Section")
+    @Category("Real Estate")
+    @Description("Time spent in one section of generateAnalysisReport")
+    @StackTrace(false)
+    static class ReportSectionEvent extends Event {
+        @Label("Section")
+        String section;
+        @Label("Output File")
+        String outputFile;
+
+        transient int sectionOrdinal;
+        transient long startNanos;
+    }
+
+    // Off by default: one event per problem line
+    @Name("org.example.RejectedLine")
+    @Label("Rejected Line")
+    @Category("Real Estate")
+    @Enabled(false)
+    @StackTrace(false)
+    static class RejectedLineEvent extends Event {
+        @Label("Reason")
+        String reason;
+        @Label("Message")
+        String message;
+    }
+}
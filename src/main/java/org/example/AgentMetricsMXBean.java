@@ -0,0 +1,23 @@
+package org.example;
+
+import java.util.Map;
+
+// ===== AgentMetricsMXBean =====
+// JMX view of AgentMetrics; public because the MXBean introspector requires it
+public interface AgentMetricsMXBean {
+    long getLinesRead();
+    long getParsedRealEstates();
+    long getParsedPanels();
+    long getRejectedLines();
+    // Reason name -> count; BAD_GENRE lines are kept as CONDOMINIUM and are not in getRejectedLines
+    Map<String, Long> getProblemsByReason();
+    long getSuppressedLogMessages();
+    double getParseThroughputLinesPerSecond();
+
+    long getReportsGenerated();
+    // Section name -> average / maximum milliseconds per report
+    Map<String, Double> getReportSectionAverageMillis();
+    Map<String, Double> getReportSectionMaxMillis();
+
+    void reset();
+}
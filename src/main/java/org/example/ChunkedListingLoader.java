@@ -0,0 +1,722 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+// ===================== ChunkedListingLoader CLASS =====================
+// Memory-maps a listings file, cuts it into newline-aligned chunks and parses
+// the '#'-delimited fields straight from the mapped bytes on a fork-join pool.
+// Produces the same RealEstate/Panel objects and the same rejected-line
+// messages as RealEstateAgent.parsePropertyLine, in file order. Text is
+// decoded with the platform charset like FileReader, which must be
+// ASCII-compatible (UTF-8, ISO-8859-x) for byte-level field splitting.
+//
+// scan applies a ListingFilter on the way: class, city and genre are compared
+// on the raw leading fields, and only lines that pass are parsed. index builds
+// a ListingFileIndex, which lets later scans skip whole regions of the file.
+class ChunkedListingLoader {
+    static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final Charset charset;
+
+    public ChunkedListingLoader() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public ChunkedListingLoader(ForkJoinPool pool, int chunkSize) {
+        this(pool, chunkSize, Charset.defaultCharset());
+    }
+
+    public ChunkedListingLoader(ForkJoinPool pool, int chunkSize, Charset charset) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.charset = charset;
+    }
+
+    // Parsed listings and problem-line messages, both in file order; reasons[i] is why errors[i] was reported
+    static class Result {
+        final List<RealEstate> properties;
+        final List<String> errors;
+        final List<AgentMetrics.RejectReason> reasons;
+
+        Result(List<RealEstate> properties, List<String> errors, List<AgentMetrics.RejectReason> reasons) {
+            this.properties = properties;
+            this.errors = errors;
+            this.reasons = reasons;
+        }
+
+        // Non-blank lines: each one either parsed or was rejected (for a scan: each one that
+        // passed the leading-field check)
+        long linesRead() {
+            long lines = properties.size();
+            for (AgentMetrics.RejectReason reason : reasons) {
+                if (reason != AgentMetrics.RejectReason.BAD_GENRE) {
+                    lines++;
+                }
+            }
+            return lines;
+        }
+    }
+
+    // Matching listings of a scan, plus how much of the file it had to read
+    static class ScanResult extends Result {
+        final long bytesScanned;
+        final boolean indexed;  // a current sidecar index chose the regions
+
+        ScanResult(List<RealEstate> properties, List<String> errors, List<AgentMetrics.RejectReason> reasons,
+                   long bytesScanned, boolean indexed) {
+            super(properties, errors, reasons);
+            this.bytesScanned = bytesScanned;
+            this.indexed = indexed;
+        }
+    }
+
+    public Result load(Path path) throws IOException {
+        return scan(path, null, null);
+    }
+
+    // Listings of the file that match filter, in file order. A line whose leading fields
+    // fail the filter is skipped without being parsed, so its problems are not reported.
+    // With a current sidecar index (ListingFileIndex.sidecarOf) only the regions that
+    // may hold a match are read.
+    public ScanResult scan(Path path, ListingFilter filter) throws IOException {
+        ListingFileIndex index = null;
+        Path sidecar = ListingFileIndex.sidecarOf(path);
+        if (Files.exists(sidecar)) {
+            try {
+                ListingFileIndex candidate = ListingFileIndex.read(sidecar);
+                if (candidate.isCurrent(path)) {
+                    index = candidate;
+                }
+            } catch (IOException e) {
+                // Unreadable or the file is gone; the scan itself reports the latter
+            }
+        }
+        return scan(path, filter, index);
+    }
+
+    // filter null matches every line, index null reads the whole file
+    ScanResult scan(Path path, ListingFilter filter, ListingFileIndex index) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<long[]> regions = index != null
+                    ? index.regions(filter != null ? filter : new ListingFilter(), chunkSize)
+                    : regions(chunkBounds(channel));
+
+            List<ChunkTask> tasks = new ArrayList<>(regions.size());
+            long bytesScanned = 0;
+            for (long[] region : regions) {
+                long length = region[1] - region[0];
+                if (length > Integer.MAX_VALUE) {
+                    throw new IOException("Index block too large to map at offset " + region[0]);
+                }
+                bytesScanned += length;
+                tasks.add(new ChunkTask(channel.map(FileChannel.MapMode.READ_ONLY, region[0], length), charset, filter));
+            }
+
+            // Submit everything first so chunks parse in parallel, then join in file order
+            List<ForkJoinTask<Result>> running = new ArrayList<>(tasks.size());
+            for (ChunkTask task : tasks) {
+                running.add(pool.submit(task));
+            }
+
+            List<RealEstate> properties = new ArrayList<>();
+            List<String> errors = new ArrayList<>();
+            List<AgentMetrics.RejectReason> reasons = new ArrayList<>();
+            for (ForkJoinTask<Result> task : running) {
+                Result chunk = task.join();
+                properties.addAll(chunk.properties);
+                errors.addAll(chunk.errors);
+                reasons.addAll(chunk.reasons);
+            }
+            return new ScanResult(properties, errors, reasons, bytesScanned, index != null);
+        }
+    }
+
+    // Sidecar index of the file with blocks of about blockSize bytes; see ListingFileIndex.
+    // Not written anywhere: ListingFileIndex.write(ListingFileIndex.sidecarOf(path)) does that.
+    public ListingFileIndex index(Path path, int blockSize) throws IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        // Taken before reading, so a change made meanwhile leaves the index stale rather than wrong
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<ForkJoinTask<IndexBlocks>> running = new ArrayList<>();
+            for (long[] region : regions(chunkBounds(channel))) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, region[0], region[1] - region[0]);
+                running.add(pool.submit(new IndexTask(buffer, region[0], blockSize, charset)));
+            }
+
+            IndexBlocks blocks = new IndexBlocks();
+            for (ForkJoinTask<IndexBlocks> task : running) {
+                IndexBlocks chunk = task.join();
+                blocks.starts.addAll(chunk.starts);
+                blocks.classes.addAll(chunk.classes);
+                blocks.cityKeys.addAll(chunk.cityKeys);
+            }
+            return ListingFileIndex.of(size, lastModified, blocks.starts, blocks.classes, blocks.cityKeys);
+        }
+    }
+
+    private static List<long[]> regions(long[] bounds) {
+        List<long[]> regions = new ArrayList<>(bounds.length - 1);
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            regions.add(new long[]{bounds[i], bounds[i + 1]});
+        }
+        return regions;
+    }
+
+    // Chunk start offsets plus the file size; every inner offset follows a '\n'
+    private long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long position = 0;
+        while (size - position > chunkSize) {
+            long candidate = position + chunkSize;
+            long boundary = -1;
+            while (boundary < 0 && candidate < size) {
+                probe.clear();
+                int read = channel.read(probe, candidate);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        boundary = candidate + i + 1;
+                        break;
+                    }
+                }
+                candidate += read;
+            }
+            // A single line longer than chunkSize, or no newline up to EOF
+            if (boundary < 0 || boundary >= size || boundary - position > Integer.MAX_VALUE) {
+                break;
+            }
+            bounds.add(boundary);
+            position = boundary;
+        }
+        if (size - position > Integer.MAX_VALUE) {
+            throw new IOException("Line too long to map near offset " + position);
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    // ---------------- Chunk parsing ----------------
+    private static class ChunkTask extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+
+        private final MappedByteBuffer buffer;
+        private final Charset charset;
+        private final ListingFilter filter;  // null: every line
+
+        ChunkTask(MappedByteBuffer buffer, Charset charset, ListingFilter filter) {
+            this.buffer = buffer;
+            this.charset = charset;
+            this.filter = filter;
+        }
+
+        @Override
+        protected Result compute() {
+            ByteLineParser parser = new ByteLineParser(buffer, charset);
+            List<RealEstate> properties = new ArrayList<>();
+            List<String> errors = new ArrayList<>();
+            List<AgentMetrics.RejectReason> reasons = new ArrayList<>();
+            AgentMetrics.Rejects rejects = (reason, message) -> {
+                reasons.add(reason);
+                errors.add(message);
+            };
+
+            int limit = buffer.limit();
+            int lineStart = 0;
+            for (int i = 0; i <= limit; i++) {
+                if (i == limit || buffer.get(i) == '\n' || buffer.get(i) == '\r') {
+                    if (i > lineStart && (filter == null || parser.accepts(lineStart, i, filter))) {
+                        RealEstate property = parser.parse(lineStart, i, rejects);
+                        if (property != null && (filter == null || filter.matches(property))) {
+                            properties.add(property);
+                        }
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            return new Result(properties, errors, reasons);
+        }
+    }
+
+    // Index blocks of one chunk, in file order
+    private static class IndexBlocks {
+        final List<Long> starts = new ArrayList<>();
+        final List<Integer> classes = new ArrayList<>();
+        final List<Set<String>> cityKeys = new ArrayList<>();
+    }
+
+    // A block starts at the first line that begins blockSize or more bytes after the
+    // previous block's start; blocks never span two chunks
+    private static class IndexTask extends RecursiveTask<IndexBlocks> {
+        private static final long serialVersionUID = 1L;
+
+        private final MappedByteBuffer buffer;
+        private final long offset;
+        private final int blockSize;
+        private final Charset charset;
+
+        IndexTask(MappedByteBuffer buffer, long offset, int blockSize, Charset charset) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.blockSize = blockSize;
+            this.charset = charset;
+        }
+
+        @Override
+        protected IndexBlocks compute() {
+            ByteLineParser parser = new ByteLineParser(buffer, charset);
+            IndexBlocks blocks = new IndexBlocks();
+            Set<String> cityKeys = null;
+            int classes = 0;
+            int blockStart = -1;
+            int limit = buffer.limit();
+            int lineStart = 0;
+            for (int i = 0; i <= limit; i++) {
+                if (i == limit || buffer.get(i) == '\n' || buffer.get(i) == '\r') {
+                    if (i > lineStart) {
+                        if (blockStart < 0 || lineStart - blockStart >= blockSize) {
+                            if (cityKeys != null) {
+                                blocks.classes.add(classes);
+                                blocks.cityKeys.add(cityKeys);
+                            }
+                            blockStart = lineStart;
+                            blocks.starts.add(offset + lineStart);
+                            cityKeys = new HashSet<>();
+                            classes = 0;
+                        }
+                        classes |= parser.classify(lineStart, i, cityKeys);
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            if (cityKeys != null) {
+                blocks.classes.add(classes);
+                blocks.cityKeys.add(cityKeys);
+            }
+            return blocks;
+        }
+    }
+
+    // Parses one line of the "CLASS#city#price#sqm#rooms#GENRE[#floor#yes|no]" format
+    // directly from bytes, mirroring RealEstateAgent.parsePropertyLine field by field.
+    static class ByteLineParser {
+        private static final int MAX_FIELDS = 16;
+        private static final double[] POWERS_OF_TEN = {
+                1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+        };
+
+        private final ByteBuffer buffer;
+        private final Charset charset;
+        private final int[] fieldStart = new int[MAX_FIELDS];
+        private final int[] fieldEnd = new int[MAX_FIELDS];
+        private final StringCache cities;
+        // City keys of the current filter in the parser's charset, for byte comparison
+        private ListingFilter keyedFilter;
+        private byte[][] filterCityKeys;
+        private final Map<String, String> cityKeys = new HashMap<>();
+
+        ByteLineParser(ByteBuffer buffer, Charset charset) {
+            this.buffer = buffer;
+            this.charset = charset;
+            this.cities = new StringCache(charset);
+        }
+
+        // Returns the parsed property, or null after reporting the rejection to rejects
+        RealEstate parse(int start, int end, AgentMetrics.Rejects rejects) {
+            // Same whitespace rule as String.trim()
+            while (start < end && isBlank(buffer.get(start))) start++;
+            while (end > start && isBlank(buffer.get(end - 1))) end--;
+            if (start == end) {
+                return null;
+            }
+
+            int parts = split(start, end);
+            if (parts < 6) {
+                rejects.reject(AgentMetrics.RejectReason.NOT_ENOUGH_PARTS,
+                        "Invalid line format (not enough parts): " + decode(start, end));
+                return null;
+            }
+
+            trimFields(Math.min(parts, 8));
+            boolean panel = equalsAsciiIgnoreCase(0, "PANEL");
+
+            double price;
+            int sqm;
+            int numberOfRooms;
+            try {
+                price = parseDouble(2);
+                sqm = parseInt(3);
+                numberOfRooms = parseInt(4);
+            } catch (NumberFormatException e) {
+                rejects.reject(AgentMetrics.RejectReason.BAD_NUMBER, "Invalid number format in line: " + decode(start, end));
+                return null;
+            }
+
+            Genre genre = parseGenre(5);
+            if (genre == null) {
+                rejects.reject(AgentMetrics.RejectReason.BAD_GENRE,
+                        "Invalid genre in line: " + decode(start, end) + ". Using CONDOMINIUM as default.");
+                genre = Genre.CONDOMINIUM;
+            }
+
+            String city = cities.get(buffer, fieldStart[1], fieldEnd[1]);
+            if (panel) {
+                if (parts >= 8) {
+                    int floor;
+                    try {
+                        floor = parseInt(6);
+                    } catch (NumberFormatException e) {
+                        rejects.reject(AgentMetrics.RejectReason.BAD_NUMBER, "Invalid number format in line: " + decode(start, end));
+                        return null;
+                    }
+                    boolean isInsulated = isYes(7);
+                    return new Panel(city, price, sqm, numberOfRooms, genre, floor, isInsulated);
+                }
+                rejects.reject(AgentMetrics.RejectReason.MISSING_PANEL_FIELDS,
+                        "Invalid Panel format (missing floor/insulation): " + decode(start, end));
+                return null;
+            }
+            return new RealEstate(city, price, sqm, numberOfRooms, genre);
+        }
+
+        // Leading-field check of filter: false only when the line's class, city or genre
+        // cannot match. A line too short to tell is left to parse.
+        boolean accepts(int start, int end, ListingFilter filter) {
+            if (!leadingFields(start, end)) {
+                return true;
+            }
+            return filter.matchesPanel(equalsAsciiIgnoreCase(0, "PANEL"))
+                    && (filter.cityKeys() == null || cityMatches(filter))
+                    && filter.matchesGenre(effectiveGenre());
+        }
+
+        // ListingFileIndex.classBit of the line, 0 for a blank line or UNCLASSIFIED when
+        // it is too short to tell; adds the line's city key to cityKeys
+        int classify(int start, int end, Set<String> cityKeys) {
+            while (start < end && isBlank(buffer.get(start))) start++;
+            while (end > start && isBlank(buffer.get(end - 1))) end--;
+            if (start == end) {
+                return 0;
+            }
+            if (!leadingFields(start, end)) {
+                return ListingFileIndex.UNCLASSIFIED;
+            }
+            String city = cities.get(buffer, fieldStart[1], fieldEnd[1]);
+            cityKeys.add(this.cityKeys.computeIfAbsent(city, PropertyQuery::cityKey));
+            return ListingFileIndex.classBit(effectiveGenre(), equalsAsciiIgnoreCase(0, "PANEL"));
+        }
+
+        // Locates and trims fields 0 (class), 1 (city) and 5 (genre) without looking past
+        // the genre; false when there is no non-empty sixth field
+        private boolean leadingFields(int start, int end) {
+            while (start < end && isBlank(buffer.get(start))) start++;
+            while (end > start && isBlank(buffer.get(end - 1))) end--;
+            int field = 0;
+            int fieldFrom = start;
+            for (int i = start; i <= end && field <= 5; i++) {
+                if (i == end || buffer.get(i) == '#') {
+                    if (field <= 1 || field == 5) {
+                        fieldStart[field] = fieldFrom;
+                        fieldEnd[field] = i;
+                    }
+                    field++;
+                    fieldFrom = i + 1;
+                }
+            }
+            if (field <= 5) {
+                return false;
+            }
+            trimField(0);
+            trimField(1);
+            trimField(5);
+            return fieldEnd[5] > fieldStart[5];
+        }
+
+        // Genre the line is parsed with: unknown genres become CONDOMINIUM
+        private Genre effectiveGenre() {
+            Genre genre = parseGenre(5);
+            return genre == null ? Genre.CONDOMINIUM : genre;
+        }
+
+        private boolean cityMatches(ListingFilter filter) {
+            if (!isAscii(1)) {
+                return filter.matchesCityKey(PropertyQuery.cityKey(decode(fieldStart[1], fieldEnd[1])));
+            }
+            if (keyedFilter != filter) {
+                filterCityKeys = new byte[filter.cityKeys().size()][];
+                int k = 0;
+                for (String key : filter.cityKeys()) {
+                    filterCityKeys[k++] = key.getBytes(charset);
+                }
+                keyedFilter = filter;
+            }
+            // An ASCII city lower-cases to ASCII, so comparing bytes is exact
+            for (byte[] key : filterCityKeys) {
+                if (equalsAsciiLowerCase(1, key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean equalsAsciiLowerCase(int field, byte[] expected) {
+            int start = fieldStart[field];
+            if (fieldEnd[field] - start != expected.length) {
+                return false;
+            }
+            for (int i = 0; i < expected.length; i++) {
+                int b = buffer.get(start + i);
+                if (b >= 'A' && b <= 'Z') b += 'a' - 'A';
+                if (b != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Splits on '#' and drops trailing empty fields like String.split; returns the field count
+        private int split(int start, int end) {
+            int count = 0;
+            int fieldFrom = start;
+            int lastNonEmpty = 0;
+            for (int i = start; i <= end; i++) {
+                if (i == end || buffer.get(i) == '#') {
+                    if (count < MAX_FIELDS) {
+                        fieldStart[count] = fieldFrom;
+                        fieldEnd[count] = i;
+                    }
+                    count++;
+                    if (i > fieldFrom) {
+                        lastNonEmpty = count;
+                    }
+                    fieldFrom = i + 1;
+                }
+            }
+            return lastNonEmpty;
+        }
+
+        private void trimFields(int count) {
+            for (int f = 0; f < count; f++) {
+                trimField(f);
+            }
+        }
+
+        private void trimField(int f) {
+            int s = fieldStart[f];
+            int e = fieldEnd[f];
+            while (s < e && isBlank(buffer.get(s))) s++;
+            while (e > s && isBlank(buffer.get(e - 1))) e--;
+            fieldStart[f] = s;
+            fieldEnd[f] = e;
+        }
+
+        private double parseDouble(int field) {
+            int i = fieldStart[field];
+            int end = fieldEnd[field];
+            boolean negative = false;
+            if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                negative = buffer.get(i) == '-';
+                i++;
+            }
+
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = -1;
+            for (; i < end; i++) {
+                byte b = buffer.get(i);
+                if (b >= '0' && b <= '9') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (fractionDigits >= 0) fractionDigits++;
+                    if (digits > 15) break;
+                } else if (b == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                } else {
+                    break;
+                }
+            }
+
+            // Exact mantissa and exact power of ten give a correctly rounded quotient;
+            // anything else (exponents, NaN, hex, long digit strings) takes the JDK path.
+            if (i == end && digits > 0 && digits <= 15) {
+                double value = fractionDigits > 0
+                        ? mantissa / POWERS_OF_TEN[fractionDigits]
+                        : (double) mantissa;
+                return negative ? -value : value;
+            }
+            return Double.parseDouble(decode(fieldStart[field], fieldEnd[field]));
+        }
+
+        private int parseInt(int field) {
+            int i = fieldStart[field];
+            int end = fieldEnd[field];
+            boolean negative = false;
+            if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                negative = buffer.get(i) == '-';
+                i++;
+            }
+            int digits = end - i;
+            if (digits > 0 && digits <= 9) {
+                int value = 0;
+                for (; i < end; i++) {
+                    byte b = buffer.get(i);
+                    if (b < '0' || b > '9') break;
+                    value = value * 10 + (b - '0');
+                }
+                if (i == end) {
+                    return negative ? -value : value;
+                }
+            }
+            // Overflow and malformed input get Integer.parseInt's exact behaviour
+            return Integer.parseInt(decode(fieldStart[field], fieldEnd[field]));
+        }
+
+        private Genre parseGenre(int field) {
+            if (!isAscii(field)) {
+                String genreStr = decode(fieldStart[field], fieldEnd[field]).toUpperCase();
+                if (genreStr.equals("FLAT")) {
+                    return Genre.CONDOMINIUM;
+                }
+                try {
+                    return Genre.valueOf(genreStr);
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+            if (equalsAsciiIgnoreCase(field, "FLAT")) {
+                return Genre.CONDOMINIUM;
+            }
+            for (Genre genre : Genre.values()) {
+                if (equalsAsciiIgnoreCase(field, genre.name())) {
+                    return genre;
+                }
+            }
+            return null;
+        }
+
+        private boolean isYes(int field) {
+            if (!isAscii(field)) {
+                return "yes".equalsIgnoreCase(decode(fieldStart[field], fieldEnd[field]));
+            }
+            return equalsAsciiIgnoreCase(field, "yes");
+        }
+
+        private boolean equalsAsciiIgnoreCase(int field, String expected) {
+            int start = fieldStart[field];
+            if (fieldEnd[field] - start != expected.length()) {
+                return false;
+            }
+            for (int i = 0; i < expected.length(); i++) {
+                int b = buffer.get(start + i);
+                if (b >= 'a' && b <= 'z') b -= 'a' - 'A';
+                int c = expected.charAt(i);
+                if (c >= 'a' && c <= 'z') c -= 'a' - 'A';
+                if (b != c) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isAscii(int field) {
+            for (int i = fieldStart[field]; i < fieldEnd[field]; i++) {
+                if (buffer.get(i) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String decode(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+            return new String(bytes, charset);
+        }
+
+        private static boolean isBlank(byte b) {
+            return (b & 0xff) <= ' ';
+        }
+    }
+
+    // Small open-addressed cache so repeated city names decode to one shared String
+    static class StringCache {
+        private static final int SLOTS = 1024;
+        private final byte[][] keys = new byte[SLOTS][];
+        private final String[] values = new String[SLOTS];
+        private final Charset charset;
+
+        StringCache(Charset charset) {
+            this.charset = charset;
+        }
+
+        String get(ByteBuffer buffer, int start, int end) {
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            int slot = (hash ^ (hash >>> 16)) & (SLOTS - 1);
+            byte[] key = keys[slot];
+            if (key != null && matches(key, buffer, start, end)) {
+                return values[slot];
+            }
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+            String value = new String(bytes, charset);
+            keys[slot] = bytes;
+            values[slot] = value;
+            return value;
+        }
+
+        private static boolean matches(byte[] key, ByteBuffer buffer, int start, int end) {
+            if (key.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buffer.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
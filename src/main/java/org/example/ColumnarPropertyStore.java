@@ -0,0 +1,394 @@
+package org.example;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+// ===================== ColumnarPropertyStore CLASS =====================
+// Struct-of-arrays store: one primitive array per field, cities dictionary-encoded
+// and genres kept as ordinals. RealEstate/Panel objects are only created when a
+// listing is read back, and those views are detached copies of the stored row.
+// Mutators and snapshot() are synchronized; live iteration is not safe against a
+// concurrent clear().
+class ColumnarPropertyStore implements PropertyStore {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final byte KIND_PANEL = 1;
+    private static final byte KIND_INSULATED = 2;
+
+    // One entry per row
+    private double[] price;
+    private int[] sqm;
+    private int[] numberOfRooms;
+    private int[] floor;
+    private int[] cityId;
+    private byte[] genre;        // Genre ordinal, -1 for null
+    private byte[] kind;         // KIND_* bits
+    private int[] totalPrice;    // computed once on insert, used for ordering and dedup
+    private int size;
+
+    // City dictionary
+    private final Map<String, Integer> cityIds = new HashMap<>();
+    private final List<String> cities = new ArrayList<>();
+
+    // Open-addressed set of row + 1 used to reject listings equal per compareTo;
+    // null after loadSorted until the next add needs it
+    private int[] slots;
+
+    // Rows in compareTo order; rebuilt lazily after inserts
+    private int[] order;
+
+    public ColumnarPropertyStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ColumnarPropertyStore(int initialCapacity) {
+        allocate(Math.max(16, initialCapacity));
+    }
+
+    private void allocate(int capacity) {
+        price = new double[capacity];
+        sqm = new int[capacity];
+        numberOfRooms = new int[capacity];
+        floor = new int[capacity];
+        cityId = new int[capacity];
+        genre = new byte[capacity];
+        kind = new byte[capacity];
+        totalPrice = new int[capacity];
+        slots = new int[Integer.highestOneBit(capacity) << 2];
+        size = 0;
+        order = null;
+    }
+
+    @Override
+    public synchronized boolean add(RealEstate property) {
+        if (slots == null) {
+            slots = rehash(Integer.highestOneBit(price.length) << 2);
+        }
+        int total = property.getTotalPrice();
+        int city = cityIdOf(property.getCity());
+        int area = property.getSqm();
+
+        int mask = slots.length - 1;
+        int slot = hash(total, city, area) & mask;
+        while (slots[slot] != 0) {
+            int row = slots[slot] - 1;
+            if (totalPrice[row] == total && cityId[row] == city && sqm[row] == area) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == price.length) {
+            grow(price.length + (price.length >> 1));
+            return add(property);
+        }
+        append(property, total, city, area);
+        slots[slot] = size;
+        order = null;
+        return true;
+    }
+
+    // Rows are appended as given, so the sorted permutation is the identity; the dedup
+    // table is only built when the next add needs it
+    @Override
+    public synchronized void loadSorted(RealEstate[] sorted) {
+        if (size != 0) {
+            throw new IllegalStateException("loadSorted needs an empty store, size is " + size);
+        }
+        slots = null;
+        if (sorted.length > price.length) {
+            grow(sorted.length);
+        }
+        for (RealEstate property : sorted) {
+            append(property, property.getTotalPrice(), cityIdOf(property.getCity()), property.getSqm());
+        }
+        int[] identity = new int[size];
+        for (int i = 0; i < size; i++) {
+            identity[i] = i;
+        }
+        order = identity;
+    }
+
+    private void append(RealEstate property, int total, int city, int area) {
+        int row = size++;
+        price[row] = property.getPrice();
+        sqm[row] = area;
+        numberOfRooms[row] = property.getNumberOfRooms();
+        cityId[row] = city;
+        genre[row] = property.getGenre() == null ? -1 : (byte) property.getGenre().ordinal();
+        totalPrice[row] = total;
+        if (property instanceof Panel) {
+            Panel panel = (Panel) property;
+            floor[row] = panel.getFloor();
+            kind[row] = (byte) (KIND_PANEL | (panel.isInsulated() ? KIND_INSULATED : 0));
+        } else {
+            floor[row] = 0;
+            kind[row] = 0;
+        }
+    }
+
+    // Rows are copies, so no caller-held instance is ever stored here
+    @Override
+    public boolean remove(RealEstate property) {
+        return false;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void clear() {
+        cityIds.clear();
+        cities.clear();
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    // Materializes the listing at the given position in total-price order
+    public synchronized RealEstate get(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position " + position + " out of range for size " + size);
+        }
+        return materialize(sortedRows()[position]);
+    }
+
+    // Binary search on the sorted rows for the price range, then filter on the columns;
+    // only matching rows are materialized
+    @Override
+    public synchronized List<RealEstate> query(PropertyQuery query) {
+        int[] rows = sortedRows();
+        boolean[] cityMatches = null;
+        if (query.cityKey() != null) {
+            cityMatches = new boolean[cities.size()];
+            for (int id = 0; id < cityMatches.length; id++) {
+                cityMatches[id] = query.cityKey().equals(PropertyQuery.cityKey(cities.get(id)));
+            }
+        }
+        int genreFilter = query.getGenre() == null ? -1 : query.getGenre().ordinal();
+
+        // [low, high): the rows within the price range
+        int low = firstAbove(rows, query.getMinTotalPrice() - 1L);
+        int high = firstAbove(rows, query.getMaxTotalPrice());
+        boolean descending = query.isDescending();
+
+        List<RealEstate> result = new ArrayList<>();
+        for (int n = 0; n < high - low && result.size() < query.getLimit(); n++) {
+            int row = rows[descending ? high - 1 - n : low + n];
+            if (genreFilter >= 0 && genre[row] != genreFilter) {
+                continue;
+            }
+            if (cityMatches != null && (cityId[row] < 0 || !cityMatches[cityId[row]])) {
+                continue;
+            }
+            result.add(materialize(row));
+        }
+        return result;
+    }
+
+    // First position whose total price is above bound
+    private int firstAbove(int[] rows, long bound) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (totalPrice[rows[mid]] <= bound) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public synchronized RealEstate[] snapshot() {
+        int[] rows = sortedRows();
+        RealEstate[] copy = new RealEstate[size];
+        for (int i = 0; i < size; i++) {
+            copy[i] = materialize(rows[i]);
+        }
+        return copy;
+    }
+
+    @Override
+    public synchronized Iterator<RealEstate> iterator() {
+        final int[] rows = sortedRows();
+        final int count = size;
+        return new Iterator<RealEstate>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public RealEstate next() {
+                if (next >= count) {
+                    throw new NoSuchElementException();
+                }
+                return materialize(rows[next++]);
+            }
+        };
+    }
+
+    @Override
+    public Collection<RealEstate> asCollection() {
+        return new AbstractCollection<RealEstate>() {
+            @Override
+            public Iterator<RealEstate> iterator() {
+                return ColumnarPropertyStore.this.iterator();
+            }
+
+            @Override
+            public int size() {
+                return ColumnarPropertyStore.this.size();
+            }
+
+            @Override
+            public boolean add(RealEstate property) {
+                return ColumnarPropertyStore.this.add(property);
+            }
+
+            @Override
+            public void clear() {
+                ColumnarPropertyStore.this.clear();
+            }
+        };
+    }
+
+    // ---------------- Internals ----------------
+    private RealEstate materialize(int row) {
+        String city = cityId[row] < 0 ? null : cities.get(cityId[row]);
+        Genre g = genre[row] < 0 ? null : Genre.values()[genre[row]];
+        if ((kind[row] & KIND_PANEL) != 0) {
+            return new Panel(city, price[row], sqm[row], numberOfRooms[row], g,
+                    floor[row], (kind[row] & KIND_INSULATED) != 0);
+        }
+        return new RealEstate(city, price[row], sqm[row], numberOfRooms[row], g);
+    }
+
+    private int cityIdOf(String city) {
+        if (city == null) {
+            return -1;
+        }
+        Integer id = cityIds.get(city);
+        if (id == null) {
+            id = cities.size();
+            cities.add(city);
+            cityIds.put(city, id);
+        }
+        return id;
+    }
+
+    private static int hash(int total, int city, int area) {
+        int h = total * 31 + city;
+        h = h * 31 + area;
+        return h ^ (h >>> 16);
+    }
+
+    private void grow(int capacity) {
+        price = Arrays.copyOf(price, capacity);
+        sqm = Arrays.copyOf(sqm, capacity);
+        numberOfRooms = Arrays.copyOf(numberOfRooms, capacity);
+        floor = Arrays.copyOf(floor, capacity);
+        cityId = Arrays.copyOf(cityId, capacity);
+        genre = Arrays.copyOf(genre, capacity);
+        kind = Arrays.copyOf(kind, capacity);
+        totalPrice = Arrays.copyOf(totalPrice, capacity);
+
+        // Keep the dedup table at most half full
+        if (slots != null && capacity * 2 > slots.length) {
+            slots = rehash(Integer.highestOneBit(capacity) << 2);
+        }
+    }
+
+    private int[] rehash(int tableSize) {
+        int[] rehashed = new int[tableSize];
+        int mask = rehashed.length - 1;
+        for (int row = 0; row < size; row++) {
+            int slot = hash(totalPrice[row], cityId[row], sqm[row]) & mask;
+            while (rehashed[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            rehashed[slot] = row + 1;
+        }
+        return rehashed;
+    }
+
+    private int[] sortedRows() {
+        if (order != null) {
+            return order;
+        }
+        // Rank cities by String order once, so rows compare on ints only
+        int[] cityRank = new int[cities.size()];
+        Integer[] byName = new Integer[cities.size()];
+        for (int i = 0; i < byName.length; i++) {
+            byName[i] = i;
+        }
+        Arrays.sort(byName, (a, b) -> cities.get(a).compareTo(cities.get(b)));
+        for (int rank = 0; rank < byName.length; rank++) {
+            cityRank[byName[rank]] = rank;
+        }
+
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = i;
+        }
+        mergeSort(rows, new int[size], 0, size, cityRank);
+        order = rows;
+        return rows;
+    }
+
+    private int compareRows(int a, int b, int[] cityRank) {
+        int result = Integer.compare(totalPrice[a], totalPrice[b]);
+        if (result != 0) {
+            return result;
+        }
+        int rankA = cityId[a] < 0 ? -1 : cityRank[cityId[a]];
+        int rankB = cityId[b] < 0 ? -1 : cityRank[cityId[b]];
+        result = Integer.compare(rankA, rankB);
+        if (result != 0) {
+            return result;
+        }
+        return Integer.compare(sqm[a], sqm[b]);
+    }
+
+    private void mergeSort(int[] rows, int[] scratch, int from, int to, int[] cityRank) {
+        if (to - from < 32) {
+            for (int i = from + 1; i < to; i++) {
+                int row = rows[i];
+                int j = i - 1;
+                while (j >= from && compareRows(rows[j], row, cityRank) > 0) {
+                    rows[j + 1] = rows[j];
+                    j--;
+                }
+                rows[j + 1] = row;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(rows, scratch, from, mid, cityRank);
+        mergeSort(rows, scratch, mid, to, cityRank);
+        if (compareRows(rows[mid - 1], rows[mid], cityRank) <= 0) {
+            return;
+        }
+        System.arraycopy(rows, from, scratch, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && compareRows(scratch[left], scratch[right], cityRank) <= 0)) {
+                rows[i] = scratch[left++];
+            } else {
+                rows[i] = scratch[right++];
+            }
+        }
+    }
+}
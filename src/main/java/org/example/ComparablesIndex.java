@@ -0,0 +1,386 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// ===================== ComparablesIndex CLASS =====================
+// k-nearest-neighbour index for "listings most similar to this one". Every listing is a
+// point of weighted attributes (see point): a doubling of area, rooms or price per sqm
+// is one unit of distance, being a panel or not one unit, ten floors one unit and
+// insulation half a unit; distance is Euclidean. Only listings of the same genre are
+// compared.
+//
+// Per genre the points live in a log-structured set of static k-d trees: additions
+// collect in a small buffer, and a full buffer is merged with the occupied levels
+// below the first free one into a single balanced tree there (binary-counter style).
+// Any insertion order thus keeps every tree balanced, at amortized O(log^2 n) per add.
+// Removal only marks the entry; a tree is rebuilt once half of its entries are gone.
+class ComparablesIndex {
+    static final int DIMENSIONS = 6;
+    private static final double PANEL_WEIGHT = 1.0;
+    private static final double FLOOR_WEIGHT = 0.1;
+    private static final double INSULATION_WEIGHT = 0.5;
+    private static final int BUFFER_SIZE = 64;
+    private static final int LEAF_SIZE = 8;
+
+    private final Map<Genre, Partition> partitions = new HashMap<>();
+    // Listing instance -> its entry, as stores remove exact instances
+    private final Map<RealEstate, Entry> entries = new IdentityHashMap<>();
+
+    private static final class Entry {
+        final RealEstate property;
+        boolean removed;
+        Tree tree;  // null while in the buffer
+
+        Entry(RealEstate property) {
+            this.property = property;
+        }
+    }
+
+    public synchronized void add(RealEstate property) {
+        Entry previous = entries.get(property);
+        if (previous != null) {
+            // Same instance again, e.g. when the index was built while listings were added
+            remove(previous);
+        }
+        Entry entry = new Entry(property);
+        entries.put(property, entry);
+        partitions.computeIfAbsent(property.getGenre(), genre -> new Partition()).add(entry);
+    }
+
+    public synchronized void addAll(RealEstate[] properties) {
+        Map<Genre, List<Entry>> added = new HashMap<>();
+        for (RealEstate property : properties) {
+            Entry previous = entries.get(property);
+            if (previous != null) {
+                remove(previous);
+            }
+            Entry entry = new Entry(property);
+            entries.put(property, entry);
+            added.computeIfAbsent(property.getGenre(), genre -> new ArrayList<>()).add(entry);
+        }
+        for (Map.Entry<Genre, List<Entry>> genre : added.entrySet()) {
+            partitions.computeIfAbsent(genre.getKey(), key -> new Partition()).addAll(genre.getValue());
+        }
+    }
+
+    // Must be called with the values the listing had while it was added
+    public synchronized void remove(RealEstate property) {
+        Entry entry = entries.get(property);
+        if (entry != null) {
+            remove(entry);
+        }
+    }
+
+    public synchronized void clear() {
+        partitions.clear();
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Up to k listings of the reference's genre closest to it, nearest first; the
+    // reference itself is never returned
+    public synchronized List<RealEstate> nearest(RealEstate reference, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        Partition partition = partitions.get(reference.getGenre());
+        Neighbours best = new Neighbours(k);
+        if (partition != null && k > 0) {
+            partition.search(point(reference), reference, best);
+        }
+        return best.toList();
+    }
+
+    // Distance between two listings as the index measures it, regardless of genre
+    static double distance(RealEstate a, RealEstate b) {
+        return Math.sqrt(squaredDistance(point(a), point(b), 0));
+    }
+
+    static double[] point(RealEstate property) {
+        double[] point = new double[DIMENSIONS];
+        point(property, point, 0);
+        return point;
+    }
+
+    private static void point(RealEstate property, double[] into, int offset) {
+        into[offset] = log2(property.getSqm());
+        into[offset + 1] = log2(property.getNumberOfRooms() + 1.0);
+        into[offset + 2] = log2(property.getPrice());
+        if (property instanceof Panel) {
+            Panel panel = (Panel) property;
+            into[offset + 3] = PANEL_WEIGHT;
+            into[offset + 4] = panel.getFloor() * FLOOR_WEIGHT;
+            into[offset + 5] = panel.isInsulated() ? INSULATION_WEIGHT : 0;
+        } else {
+            into[offset + 3] = 0;
+            into[offset + 4] = 0;
+            into[offset + 5] = 0;
+        }
+    }
+
+    // Non-positive values (malformed listings) all map to 0
+    private static double log2(double value) {
+        return value > 0 ? Math.log(value) / Math.log(2) : 0;
+    }
+
+    private static double squaredDistance(double[] query, double[] coords, int offset) {
+        double sum = 0;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double diff = query[d] - coords[offset + d];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry.property);
+        entry.removed = true;
+        partitions.get(entry.property.getGenre()).removed(entry);
+    }
+
+    // ---------------- One genre ----------------
+    private static final class Partition {
+        final List<Entry> buffer = new ArrayList<>();
+        // levels[i] holds at most BUFFER_SIZE << i entries, or is null
+        Tree[] levels = new Tree[4];
+
+        void add(Entry entry) {
+            buffer.add(entry);
+            if (buffer.size() == BUFFER_SIZE) {
+                List<Entry> carry = new ArrayList<>(buffer);
+                buffer.clear();
+                int level = 0;
+                while (level < levels.length && levels[level] != null) {
+                    levels[level].addLiveTo(carry);
+                    levels[level] = null;
+                    level++;
+                }
+                place(level, carry);
+            }
+        }
+
+        // Everything already here and the new entries become one tree
+        void addAll(List<Entry> added) {
+            List<Entry> all = new ArrayList<>(added);
+            all.addAll(buffer);
+            buffer.clear();
+            for (int level = 0; level < levels.length; level++) {
+                if (levels[level] != null) {
+                    levels[level].addLiveTo(all);
+                    levels[level] = null;
+                }
+            }
+            int level = 0;
+            while ((long) BUFFER_SIZE << level < all.size()) {
+                level++;
+            }
+            place(level, all);
+        }
+
+        void removed(Entry entry) {
+            Tree tree = entry.tree;
+            if (tree == null) {
+                buffer.remove(entry);
+                return;
+            }
+            tree.removed++;
+            if (tree.removed * 2 > tree.entries.length) {
+                for (int level = 0; level < levels.length; level++) {
+                    if (levels[level] == tree) {
+                        List<Entry> live = new ArrayList<>();
+                        tree.addLiveTo(live);
+                        levels[level] = live.isEmpty() ? null : new Tree(live);
+                        break;
+                    }
+                }
+            }
+        }
+
+        void search(double[] query, RealEstate exclude, Neighbours best) {
+            for (Entry entry : buffer) {
+                if (entry.property != exclude) {
+                    best.offer(squaredDistance(query, point(entry.property), 0), entry.property);
+                }
+            }
+            for (Tree tree : levels) {
+                if (tree != null) {
+                    tree.search(0, tree.entries.length, query, exclude, best);
+                }
+            }
+        }
+
+        private void place(int level, List<Entry> entries) {
+            if (level >= levels.length) {
+                levels = Arrays.copyOf(levels, level + 1);
+            }
+            levels[level] = entries.isEmpty() ? null : new Tree(entries);
+        }
+    }
+
+    // ---------------- Static k-d tree ----------------
+    // Implicit tree over a range of the arrays: the median of [lo, hi) sits at
+    // mid = (lo + hi) >>> 1, split on splitDims[mid]; ranges of LEAF_SIZE or fewer are scanned
+    private static final class Tree {
+        final Entry[] entries;
+        final double[] coords;  // DIMENSIONS per entry, in entries order
+        final byte[] splitDims;
+        int removed;
+
+        Tree(List<Entry> live) {
+            entries = live.toArray(new Entry[0]);
+            coords = new double[entries.length * DIMENSIONS];
+            splitDims = new byte[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i].tree = this;
+                point(entries[i].property, coords, i * DIMENSIONS);
+            }
+            build(0, entries.length);
+        }
+
+        void addLiveTo(List<Entry> into) {
+            for (Entry entry : entries) {
+                if (!entry.removed) {
+                    into.add(entry);
+                }
+            }
+        }
+
+        private void build(int lo, int hi) {
+            if (hi - lo <= LEAF_SIZE) {
+                return;
+            }
+            int dim = widestDimension(lo, hi);
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi - 1, mid, dim);
+            splitDims[mid] = (byte) dim;
+            build(lo, mid);
+            build(mid + 1, hi);
+        }
+
+        private int widestDimension(int lo, int hi) {
+            int widest = 0;
+            double widestSpread = -1;
+            for (int d = 0; d < DIMENSIONS; d++) {
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                for (int i = lo; i < hi; i++) {
+                    double value = coords[i * DIMENSIONS + d];
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+                if (max - min > widestSpread) {
+                    widestSpread = max - min;
+                    widest = d;
+                }
+            }
+            return widest;
+        }
+
+        // Quickselect: afterwards [left, k) <= k <= (k, right] on dimension dim
+        private void select(int left, int right, int k, int dim) {
+            while (left < right) {
+                double pivot = coords[((left + right) >>> 1) * DIMENSIONS + dim];
+                int i = left;
+                int j = right;
+                while (i <= j) {
+                    while (coords[i * DIMENSIONS + dim] < pivot) i++;
+                    while (coords[j * DIMENSIONS + dim] > pivot) j--;
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                if (k <= j) {
+                    right = j;
+                } else if (k >= i) {
+                    left = i;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void swap(int a, int b) {
+            Entry entry = entries[a];
+            entries[a] = entries[b];
+            entries[b] = entry;
+            for (int d = 0; d < DIMENSIONS; d++) {
+                double value = coords[a * DIMENSIONS + d];
+                coords[a * DIMENSIONS + d] = coords[b * DIMENSIONS + d];
+                coords[b * DIMENSIONS + d] = value;
+            }
+        }
+
+        void search(int lo, int hi, double[] query, RealEstate exclude, Neighbours best) {
+            if (hi - lo <= LEAF_SIZE) {
+                for (int i = lo; i < hi; i++) {
+                    consider(i, query, exclude, best);
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            double diff = query[splitDims[mid]] - coords[mid * DIMENSIONS + splitDims[mid]];
+            if (diff < 0) {
+                search(lo, mid, query, exclude, best);
+                consider(mid, query, exclude, best);
+                if (diff * diff < best.worst()) {
+                    search(mid + 1, hi, query, exclude, best);
+                }
+            } else {
+                search(mid + 1, hi, query, exclude, best);
+                consider(mid, query, exclude, best);
+                if (diff * diff < best.worst()) {
+                    search(lo, mid, query, exclude, best);
+                }
+            }
+        }
+
+        private void consider(int i, double[] query, RealEstate exclude, Neighbours best) {
+            Entry entry = entries[i];
+            if (!entry.removed && entry.property != exclude) {
+                best.offer(squaredDistance(query, coords, i * DIMENSIONS), entry.property);
+            }
+        }
+    }
+
+    // The k best candidates so far, sorted by squared distance
+    private static final class Neighbours {
+        final double[] distances;
+        final RealEstate[] properties;
+        int size;
+
+        Neighbours(int k) {
+            distances = new double[k];
+            properties = new RealEstate[k];
+        }
+
+        double worst() {
+            return size < distances.length ? Double.POSITIVE_INFINITY : distances[size - 1];
+        }
+
+        void offer(double distance, RealEstate property) {
+            if (distance >= worst()) {
+                return;
+            }
+            int i = size < distances.length ? size++ : size - 1;
+            while (i > 0 && distances[i - 1] > distance) {
+                distances[i] = distances[i - 1];
+                properties[i] = properties[i - 1];
+                i--;
+            }
+            distances[i] = distance;
+            properties[i] = property;
+        }
+
+        List<RealEstate> toList() {
+            return new ArrayList<>(Arrays.asList(properties).subList(0, size));
+        }
+    }
+}
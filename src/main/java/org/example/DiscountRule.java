@@ -0,0 +1,58 @@
+package org.example;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// ===== DiscountRule =====
+// Percentage discount for one listing in a PricingScenario; 0 leaves it unchanged.
+// A discount of p percent scales the price per sqm exactly like makeDiscount(p).
+interface DiscountRule {
+    int percentageFor(RealEstate property);
+
+    // Percentage per city; spelling, case and accents are ignored as in PricingTable,
+    // and like there each distinct city string is canonicalized only once
+    static DiscountRule byCity(Map<String, Integer> percentages) {
+        Map<String, Integer> canonical = new HashMap<>();
+        percentages.forEach((city, percentage) -> canonical.put(PricingTable.canonicalCity(city), checked(percentage)));
+        Map<String, Integer> bySpelling = new ConcurrentHashMap<>();  // shared by the parallel pass
+        return property -> {
+            String city = property.getCity();
+            if (city == null) {
+                return 0;
+            }
+            Integer percentage = bySpelling.get(city);
+            if (percentage == null) {
+                percentage = canonical.getOrDefault(PricingTable.canonicalCity(city), 0);
+                if (bySpelling.size() < PricingTable.MAX_CACHED_CITIES) {
+                    bySpelling.put(city, percentage);
+                }
+            }
+            return percentage;
+        };
+    }
+
+    static DiscountRule byGenre(Map<Genre, Integer> percentages) {
+        Map<Genre, Integer> copy = new HashMap<>();
+        percentages.forEach((genre, percentage) -> copy.put(genre, checked(percentage)));
+        return property -> property.getGenre() == null ? 0 : copy.getOrDefault(property.getGenre(), 0);
+    }
+
+    // Panels on floors minFloor..maxFloor inclusive; other listings are unchanged
+    static DiscountRule panelFloors(int minFloor, int maxFloor, int percentage) {
+        if (minFloor > maxFloor) {
+            throw new IllegalArgumentException("Empty floor band: " + minFloor + " > " + maxFloor);
+        }
+        int checkedPercentage = checked(percentage);
+        return property -> property instanceof Panel
+                && ((Panel) property).getFloor() >= minFloor
+                && ((Panel) property).getFloor() <= maxFloor ? checkedPercentage : 0;
+    }
+
+    private static int checked(Integer percentage) {
+        if (percentage == null || percentage < 0 || percentage > 100) {
+            throw new IllegalArgumentException("Discount must be between 0 and 100: " + percentage);
+        }
+        return percentage;
+    }
+}
@@ -0,0 +1,138 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// ===================== EqualPriceGroups CLASS =====================
+// Every set of two or more listings with the same total price, found in one hashed pass
+// instead of hasSameAmount over all pairs. Besides the stored listings it takes those the
+// collection dropped on ingest as equal (per compareTo) to a stored one, i.e. with the
+// same total price, city and sqm, so such would-be duplicates show up in their group.
+//
+// The pass computes each total price once and chains listings of equal price through an
+// open-addressed int table, so apart from the result nothing is allocated per listing.
+class EqualPriceGroups {
+    private final List<Group> groups;
+    private final long droppedCount;
+
+    // Listings of one total price: stored ones in collection order, then dropped ones in
+    // the order they were dropped
+    static final class Group {
+        final int totalPrice;
+        final List<RealEstate> stored;
+        final List<RealEstate> dropped;
+
+        Group(int totalPrice, List<RealEstate> stored, List<RealEstate> dropped) {
+            this.totalPrice = totalPrice;
+            this.stored = stored;
+            this.dropped = dropped;
+        }
+
+        public int getTotalPrice() { return totalPrice; }
+        public List<RealEstate> getStored() { return stored; }
+        public List<RealEstate> getDropped() { return dropped; }
+
+        public int size() {
+            return stored.size() + dropped.size();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("EqualPriceGroup [Total price: %d, Stored: %d, Dropped: %d]",
+                    totalPrice, stored.size(), dropped.size());
+        }
+    }
+
+    private EqualPriceGroups(List<Group> groups, long droppedCount) {
+        this.groups = groups;
+        this.droppedCount = droppedCount;
+    }
+
+    // droppedCount may exceed dropped.size() when not every dropped listing was kept
+    static EqualPriceGroups of(RealEstate[] stored, List<RealEstate> dropped, long droppedCount) {
+        int n = stored.length + dropped.size();
+        RealEstate[] listings = Arrays.copyOf(stored, n);
+        for (int i = 0; i < dropped.size(); i++) {
+            listings[stored.length + i] = dropped.get(i);
+        }
+
+        // Slot -> total price, first and last listing (index + 1, 0 = empty) and count;
+        // next[i] links listing i to the following one of the same price
+        int capacity = Integer.highestOneBit(Math.max(2, n) * 2 - 1) << 1;
+        int mask = capacity - 1;
+        int[] prices = new int[capacity];
+        int[] first = new int[capacity];
+        int[] last = new int[capacity];
+        int[] counts = new int[capacity];
+        int[] next = new int[n];
+        int shared = 0;  // slots with at least two listings
+        for (int i = 0; i < n; i++) {
+            int price = listings[i].getTotalPrice();
+            int slot = mix(price) & mask;
+            while (first[slot] != 0 && prices[slot] != price) {
+                slot = (slot + 1) & mask;
+            }
+            if (first[slot] == 0) {
+                prices[slot] = price;
+                first[slot] = i + 1;
+            } else {
+                next[last[slot] - 1] = i + 1;
+            }
+            last[slot] = i + 1;
+            if (++counts[slot] == 2) {
+                shared++;
+            }
+        }
+
+        int[] sharedSlots = new int[shared];
+        int found = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (counts[slot] >= 2) {
+                sharedSlots[found++] = slot;
+            }
+        }
+        // By total price, cheapest first
+        long[] order = new long[shared];
+        for (int g = 0; g < shared; g++) {
+            order[g] = ((long) prices[sharedSlots[g]] << 32) | (sharedSlots[g] & 0xffffffffL);
+        }
+        Arrays.sort(order);
+
+        List<Group> groups = new ArrayList<>(shared);
+        for (long entry : order) {
+            int slot = (int) entry;
+            List<RealEstate> groupStored = new ArrayList<>();
+            List<RealEstate> groupDropped = new ArrayList<>();
+            for (int i = first[slot]; i != 0; i = next[i - 1]) {
+                (i <= stored.length ? groupStored : groupDropped).add(listings[i - 1]);
+            }
+            groups.add(new Group(prices[slot], groupStored, groupDropped));
+        }
+        return new EqualPriceGroups(Collections.unmodifiableList(groups), droppedCount);
+    }
+
+    private static int mix(int price) {
+        int h = price * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    // Listings the collection dropped on ingest as equal to a stored one, kept or not
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    // Listings that share their total price with at least one other
+    public long getListingCount() {
+        long count = 0;
+        for (Group group : groups) {
+            count += group.size();
+        }
+        return count;
+    }
+}
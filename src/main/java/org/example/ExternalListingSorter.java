@@ -0,0 +1,418 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// ===================== ExternalListingSorter CLASS =====================
+// Sorts a listings file of any size with bounded memory. The file is parsed in runs of
+// at most runListings listings; each run is sorted and spilled to a temporary file, and
+// the runs are k-way merged at most fanIn at a time (more runs take extra merge passes).
+// In TOTAL_PRICE order (RealEstate.compareTo) the first of several equal listings in
+// file order is kept, as loadFromFile keeps it, so the output is exactly the order of
+// the in-memory collection. Memory: one run of listing objects while parsing, then
+// fanIn read buffers of BUFFER_SIZE bytes.
+//
+// Run record: int totalPrice, UTF city, int sqm, double price, int rooms, byte genre
+// ordinal, byte kind (bit 0 panel, bit 1 insulated), int floor
+class ExternalListingSorter {
+    static final int DEFAULT_RUN_LISTINGS = 250_000;
+    static final int DEFAULT_FAN_IN = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte KIND_PANEL = 1;
+    private static final byte KIND_INSULATED = 2;
+
+    enum Order {
+        // RealEstate.compareTo, listings equal by it dropped
+        TOTAL_PRICE,
+        // BY_IDENTITY, every listing kept; equal ones stay in file order
+        IDENTITY
+    }
+
+    // Class, city, genre, sqm, rooms, floor and insulation: everything but the price
+    static final Comparator<RealEstate> IDENTITY_KEY = (a, b) -> {
+        boolean panelA = a instanceof Panel;
+        boolean panelB = b instanceof Panel;
+        int comparison = Boolean.compare(panelA, panelB);
+        if (comparison == 0) comparison = a.getCity().compareTo(b.getCity());
+        if (comparison == 0) comparison = a.getGenre().compareTo(b.getGenre());
+        if (comparison == 0) comparison = Integer.compare(a.getSqm(), b.getSqm());
+        if (comparison == 0) comparison = Integer.compare(a.getNumberOfRooms(), b.getNumberOfRooms());
+        if (comparison == 0 && panelA) {
+            comparison = Integer.compare(((Panel) a).getFloor(), ((Panel) b).getFloor());
+            if (comparison == 0) comparison = Boolean.compare(((Panel) a).isInsulated(), ((Panel) b).isInsulated());
+        }
+        return comparison;
+    };
+    static final Comparator<RealEstate> BY_IDENTITY =
+            IDENTITY_KEY.thenComparing((a, b) -> Double.compare(a.getPrice(), b.getPrice()));
+
+    private final int runListings;
+    private final int fanIn;
+    private final Path tempDirectory;
+
+    public ExternalListingSorter() {
+        this(DEFAULT_RUN_LISTINGS, DEFAULT_FAN_IN, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    public ExternalListingSorter(int runListings, int fanIn, Path tempDirectory) {
+        if (runListings < 1 || fanIn < 2) {
+            throw new IllegalArgumentException("Need at least 1 listing per run and a fan-in of 2: "
+                    + runListings + ", " + fanIn);
+        }
+        this.runListings = runListings;
+        this.fanIn = fanIn;
+        this.tempDirectory = tempDirectory;
+    }
+
+    // One spilled run and how many records it holds
+    private static final class Run {
+        final Path file;
+        final long count;
+
+        Run(Path file, long count) {
+            this.file = file;
+            this.count = count;
+        }
+    }
+
+    // The listings of a file in compareTo order; close it to delete the temporary files
+    public Sorted sort(Path input, AgentMetrics metrics) throws IOException {
+        return sort(input, metrics, Order.TOTAL_PRICE);
+    }
+
+    public Sorted sort(Path input, AgentMetrics metrics, Order order) throws IOException {
+        List<Run> runs = new ArrayList<>();
+        long[] dropped = new long[1];
+        try {
+            List<RealEstate> batch = new ArrayList<>();
+            // Platform charset with replacement, like FileReader in loadFromFile
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    Files.newInputStream(input), Charset.defaultCharset()), BUFFER_SIZE)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    RealEstate property = RealEstateAgent.parsePropertyLine(line, metrics);
+                    if (property != null) {
+                        batch.add(property);
+                    }
+                    if (batch.size() == runListings) {
+                        runs.add(spill(batch, order, dropped));
+                        batch.clear();
+                    }
+                }
+            }
+            if (runs.isEmpty()) {
+                // Fits in one run: nothing to spill
+                RealEstate[] sorted = sortRun(batch, order, dropped);
+                return new Sorted(ListingCursor.of(Arrays.asList(sorted).iterator()), null, dropped[0]);
+            }
+            if (!batch.isEmpty()) {
+                runs.add(spill(batch, order, dropped));
+                batch.clear();
+            }
+
+            while (runs.size() > fanIn) {
+                List<Run> merged = new ArrayList<>();
+                for (int from = 0; from < runs.size(); from += fanIn) {
+                    List<Run> group = runs.subList(from, Math.min(runs.size(), from + fanIn));
+                    merged.add(group.size() == 1 ? group.get(0) : mergeToRun(group, order, dropped));
+                }
+                runs = merged;
+            }
+            Merge merge = new Merge(runs, order);
+            return new Sorted(merge, merge, dropped[0]);
+        } catch (IOException | RuntimeException e) {
+            for (Run run : runs) {
+                Files.deleteIfExists(run.file);
+            }
+            throw e;
+        }
+    }
+
+    private static RealEstate[] sortRun(List<RealEstate> batch, Order order, long[] dropped) {
+        if (order == Order.IDENTITY) {
+            RealEstate[] sorted = batch.toArray(new RealEstate[0]);
+            Arrays.sort(sorted, BY_IDENTITY);  // stable
+            return sorted;
+        }
+        List<RealEstate> duplicates = new ArrayList<>();
+        RealEstate[] sorted = ListingSorter.sortUnique(batch, duplicates);
+        dropped[0] += duplicates.size();
+        return sorted;
+    }
+
+    private Run spill(List<RealEstate> batch, Order order, long[] dropped) throws IOException {
+        RealEstate[] sorted = sortRun(batch, order, dropped);
+        Path file = Files.createTempFile(tempDirectory, "listing-run", ".bin");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file), BUFFER_SIZE))) {
+            for (RealEstate property : sorted) {
+                writeRecord(out, property);
+            }
+        }
+        return new Run(file, sorted.length);
+    }
+
+    private Run mergeToRun(List<Run> group, Order order, long[] dropped) throws IOException {
+        Path file = Files.createTempFile(tempDirectory, "listing-run", ".bin");
+        long count = 0;
+        try (Merge merge = new Merge(group, order);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     Files.newOutputStream(file), BUFFER_SIZE))) {
+            while (merge.next()) {
+                merge.current.writeTo(out);
+                count++;
+            }
+            dropped[0] += merge.duplicates;
+        }
+        for (Run run : group) {
+            Files.deleteIfExists(run.file);
+        }
+        return new Run(file, count);
+    }
+
+    private static void writeRecord(DataOutputStream out, RealEstate property) throws IOException {
+        boolean panel = property instanceof Panel;
+        out.writeInt(property.getTotalPrice());
+        out.writeUTF(property.getCity());
+        out.writeInt(property.getSqm());
+        out.writeDouble(property.getPrice());
+        out.writeInt(property.getNumberOfRooms());
+        out.writeByte(property.getGenre().ordinal());
+        out.writeByte((panel ? KIND_PANEL : 0) | (panel && ((Panel) property).isInsulated() ? KIND_INSULATED : 0));
+        out.writeInt(panel ? ((Panel) property).getFloor() : 0);
+    }
+
+    // ---------------- Result ----------------
+    // Forward-only cursor over the sorted listings
+    static class Sorted implements ListingCursor, Closeable {
+        private final ListingCursor cursor;
+        private final Merge merge;  // null when the file fit in one run
+        private final long droppedBeforeMerge;
+
+        Sorted(ListingCursor cursor, Merge merge, long droppedBeforeMerge) {
+            this.cursor = cursor;
+            this.merge = merge;
+            this.droppedBeforeMerge = droppedBeforeMerge;
+        }
+
+        // Listings left out so far as equal to an earlier one of the file
+        public long getDroppedCount() {
+            return droppedBeforeMerge + (merge == null ? 0 : merge.duplicates);
+        }
+
+        @Override public boolean next() { return cursor.next(); }
+        @Override public String getCity() { return cursor.getCity(); }
+        @Override public Genre getGenre() { return cursor.getGenre(); }
+        @Override public double getPrice() { return cursor.getPrice(); }
+        @Override public int getSqm() { return cursor.getSqm(); }
+        @Override public int getNumberOfRooms() { return cursor.getNumberOfRooms(); }
+        @Override public int getTotalPrice() { return cursor.getTotalPrice(); }
+        @Override public boolean isPanel() { return cursor.isPanel(); }
+        @Override public int getFloor() { return cursor.getFloor(); }
+        @Override public boolean isInsulated() { return cursor.isInsulated(); }
+
+        @Override
+        public void appendTo(StreamingTextWriter out) throws IOException {
+            cursor.appendTo(out);
+        }
+
+        @Override
+        public RealEstate materialize() {
+            return cursor.materialize();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (merge != null) {
+                merge.close();
+            }
+        }
+    }
+
+    // ---------------- Merging ----------------
+    // One run being read; fields describe its current record
+    private static final class RunReader {
+        private static final Genre[] GENRES = Genre.values();
+
+        final Run run;
+        final int order;  // position of the run in file order; earlier runs win ties
+        final DataInputStream in;
+        long remaining;
+
+        int totalPrice;
+        String city;
+        int sqm;
+        double price;
+        int rooms;
+        Genre genre;
+        byte kind;
+        int floor;
+
+        RunReader(Run run, int order) throws IOException {
+            this.run = run;
+            this.order = order;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.file), BUFFER_SIZE));
+            this.remaining = run.count;
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            totalPrice = in.readInt();
+            city = in.readUTF();
+            sqm = in.readInt();
+            price = in.readDouble();
+            rooms = in.readInt();
+            genre = GENRES[in.readByte()];
+            kind = in.readByte();
+            floor = in.readInt();
+            return true;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(totalPrice);
+            out.writeUTF(city);
+            out.writeInt(sqm);
+            out.writeDouble(price);
+            out.writeInt(rooms);
+            out.writeByte(genre.ordinal());
+            out.writeByte(kind);
+            out.writeInt(floor);
+        }
+
+        // Same order as RealEstate.compareTo: total price, then city, then sqm
+        int compareKey(RunReader other) {
+            int comparison = Integer.compare(totalPrice, other.totalPrice);
+            if (comparison == 0) {
+                comparison = city.compareTo(other.city);
+            }
+            return comparison != 0 ? comparison : Integer.compare(sqm, other.sqm);
+        }
+
+        // Same order as BY_IDENTITY
+        int compareIdentity(RunReader other) {
+            boolean panel = (kind & KIND_PANEL) != 0;
+            int comparison = Boolean.compare(panel, (other.kind & KIND_PANEL) != 0);
+            if (comparison == 0) comparison = city.compareTo(other.city);
+            if (comparison == 0) comparison = genre.compareTo(other.genre);
+            if (comparison == 0) comparison = Integer.compare(sqm, other.sqm);
+            if (comparison == 0) comparison = Integer.compare(rooms, other.rooms);
+            if (comparison == 0 && panel) {
+                comparison = Integer.compare(floor, other.floor);
+                if (comparison == 0) comparison = Boolean.compare((kind & KIND_INSULATED) != 0, (other.kind & KIND_INSULATED) != 0);
+            }
+            return comparison != 0 ? comparison : Double.compare(price, other.price);
+        }
+    }
+
+    // k-way merge of runs; in TOTAL_PRICE order it skips records equal to the one before
+    private static final class Merge implements ListingCursor, Closeable {
+        private final boolean unique;
+        private final List<RunReader> readers = new ArrayList<>();
+        private final PriorityQueue<RunReader> queue;
+        private RunReader current;
+        // Key of the last record returned
+        private boolean started;
+        private int lastTotalPrice;
+        private String lastCity;
+        private int lastSqm;
+        long duplicates;
+
+        Merge(List<Run> runs, Order order) throws IOException {
+            unique = order == Order.TOTAL_PRICE;
+            queue = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+                int comparison = unique ? a.compareKey(b) : a.compareIdentity(b);
+                return comparison != 0 ? comparison : Integer.compare(a.order, b.order);
+            });
+            try {
+                for (Run run : runs) {
+                    RunReader reader = new RunReader(run, readers.size());
+                    readers.add(reader);
+                    if (reader.advance()) {
+                        queue.add(reader);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean next() {
+            try {
+                while (true) {
+                    if (current != null && current.advance()) {
+                        queue.add(current);
+                    }
+                    current = queue.poll();
+                    if (current == null) {
+                        return false;
+                    }
+                    if (unique && started && current.totalPrice == lastTotalPrice && current.sqm == lastSqm
+                            && current.city.equals(lastCity)) {
+                        duplicates++;
+                        continue;
+                    }
+                    started = true;
+                    lastTotalPrice = current.totalPrice;
+                    lastCity = current.city;
+                    lastSqm = current.sqm;
+                    return true;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error reading sort run: " + e.getMessage(), e);
+            }
+        }
+
+        @Override public String getCity() { return current.city; }
+        @Override public Genre getGenre() { return current.genre; }
+        @Override public double getPrice() { return current.price; }
+        @Override public int getSqm() { return current.sqm; }
+        @Override public int getNumberOfRooms() { return current.rooms; }
+        @Override public int getTotalPrice() { return current.totalPrice; }
+        @Override public boolean isPanel() { return (current.kind & KIND_PANEL) != 0; }
+        @Override public int getFloor() { return current.floor; }
+        @Override public boolean isInsulated() { return (current.kind & KIND_INSULATED) != 0; }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (RunReader reader : readers) {
+                try {
+                    reader.in.close();
+                    Files.deleteIfExists(reader.run.file);
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
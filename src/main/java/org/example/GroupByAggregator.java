@@ -0,0 +1,403 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// ===================== GroupByAggregator CLASS =====================
+// Group-by statistics over a snapshot: any number of groupings (e.g. city x genre, or
+// insulation x floor band) are answered in one pass, calling getTotalPrice() once per
+// listing. Every range of the snapshot fills its own hash table per grouping; in parallel
+// mode the ranges are fixed and merged left to right like ReportAggregator's, so sums and
+// the order of groups do not depend on thread scheduling.
+class GroupByAggregator {
+    static final int DEFAULT_FLOOR_BAND_WIDTH = 3;
+
+    private final ForkJoinPool pool;
+    private final int splitThreshold;
+
+    public GroupByAggregator() {
+        this(null, ReportAggregator.DEFAULT_SPLIT_THRESHOLD);
+    }
+
+    // A null pool means sequential aggregation
+    public GroupByAggregator(ForkJoinPool pool, int splitThreshold) {
+        if (splitThreshold <= 0) {
+            throw new IllegalArgumentException("Split threshold must be positive: " + splitThreshold);
+        }
+        this.pool = pool;
+        this.splitThreshold = splitThreshold;
+    }
+
+    public static GroupByAggregator parallel() {
+        return new GroupByAggregator(ForkJoinPool.commonPool(), ReportAggregator.DEFAULT_SPLIT_THRESHOLD);
+    }
+
+    // ---------------- Groupings ----------------
+    // CITY groups by PropertyQuery.cityKey. The Panel dimensions only group panels:
+    // a grouping that uses one of them skips every other listing.
+    enum Dimension { CITY, GENRE, FLOOR_BAND, INSULATED }
+
+    // roomPrice is a Panel method, so ROOM_PRICE only has values for panels
+    enum Measure { PRICE, TOTAL_PRICE, AVERAGE_SQM_PER_ROOM, ROOM_PRICE }
+
+    static final class Grouping {
+        private final Dimension[] dimensions;
+        private final int floorBandWidth;
+        private final boolean panelsOnly;
+
+        private Grouping(Dimension[] dimensions, int floorBandWidth) {
+            if (floorBandWidth <= 0) {
+                throw new IllegalArgumentException("Floor band width must be positive: " + floorBandWidth);
+            }
+            this.dimensions = dimensions.clone();
+            this.floorBandWidth = floorBandWidth;
+            List<Dimension> list = Arrays.asList(dimensions);
+            this.panelsOnly = list.contains(Dimension.FLOOR_BAND) || list.contains(Dimension.INSULATED);
+        }
+
+        // No dimensions: a single group over the whole collection
+        public static Grouping by(Dimension... dimensions) {
+            return new Grouping(dimensions, DEFAULT_FLOOR_BAND_WIDTH);
+        }
+
+        // Floors 0..width-1 form band 0, the next width floors band 1, and so on
+        public Grouping floorBandWidth(int width) {
+            return new Grouping(dimensions, width);
+        }
+
+        public List<Dimension> getDimensions() {
+            return Collections.unmodifiableList(Arrays.asList(dimensions));
+        }
+
+        public int getFloorBandWidth() {
+            return floorBandWidth;
+        }
+
+        @Override
+        public String toString() {
+            return "Grouping " + Arrays.toString(dimensions);
+        }
+    }
+
+    // ---------------- Results ----------------
+    // Count, sum, min, max and average of one measure within one group
+    static final class Stats {
+        private long count;
+        // Compensated sum, same scheme as ReportAggregator
+        private double sum;
+        private double compensation;
+        private double simpleSum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        void add(double value) {
+            count++;
+            addToSum(value);
+            simpleSum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        void merge(Stats right) {
+            count += right.count;
+            addToSum(right.sum);
+            addToSum(-right.compensation);
+            simpleSum += right.simpleSum;
+            min = Math.min(min, right.min);
+            max = Math.max(max, right.max);
+        }
+
+        public long getCount() { return count; }
+        public double getMin() { return count > 0 ? min : Double.NaN; }
+        public double getMax() { return count > 0 ? max : Double.NaN; }
+        public double getAverage() { return count > 0 ? getSum() / count : Double.NaN; }
+
+        public double getSum() {
+            double result = sum - compensation;
+            if (Double.isNaN(result) && Double.isInfinite(simpleSum)) {
+                return simpleSum;
+            }
+            return result;
+        }
+
+        private void addToSum(double value) {
+            double tmp = value - compensation;
+            double next = sum + tmp;
+            compensation = (next - sum) - tmp;
+            sum = next;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d, sum=%.2f, min=%.2f, max=%.2f, avg=%.2f",
+                    count, getSum(), getMin(), getMax(), getAverage());
+        }
+    }
+
+    // One group: its listing count and the statistics of every measure
+    static final class Group {
+        private long count;
+        private final Map<Measure, Stats> measures = new EnumMap<>(Measure.class);
+
+        Group() {
+            for (Measure measure : Measure.values()) {
+                measures.put(measure, new Stats());
+            }
+        }
+
+        public long getCount() { return count; }
+        public Stats get(Measure measure) { return measures.get(measure); }
+
+        void merge(Group right) {
+            count += right.count;
+            for (Measure measure : Measure.values()) {
+                measures.get(measure).merge(right.measures.get(measure));
+            }
+        }
+    }
+
+    // Groups of one grouping, keyed by one value per dimension (String city key, Genre,
+    // Integer first floor of the band, Boolean insulated; null where the listing has none),
+    // sorted by key
+    static final class Result {
+        private final Grouping grouping;
+        private final Map<List<Object>, Group> groups;
+
+        private Result(Grouping grouping, Map<List<Object>, Group> groups) {
+            this.grouping = grouping;
+            this.groups = groups;
+        }
+
+        public Grouping getGrouping() { return grouping; }
+        public Map<List<Object>, Group> getGroups() { return groups; }
+
+        public Group get(Object... key) {
+            return groups.get(Arrays.asList(key));
+        }
+    }
+
+    // ---------------- Aggregation ----------------
+    public List<Result> aggregate(RealEstate[] snapshot, Grouping... groupings) {
+        Partial partial = pool == null || snapshot.length <= splitThreshold
+                ? new Partial(groupings).accumulate(snapshot, 0, snapshot.length)
+                : pool.invoke(new GroupTask(snapshot, 0, snapshot.length, splitThreshold, groupings));
+        List<Result> results = new ArrayList<>(groupings.length);
+        for (int i = 0; i < groupings.length; i++) {
+            List<Map.Entry<Key, Group>> entries = new ArrayList<>(partial.tables.get(i).entrySet());
+            entries.sort(Map.Entry.comparingByKey(Key.order(groupings[i])));
+            Map<List<Object>, Group> groups = new LinkedHashMap<>();
+            for (Map.Entry<Key, Group> entry : entries) {
+                groups.put(entry.getKey().values(groupings[i]), entry.getValue());
+            }
+            results.add(new Result(groupings[i], Collections.unmodifiableMap(groups)));
+        }
+        return results;
+    }
+
+    // Group key of one listing; fields a grouping does not use stay at their defaults
+    private static final class Key {
+        private static final Comparator<String> CITY_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+
+        String city;
+        int genre = -1;       // Genre ordinal, -1 for none
+        int floorBand = -1;
+        int insulated = -1;   // 0 or 1
+
+        Key copy() {
+            Key copy = new Key();
+            copy.city = city;
+            copy.genre = genre;
+            copy.floorBand = floorBand;
+            copy.insulated = insulated;
+            return copy;
+        }
+
+        List<Object> values(Grouping grouping) {
+            List<Object> values = new ArrayList<>(grouping.dimensions.length);
+            for (Dimension dimension : grouping.dimensions) {
+                switch (dimension) {
+                    case CITY:
+                        values.add(city);
+                        break;
+                    case GENRE:
+                        values.add(genre < 0 ? null : Genre.values()[genre]);
+                        break;
+                    case FLOOR_BAND:
+                        values.add(floorBand * grouping.floorBandWidth);  // first floor of the band
+                        break;
+                    default:
+                        values.add(insulated == 1);
+                        break;
+                }
+            }
+            return Collections.unmodifiableList(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return genre == other.genre && floorBand == other.floorBand && insulated == other.insulated
+                    && Objects.equals(city, other.city);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = Objects.hashCode(city);
+            h = h * 31 + genre;
+            h = h * 31 + floorBand;
+            return h * 31 + insulated;
+        }
+
+        // Compares dimension by dimension in the order the grouping lists them
+        static Comparator<Key> order(Grouping grouping) {
+            Comparator<Key> order = (a, b) -> 0;
+            for (Dimension dimension : grouping.dimensions) {
+                switch (dimension) {
+                    case CITY:
+                        order = order.thenComparing(key -> key.city, CITY_ORDER);
+                        break;
+                    case GENRE:
+                        order = order.thenComparingInt(key -> key.genre);
+                        break;
+                    case FLOOR_BAND:
+                        order = order.thenComparingInt(key -> key.floorBand);
+                        break;
+                    default:
+                        order = order.thenComparingInt(key -> key.insulated);
+                        break;
+                }
+            }
+            return order;
+        }
+    }
+
+    // Per-range hash tables, one per grouping; merge() must be applied in range order
+    private static class Partial {
+        final Grouping[] groupings;
+        final List<Map<Key, Group>> tables = new ArrayList<>();
+        // Raw city spelling -> key, so keys are not re-derived for every listing
+        private final Map<String, String> cityKeys = new HashMap<>();
+        private final Key probe = new Key();
+
+        Partial(Grouping[] groupings) {
+            this.groupings = groupings;
+            for (int i = 0; i < groupings.length; i++) {
+                tables.add(new HashMap<>());
+            }
+        }
+
+        Partial accumulate(RealEstate[] properties, int from, int to) {
+            for (int i = from; i < to; i++) {
+                RealEstate property = properties[i];
+                Panel panel = property instanceof Panel ? (Panel) property : null;
+                double total = property.getTotalPrice();
+                double roomPrice = panel == null ? Double.NaN : panel.roomPrice();
+                String city = property.getCity() == null ? null
+                        : cityKeys.computeIfAbsent(property.getCity(), PropertyQuery::cityKey);
+
+                for (int g = 0; g < groupings.length; g++) {
+                    Grouping grouping = groupings[g];
+                    if (grouping.panelsOnly && panel == null) {
+                        continue;
+                    }
+                    fillProbe(grouping, property, panel, city);
+                    Map<Key, Group> table = tables.get(g);
+                    Group group = table.get(probe);
+                    if (group == null) {
+                        group = new Group();
+                        table.put(probe.copy(), group);
+                    }
+                    group.count++;
+                    group.measures.get(Measure.PRICE).add(property.getPrice());
+                    group.measures.get(Measure.TOTAL_PRICE).add(total);
+                    group.measures.get(Measure.AVERAGE_SQM_PER_ROOM).add(property.averageSqmPerRoom());
+                    if (panel != null) {
+                        group.measures.get(Measure.ROOM_PRICE).add(roomPrice);
+                    }
+                }
+            }
+            return this;
+        }
+
+        private void fillProbe(Grouping grouping, RealEstate property, Panel panel, String city) {
+            probe.city = null;
+            probe.genre = -1;
+            probe.floorBand = -1;
+            probe.insulated = -1;
+            for (Dimension dimension : grouping.dimensions) {
+                switch (dimension) {
+                    case CITY:
+                        probe.city = city;
+                        break;
+                    case GENRE:
+                        probe.genre = property.getGenre() == null ? -1 : property.getGenre().ordinal();
+                        break;
+                    case FLOOR_BAND:
+                        probe.floorBand = Math.floorDiv(panel.getFloor(), grouping.floorBandWidth);
+                        break;
+                    default:
+                        probe.insulated = panel.isInsulated() ? 1 : 0;
+                        break;
+                }
+            }
+        }
+
+        Partial merge(Partial right) {
+            for (int g = 0; g < tables.size(); g++) {
+                Map<Key, Group> table = tables.get(g);
+                for (Map.Entry<Key, Group> entry : right.tables.get(g).entrySet()) {
+                    Group group = table.get(entry.getKey());
+                    if (group == null) {
+                        table.put(entry.getKey(), entry.getValue());
+                    } else {
+                        group.merge(entry.getValue());
+                    }
+                }
+            }
+            return this;
+        }
+    }
+
+    private static class GroupTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final RealEstate[] properties;
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final Grouping[] groupings;
+
+        GroupTask(RealEstate[] properties, int from, int to, int threshold, Grouping[] groupings) {
+            this.properties = properties;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.groupings = groupings;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= threshold) {
+                return new Partial(groupings).accumulate(properties, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            GroupTask left = new GroupTask(properties, from, mid, threshold, groupings);
+            GroupTask right = new GroupTask(properties, mid, to, threshold, groupings);
+            right.fork();
+            return left.compute().merge(right.join());
+        }
+    }
+}
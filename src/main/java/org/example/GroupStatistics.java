@@ -0,0 +1,205 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+// ===================== GroupStatistics CLASS =====================
+// Per-group price statistics kept in step with one store, next to ReportStatistics: for
+// every (city, genre) pair a bounded heap of its most expensive listings and quantile
+// sketches of total price and, for panels, room price. City-only and genre-only answers
+// merge the pairs, so memory stays bounded per pair (capacity listings plus two sketches).
+//
+// Each heap holds exactly the top heap.size() listings of its pair in compareTo order.
+// Removing a listing from the heap only shrinks it; the heap is refilled from the store's
+// city index when a query asks for more than it holds.
+class GroupStatistics {
+    static final int DEFAULT_TOP_K = 10;
+
+    private final int capacity;
+    private final double relativeAccuracy;
+    private final Map<GroupKey, Group> groups = new HashMap<>();
+    // Raw city spelling -> key, so keys are not re-derived on every add
+    private final Map<String, String> cityKeys = new HashMap<>();
+
+    public GroupStatistics() {
+        this(DEFAULT_TOP_K, QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public GroupStatistics(int capacity, double relativeAccuracy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Top-K capacity must be at least 1: " + capacity);
+        }
+        this.capacity = capacity;
+        this.relativeAccuracy = relativeAccuracy;
+    }
+
+    private static final class GroupKey {
+        final String cityKey;  // PropertyQuery.cityKey, null for listings without a city
+        final Genre genre;
+
+        GroupKey(String cityKey, Genre genre) {
+            this.cityKey = cityKey;
+            this.genre = genre;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof GroupKey)) {
+                return false;
+            }
+            GroupKey other = (GroupKey) o;
+            return Objects.equals(cityKey, other.cityKey) && genre == other.genre;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(cityKey) * 31 + Objects.hashCode(genre);
+        }
+    }
+
+    private final class Group {
+        final PriorityQueue<RealEstate> top = new PriorityQueue<>();  // cheapest of the top first
+        final QuantileSketch totalPrices = new QuantileSketch(relativeAccuracy);
+        final QuantileSketch roomPrices = new QuantileSketch(relativeAccuracy);
+        long count;
+
+        void add(RealEstate property) {
+            count++;
+            totalPrices.add(property.getTotalPrice());
+            if (property instanceof Panel) {
+                roomPrices.add(((Panel) property).roomPrice());
+            }
+            // Listings outside the heap all rank below its head; a new one may only join
+            // the heap when it ranks above them too
+            boolean hidden = top.size() < count - 1;
+            if (!hidden || (!top.isEmpty() && top.peek().compareTo(property) < 0)) {
+                top.add(property);
+                if (top.size() > capacity) {
+                    top.poll();
+                }
+            }
+        }
+
+        void remove(RealEstate property) {
+            count--;
+            totalPrices.remove(property.getTotalPrice());
+            if (property instanceof Panel) {
+                roomPrices.remove(((Panel) property).roomPrice());
+            }
+            if (!top.isEmpty() && top.peek().compareTo(property) <= 0) {
+                top.remove(property);
+            }
+        }
+    }
+
+    public synchronized void add(RealEstate property) {
+        group(property).add(property);
+    }
+
+    // One lock acquisition for a whole bulk load
+    public synchronized void addAll(RealEstate[] properties) {
+        for (RealEstate property : properties) {
+            group(property).add(property);
+        }
+    }
+
+    // Must be called with the values the listing had while it was stored
+    public synchronized void remove(RealEstate property) {
+        Group group = groups.get(keyOf(property));
+        if (group != null) {
+            group.remove(property);
+            if (group.count == 0) {
+                groups.remove(keyOf(property));
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        groups.clear();
+        cityKeys.clear();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Up to k most expensive listings, most expensive first; a null city or genre matches
+    // every city or genre. k may not exceed the capacity.
+    public synchronized List<RealEstate> top(String city, Genre genre, int k, PropertyStore store) {
+        if (k < 0 || k > capacity) {
+            throw new IllegalArgumentException("k must be between 0 and " + capacity + ": " + k);
+        }
+        List<RealEstate> candidates = new ArrayList<>();
+        for (Map.Entry<GroupKey, Group> entry : matching(city, genre)) {
+            Group group = entry.getValue();
+            if (group.top.size() < Math.min(k, group.count)) {
+                refill(entry.getKey(), group, store);
+            }
+            candidates.addAll(group.top);
+        }
+        candidates.sort(Collections.reverseOrder());
+        return candidates.size() > k ? new ArrayList<>(candidates.subList(0, k)) : candidates;
+    }
+
+    // Merged copy of the matching total price sketches; a null city or genre matches all
+    public synchronized QuantileSketch totalPrices(String city, Genre genre) {
+        QuantileSketch merged = new QuantileSketch(relativeAccuracy);
+        for (Map.Entry<GroupKey, Group> entry : matching(city, genre)) {
+            merged.merge(entry.getValue().totalPrices);
+        }
+        return merged;
+    }
+
+    // Same for Panel.roomPrice(); other listings have no room price and are not counted
+    public synchronized QuantileSketch roomPrices(String city, Genre genre) {
+        QuantileSketch merged = new QuantileSketch(relativeAccuracy);
+        for (Map.Entry<GroupKey, Group> entry : matching(city, genre)) {
+            merged.merge(entry.getValue().roomPrices);
+        }
+        return merged;
+    }
+
+    // ---------------- Internals ----------------
+    private Group group(RealEstate property) {
+        return groups.computeIfAbsent(keyOf(property), key -> new Group());
+    }
+
+    private GroupKey keyOf(RealEstate property) {
+        String cityKey = property.getCity() == null ? null
+                : cityKeys.computeIfAbsent(property.getCity(), PropertyQuery::cityKey);
+        return new GroupKey(cityKey, property.getGenre());
+    }
+
+    private List<Map.Entry<GroupKey, Group>> matching(String city, Genre genre) {
+        String cityKey = city == null ? null : PropertyQuery.cityKey(city);
+        List<Map.Entry<GroupKey, Group>> result = new ArrayList<>();
+        for (Map.Entry<GroupKey, Group> entry : groups.entrySet()) {
+            GroupKey key = entry.getKey();
+            if ((cityKey == null || cityKey.equals(key.cityKey)) && (genre == null || genre == key.genre)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    // Rare: only after listings of the heap were removed or repriced. Only the pair's
+    // capacity most expensive listings are read; listings without a city have no city
+    // filter, so those are picked out of the genre's listings.
+    private void refill(GroupKey key, Group group, PropertyStore store) {
+        List<RealEstate> listings = key.cityKey == null
+                ? store.query(new PropertyQuery().genre(key.genre).descending())
+                : store.query(new PropertyQuery().city(key.cityKey).genre(key.genre).descending().limit(capacity));
+        group.top.clear();
+        for (int i = 0; i < listings.size() && group.top.size() < capacity; i++) {
+            RealEstate property = listings.get(i);
+            if (key.equals(keyOf(property))) {
+                group.top.add(property);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+// ===== ListingCursor =====
+// Forward-only view of listings, one at a time, without requiring a RealEstate object
+// per listing: stores that keep raw records (OffHeapPropertyStore) read the fields in
+// place, so a report or a full listing can walk any number of rows with flat GC load.
+// The accessors describe the current listing and are valid until the next call to next().
+interface ListingCursor {
+    // Moves to the next listing; false when there are no more
+    boolean next();
+
+    String getCity();
+    Genre getGenre();
+    double getPrice();
+    int getSqm();
+    int getNumberOfRooms();
+    int getTotalPrice();
+    boolean isPanel();
+    int getFloor();         // 0 unless isPanel()
+    boolean isInsulated();  // false unless isPanel()
+
+    // Same text as toString() of the listing
+    default void appendTo(StreamingTextWriter out) throws IOException {
+        RealEstate.writeListing(out, isPanel(), getCity(), getGenre(), getPrice(), getSqm(),
+                getNumberOfRooms(), getFloor(), isInsulated(), getTotalPrice());
+    }
+
+    // Detached object for the current listing
+    default RealEstate materialize() {
+        return isPanel()
+                ? new Panel(getCity(), getPrice(), getSqm(), getNumberOfRooms(), getGenre(), getFloor(), isInsulated())
+                : new RealEstate(getCity(), getPrice(), getSqm(), getNumberOfRooms(), getGenre());
+    }
+
+    // Cursor over existing objects; appendTo and materialize use the objects themselves
+    static ListingCursor of(Iterator<RealEstate> listings) {
+        return new ListingCursor() {
+            private RealEstate current;
+
+            @Override
+            public boolean next() {
+                current = listings.hasNext() ? listings.next() : null;
+                return current != null;
+            }
+
+            @Override public String getCity() { return current.getCity(); }
+            @Override public Genre getGenre() { return current.getGenre(); }
+            @Override public double getPrice() { return current.getPrice(); }
+            @Override public int getSqm() { return current.getSqm(); }
+            @Override public int getNumberOfRooms() { return current.getNumberOfRooms(); }
+            @Override public int getTotalPrice() { return current.getTotalPrice(); }
+            @Override public boolean isPanel() { return current instanceof Panel; }
+            @Override public int getFloor() { return isPanel() ? ((Panel) current).getFloor() : 0; }
+            @Override public boolean isInsulated() { return isPanel() && ((Panel) current).isInsulated(); }
+
+            @Override
+            public void appendTo(StreamingTextWriter out) throws IOException {
+                current.appendTo(out);
+            }
+
+            @Override
+            public RealEstate materialize() {
+                return current;
+            }
+        };
+    }
+}
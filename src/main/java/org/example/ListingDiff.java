@@ -0,0 +1,165 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// ===================== ListingDiff CLASS =====================
+// Streaming comparison of two listing files, e.g. yesterday's and today's. A listing is
+// identified by everything but its price (ExternalListingSorter.IDENTITY_KEY); both files
+// are sorted by that key with ExternalListingSorter and merged in one pass. Listings of
+// one key are matched by price: equal prices are unchanged, the remaining ones are paired
+// cheapest first as repriced, and what is left over is added or removed. Memory: the
+// sorters' runs and buffers plus the listings of one key at a time.
+class ListingDiff {
+    enum Change { ADDED, REMOVED, CHANGED }
+
+    // One difference; listing is the new version, or the old one when REMOVED.
+    // The total price missing on one side is -1.
+    static final class Difference {
+        final Change change;
+        final RealEstate listing;
+        final int oldTotalPrice;
+        final int newTotalPrice;
+
+        Difference(Change change, RealEstate listing, int oldTotalPrice, int newTotalPrice) {
+            this.change = change;
+            this.listing = listing;
+            this.oldTotalPrice = oldTotalPrice;
+            this.newTotalPrice = newTotalPrice;
+        }
+
+        public Change getChange() { return change; }
+        public RealEstate getListing() { return listing; }
+        public int getOldTotalPrice() { return oldTotalPrice; }
+        public int getNewTotalPrice() { return newTotalPrice; }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s [Old total price: %d, New total price: %d]",
+                    change, listing, oldTotalPrice, newTotalPrice);
+        }
+    }
+
+    interface Sink {
+        void accept(Difference difference) throws IOException;
+    }
+
+    static final class Summary {
+        long added;
+        long removed;
+        long changed;
+        long unchanged;
+
+        public long getAdded() { return added; }
+        public long getRemoved() { return removed; }
+        public long getChanged() { return changed; }
+        public long getUnchanged() { return unchanged; }
+
+        @Override
+        public String toString() {
+            return String.format("ListingDiff [Added: %d, Removed: %d, Changed: %d, Unchanged: %d]",
+                    added, removed, changed, unchanged);
+        }
+    }
+
+    private final ExternalListingSorter sorter;
+
+    public ListingDiff() {
+        this(new ExternalListingSorter());
+    }
+
+    public ListingDiff(ExternalListingSorter sorter) {
+        this.sorter = sorter;
+    }
+
+    // Differences from oldFile to newFile, passed to sink ordered by listing key;
+    // unparseable lines are reported through metrics, or printed when it is null
+    public Summary diff(Path oldFile, Path newFile, AgentMetrics metrics, Sink sink) throws IOException {
+        Summary summary = new Summary();
+        try (ExternalListingSorter.Sorted oldSorted = sorter.sort(oldFile, metrics, ExternalListingSorter.Order.IDENTITY);
+             ExternalListingSorter.Sorted newSorted = sorter.sort(newFile, metrics, ExternalListingSorter.Order.IDENTITY)) {
+            Side before = new Side(oldSorted);
+            Side after = new Side(newSorted);
+            before.nextGroup();
+            after.nextGroup();
+            while (!before.group.isEmpty() || !after.group.isEmpty()) {
+                int comparison = before.group.isEmpty() ? 1
+                        : after.group.isEmpty() ? -1
+                        : ExternalListingSorter.IDENTITY_KEY.compare(before.group.get(0), after.group.get(0));
+                if (comparison < 0) {
+                    match(before.group, new ArrayList<>(), summary, sink);
+                    before.nextGroup();
+                } else if (comparison > 0) {
+                    match(new ArrayList<>(), after.group, summary, sink);
+                    after.nextGroup();
+                } else {
+                    match(before.group, after.group, summary, sink);
+                    before.nextGroup();
+                    after.nextGroup();
+                }
+            }
+        }
+        return summary;
+    }
+
+    // Listings of one key on both sides, each sorted by price
+    private static void match(List<RealEstate> before, List<RealEstate> after, Summary summary, Sink sink)
+            throws IOException {
+        List<RealEstate> removed = new ArrayList<>();
+        List<RealEstate> added = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < before.size() || j < after.size()) {
+            int comparison = i == before.size() ? 1
+                    : j == after.size() ? -1
+                    : Double.compare(before.get(i).getPrice(), after.get(j).getPrice());
+            if (comparison == 0) {
+                summary.unchanged++;
+                i++;
+                j++;
+            } else if (comparison < 0) {
+                removed.add(before.get(i++));
+            } else {
+                added.add(after.get(j++));
+            }
+        }
+
+        int paired = Math.min(removed.size(), added.size());
+        for (int k = 0; k < paired; k++) {
+            summary.changed++;
+            sink.accept(new Difference(Change.CHANGED, added.get(k),
+                    removed.get(k).getTotalPrice(), added.get(k).getTotalPrice()));
+        }
+        for (int k = paired; k < removed.size(); k++) {
+            summary.removed++;
+            sink.accept(new Difference(Change.REMOVED, removed.get(k), removed.get(k).getTotalPrice(), -1));
+        }
+        for (int k = paired; k < added.size(); k++) {
+            summary.added++;
+            sink.accept(new Difference(Change.ADDED, added.get(k), -1, added.get(k).getTotalPrice()));
+        }
+    }
+
+    // One sorted file read a key at a time; the cursor stays one listing ahead
+    private static final class Side {
+        final ListingCursor cursor;
+        final List<RealEstate> group = new ArrayList<>();
+        RealEstate next;
+
+        Side(ListingCursor cursor) {
+            this.cursor = cursor;
+            this.next = cursor.next() ? cursor.materialize() : null;
+        }
+
+        // Empty at the end of the file
+        void nextGroup() {
+            group.clear();
+            while (next != null && (group.isEmpty() || ExternalListingSorter.IDENTITY_KEY.compare(group.get(0), next) == 0)) {
+                group.add(next);
+                next = cursor.next() ? cursor.materialize() : null;
+            }
+        }
+    }
+}
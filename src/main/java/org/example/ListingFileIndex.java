@@ -0,0 +1,201 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// ===================== ListingFileIndex CLASS =====================
+// Sidecar index of a listings file ("<file>.idx"), built by ChunkedListingLoader.index:
+// the file cut into blocks of whole lines, about blockSize bytes each, and per block
+// which (genre, class) pairs and which cities its lines have. A filtered scan maps only
+// the blocks that can hold a match, so it pays off when the file is clustered, e.g.
+// sorted or appended per city. Stale as soon as the file's size or modification time
+// differs from when it was built; scans then ignore it.
+//
+//   int magic, int version, long fileSize, long lastModified (ms), int cityCount,
+//   cityCount x UTF city key, int blockCount, blockCount x (long start, int classes,
+//   words x long city bits), words = ceil(cityCount / 64)
+final class ListingFileIndex {
+    static final int MAGIC = 0x4C494458;  // "LIDX"
+    static final int VERSION = 1;
+    static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    static final String SUFFIX = ".idx";
+    // Class bit of a block holding a line its leading fields cannot classify
+    static final int UNCLASSIFIED = 1 << 31;
+
+    private final long fileSize;
+    private final long lastModified;
+    private final List<String> cityKeys;
+    private final long[] blockStarts;  // the last block ends at fileSize
+    private final int[] classes;       // bit classBit(genre, panel) per kind of line present
+    private final long[][] cities;     // bit i: a line of cityKeys.get(i) is present
+
+    ListingFileIndex(long fileSize, long lastModified, List<String> cityKeys,
+                     long[] blockStarts, int[] classes, long[][] cities) {
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.cityKeys = cityKeys;
+        this.blockStarts = blockStarts;
+        this.classes = classes;
+        this.cities = cities;
+    }
+
+    static int classBit(Genre genre, boolean panel) {
+        return 1 << (genre.ordinal() * 2 + (panel ? 1 : 0));
+    }
+
+    static Path sidecarOf(Path file) {
+        return file.resolveSibling(file.getFileName() + SUFFIX);
+    }
+
+    // Blocks given as start offsets with the class bits and city keys of their lines
+    static ListingFileIndex of(long fileSize, long lastModified, List<Long> starts, List<Integer> classes,
+                               List<Set<String>> cityKeys) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> keys = new ArrayList<>();
+        for (Set<String> block : cityKeys) {
+            for (String key : block) {
+                if (!ids.containsKey(key)) {
+                    ids.put(key, keys.size());
+                    keys.add(key);
+                }
+            }
+        }
+        int words = (keys.size() + 63) >>> 6;
+        long[] blockStarts = new long[starts.size()];
+        int[] blockClasses = new int[starts.size()];
+        long[][] blockCities = new long[starts.size()][];
+        for (int b = 0; b < blockStarts.length; b++) {
+            blockStarts[b] = starts.get(b);
+            blockClasses[b] = classes.get(b);
+            blockCities[b] = new long[words];
+            for (String key : cityKeys.get(b)) {
+                int id = ids.get(key);
+                blockCities[b][id >>> 6] |= 1L << id;
+            }
+        }
+        return new ListingFileIndex(fileSize, lastModified, keys, blockStarts, blockClasses, blockCities);
+    }
+
+    int blockCount() {
+        return blockStarts.length;
+    }
+
+    // True while the file still has the size and modification time it was indexed at
+    boolean isCurrent(Path file) throws IOException {
+        return Files.size(file) == fileSize && Files.getLastModifiedTime(file).toMillis() == lastModified;
+    }
+
+    // Byte ranges {start, end} of the blocks that may hold a match, adjacent blocks
+    // merged while the range stays within maxLength
+    List<long[]> regions(ListingFilter filter, long maxLength) {
+        int classMask = 0;
+        for (Genre genre : Genre.values()) {
+            for (boolean panel : new boolean[]{false, true}) {
+                if (filter.matchesGenre(genre) && filter.matchesPanel(panel)) {
+                    classMask |= classBit(genre, panel);
+                }
+            }
+        }
+        long[] cityMask = null;
+        if (filter.cityKeys() != null) {
+            cityMask = new long[(cityKeys.size() + 63) >>> 6];
+            for (int id = 0; id < cityKeys.size(); id++) {
+                if (filter.matchesCityKey(cityKeys.get(id))) {
+                    cityMask[id >>> 6] |= 1L << id;
+                }
+            }
+        }
+
+        List<long[]> regions = new ArrayList<>();
+        long[] open = null;
+        for (int b = 0; b < blockStarts.length; b++) {
+            long start = blockStarts[b];
+            long end = b + 1 < blockStarts.length ? blockStarts[b + 1] : fileSize;
+            boolean candidate = (classes[b] & UNCLASSIFIED) != 0
+                    || ((classes[b] & classMask) != 0 && (cityMask == null || intersects(cities[b], cityMask)));
+            if (!candidate) {
+                open = null;
+            } else if (open != null && end - open[0] <= maxLength) {
+                open[1] = end;
+            } else {
+                open = new long[]{start, end};
+                regions.add(open);
+            }
+        }
+        return regions;
+    }
+
+    // Written to a temporary file first, so readers never see half an index
+    public void write(Path indexFile) throws IOException {
+        Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fileSize);
+            out.writeLong(lastModified);
+            out.writeInt(cityKeys.size());
+            for (String key : cityKeys) {
+                out.writeUTF(key);
+            }
+            out.writeInt(blockStarts.length);
+            for (int b = 0; b < blockStarts.length; b++) {
+                out.writeLong(blockStarts[b]);
+                out.writeInt(classes[b]);
+                for (long word : cities[b]) {
+                    out.writeLong(word);
+                }
+            }
+        }
+        Files.move(temp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static ListingFileIndex read(Path indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(indexFile), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a listing file index: " + indexFile);
+            }
+            long fileSize = in.readLong();
+            long lastModified = in.readLong();
+            int cityCount = in.readInt();
+            List<String> cityKeys = new ArrayList<>(cityCount);
+            for (int i = 0; i < cityCount; i++) {
+                cityKeys.add(in.readUTF());
+            }
+            int words = (cityCount + 63) >>> 6;
+            int blockCount = in.readInt();
+            long[] blockStarts = new long[blockCount];
+            int[] classes = new int[blockCount];
+            long[][] cities = new long[blockCount][words];
+            for (int b = 0; b < blockCount; b++) {
+                blockStarts[b] = in.readLong();
+                classes[b] = in.readInt();
+                for (int w = 0; w < words; w++) {
+                    cities[b][w] = in.readLong();
+                }
+            }
+            return new ListingFileIndex(fileSize, lastModified, cityKeys, blockStarts, classes, cities);
+        }
+    }
+
+    private static boolean intersects(long[] a, long[] b) {
+        for (int w = 0; w < a.length; w++) {
+            if ((a[w] & b[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
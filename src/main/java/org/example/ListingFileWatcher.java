@@ -0,0 +1,219 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// ===================== ListingFileWatcher CLASS =====================
+// Tails a listings file that is only ever appended to. The watcher remembers the offset
+// after the last complete line it ingested; each poll reads just the bytes appended since,
+// parses the complete lines with ChunkedListingLoader's byte parser and adds the listings
+// to the agent's live collection. A trailing line without its '\n' yet is left for the next
+// poll. onChange runs after a poll that actually added something.
+//
+// A background thread polls on WatchService events for the file, and at least every
+// pollInterval in case events are coalesced or dropped. A file that shrank was replaced,
+// so it is read again from the start; listings already in the collection are ignored.
+class ListingFileWatcher implements Closeable {
+    static final long DEFAULT_POLL_INTERVAL_MS = 1000;
+    private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+    private static final int MAX_READ_SIZE = 8 * 1024 * 1024;
+
+    private final RealEstateAgent agent;
+    private final Path file;
+    private final Runnable onChange;
+    private final Charset charset = Charset.defaultCharset();  // as FileReader; must be ASCII-compatible
+    private long offset;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ChunkedListingLoader.ByteLineParser parser = new ChunkedListingLoader.ByteLineParser(buffer, charset);
+
+    private WatchService watchService;
+    private Thread thread;
+    private volatile boolean closed;
+
+    // startOffset: 0 ingests what the file already holds first; its length picks up only later appends
+    ListingFileWatcher(RealEstateAgent agent, Path file, long startOffset, Runnable onChange) {
+        if (startOffset < 0) {
+            throw new IllegalArgumentException("Start offset must not be negative: " + startOffset);
+        }
+        this.agent = agent;
+        this.file = file.toAbsolutePath();
+        this.offset = startOffset;
+        this.onChange = onChange;
+    }
+
+    // Offset just past the last ingested line; pass it back as startOffset to resume later
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    // ---------------- Polling ----------------
+    // Ingests complete lines appended since the last poll; returns how many listings were new
+    public int poll() throws IOException {
+        int added;
+        synchronized (this) {
+            AgentMetrics.LoadEvent load = agent.getMetrics().beginLoad(file.toString());
+            try {
+                added = ingestAppended();
+            } finally {
+                agent.getMetrics().endLoad(load);
+            }
+        }
+        if (added > 0 && onChange != null) {
+            onChange.run();
+        }
+        return added;
+    }
+
+    private int ingestAppended() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < offset) {
+                System.out.println("File was truncated or replaced, reading again from the start: " + file);
+                offset = 0;
+            }
+
+            int added = 0;
+            List<RealEstate> batch = new ArrayList<>();
+            buffer.clear();
+            long position = offset;  // file position of buffer index 0
+            while (position + buffer.position() < size) {
+                if (!buffer.hasRemaining()) {
+                    grow();  // one line longer than the buffer
+                }
+                int want = (int) Math.min(buffer.remaining(), Math.min(MAX_READ_SIZE, size - position - buffer.position()));
+                int limit = buffer.limit();
+                buffer.limit(buffer.position() + want);
+                int read = channel.read(buffer, position + buffer.position());
+                buffer.limit(limit);
+                if (read <= 0) {
+                    break;
+                }
+
+                int end = parseCompleteLines(buffer.position(), batch);
+                added += agent.addProperties(batch);
+                batch.clear();
+
+                // Keep the unfinished last line for the next read
+                buffer.flip();
+                buffer.position(end);
+                buffer.compact();
+                position += end;
+                offset = position;
+            }
+            return added;
+        }
+    }
+
+    // Parses the lines ending in '\n' within [0, filled); returns the index after the last one
+    private int parseCompleteLines(int filled, List<RealEstate> properties) {
+        AgentMetrics metrics = agent.getMetrics();
+        long start = System.nanoTime();
+        long lines = 0;
+        int lineStart = 0;
+        for (int i = 0; i < filled; i++) {
+            if (buffer.get(i) == '\n') {
+                int lineEnd = i > lineStart && buffer.get(i - 1) == '\r' ? i - 1 : i;
+                if (lineEnd > lineStart) {
+                    lines++;
+                    RealEstate property = parser.parse(lineStart, lineEnd, metrics::reject);
+                    if (property != null) {
+                        metrics.parsed(property);
+                        properties.add(property);
+                    }
+                }
+                lineStart = i + 1;
+            }
+        }
+        metrics.linesRead(lines);
+        metrics.parseTime(System.nanoTime() - start);
+        return lineStart;
+    }
+
+    private void grow() {
+        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+        parser = new ChunkedListingLoader.ByteLineParser(buffer, charset);
+    }
+
+    // ---------------- Background watching ----------------
+    public synchronized void start(long pollIntervalMillis) throws IOException {
+        if (pollIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Poll interval must be positive: " + pollIntervalMillis);
+        }
+        if (thread != null) {
+            throw new IllegalStateException("Already watching: " + file);
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        WatchService events = watchService;
+        thread = new Thread(() -> watch(events, pollIntervalMillis), "listing-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch(WatchService events, long pollIntervalMillis) {
+        while (!closed) {
+            try {
+                pollQuietly();
+                // Any event in the directory, or the timeout, triggers a poll; an unchanged
+                // file costs one size check
+                WatchKey key = events.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+        }
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (NoSuchFileException e) {
+            // Not created yet, or being replaced; picked up by a later event
+        } catch (IOException e) {
+            System.err.println("Error reading file " + file + ": " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Error ingesting appended listings from " + file + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Thread running;
+        synchronized (this) {
+            closed = true;
+            running = thread;
+            if (watchService != null) {
+                watchService.close();
+            }
+        }
+        if (running != null && running != Thread.currentThread()) {
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
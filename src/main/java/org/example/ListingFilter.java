@@ -0,0 +1,79 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// ===================== ListingFilter CLASS =====================
+// Filter for scanning listing files (ChunkedListingLoader.scan): listing class
+// (Panel or plain RealEstate), cities (case-insensitive) and genres are checked on
+// the raw leading fields of a line before anything is parsed; the inclusive
+// total-price range needs the parsed listing. Unset parts match everything.
+class ListingFilter {
+    private Boolean panels;
+    private Set<String> cityKeys;
+    private EnumSet<Genre> genres;
+    private int minTotalPrice = Integer.MIN_VALUE;
+    private int maxTotalPrice = Integer.MAX_VALUE;
+
+    // true: PANEL lines only, false: every other class
+    public ListingFilter panels(boolean panels) {
+        this.panels = panels;
+        return this;
+    }
+
+    public ListingFilter cities(String... cities) {
+        cityKeys = new LinkedHashSet<>();
+        for (String city : cities) {
+            cityKeys.add(PropertyQuery.cityKey(city));
+        }
+        return this;
+    }
+
+    // A line with an unknown genre is parsed as CONDOMINIUM and is matched as one
+    public ListingFilter genres(Genre... genres) {
+        this.genres = genres.length == 0 ? EnumSet.noneOf(Genre.class) : EnumSet.copyOf(Arrays.asList(genres));
+        return this;
+    }
+
+    public ListingFilter totalPriceBetween(int min, int max) {
+        if (min > max) {
+            throw new IllegalArgumentException("Empty price range: " + min + " > " + max);
+        }
+        this.minTotalPrice = min;
+        this.maxTotalPrice = max;
+        return this;
+    }
+
+    // City keys (PropertyQuery.cityKey), or null when any city matches
+    Set<String> cityKeys() {
+        return cityKeys;
+    }
+
+    boolean matchesPanel(boolean panel) {
+        return panels == null || panels == panel;
+    }
+
+    boolean matchesGenre(Genre genre) {
+        return genres == null || genres.contains(genre);
+    }
+
+    boolean matchesCityKey(String cityKey) {
+        return cityKeys == null || cityKeys.contains(cityKey);
+    }
+
+    // Full check of a parsed listing
+    boolean matches(RealEstate property) {
+        int totalPrice = property.getTotalPrice();
+        return totalPrice >= minTotalPrice && totalPrice <= maxTotalPrice
+                && matchesPanel(property instanceof Panel) && matchesGenre(property.getGenre())
+                && (cityKeys == null || (property.getCity() != null && matchesCityKey(PropertyQuery.cityKey(property.getCity()))));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ListingFilter [Panels: %s, Cities: %s, Genres: %s, Total price: %d..%d]",
+                panels, cityKeys, genres, minTotalPrice, maxTotalPrice);
+    }
+}
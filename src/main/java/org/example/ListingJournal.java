@@ -0,0 +1,253 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// ===================== ListingJournal CLASS =====================
+// Durable state of a collection in one directory: a binary ListingSnapshot plus an
+// append-only log of the adds and repricings made since it was written. Restart reads
+// the snapshot and replays the log; compaction writes a fresh snapshot and starts an
+// empty log.
+//
+// Compaction first moves the log aside and opens a new one, then snapshots the store.
+// Changes racing with that step can end up in both the snapshot and the new log; replay
+// tolerates this because re-adding an equal listing is a no-op and a repricing whose
+// old state is gone only inserts the new state. The old log is deleted once the new
+// snapshot has been atomically moved into place, so a crash at any point loses nothing.
+//
+// Log entries are flushed to the OS per change (they survive a process crash, not a
+// power loss). A torn last entry is cut off on the next open.
+final class ListingJournal implements Closeable {
+    static final String SNAPSHOT_FILE = "listings.snapshot";
+    static final String LOG_FILE = "listings.log";
+    static final String ROTATED_LOG_FILE = "listings.log.old";
+    static final int DEFAULT_COMPACT_THRESHOLD = 100_000;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REPRICE = 2;
+
+    // Receives replayed changes in log order
+    interface Replay {
+        boolean add(RealEstate property);
+        void reprice(RealEstate before, RealEstate after);
+    }
+
+    private final Path directory;
+    private final int compactThreshold;
+    private final ReentrantLock compaction = new ReentrantLock();
+    private DataOutputStream log;
+    private int entriesSinceSnapshot;
+    private boolean recoveredRotatedLog;
+
+    ListingJournal(Path directory, int compactThreshold) throws IOException {
+        if (compactThreshold <= 0) {
+            throw new IllegalArgumentException("Compaction threshold must be positive: " + compactThreshold);
+        }
+        this.directory = directory;
+        this.compactThreshold = compactThreshold;
+        Files.createDirectories(directory);
+    }
+
+    // ---------------- Recovery ----------------
+    public RealEstate[] readSnapshot() throws IOException {
+        try {
+            return ListingSnapshot.read(directory.resolve(SNAPSHOT_FILE));
+        } catch (NoSuchFileException e) {
+            return new RealEstate[0];
+        }
+    }
+
+    // Replays the logs left by an interrupted compaction and the current log, then opens
+    // the log for appending
+    public synchronized void replay(Replay target) throws IOException {
+        Path rotated = directory.resolve(ROTATED_LOG_FILE);
+        if (Files.exists(rotated)) {
+            entriesSinceSnapshot += replayFile(rotated, target);
+            recoveredRotatedLog = true;
+        }
+        entriesSinceSnapshot += replayFile(directory.resolve(LOG_FILE), target);
+        openLog();
+    }
+
+    private static int replayFile(Path file, Replay target) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        int entries = 0;
+        int complete = 0;
+        try {
+            while (buffer.hasRemaining()) {
+                byte op = buffer.get();
+                if (op == OP_ADD) {
+                    RealEstate property = readListing(buffer);
+                    target.add(property);
+                } else if (op == OP_REPRICE) {
+                    RealEstate before = readListing(buffer);
+                    RealEstate after = readListing(buffer);
+                    target.reprice(before, after);
+                } else {
+                    break;
+                }
+                entries++;
+                complete = buffer.position();
+            }
+        } catch (BufferUnderflowException e) {
+            // Torn last entry from a crash mid-write
+        }
+        if (complete < buffer.capacity()) {
+            System.err.println("Discarding " + (buffer.capacity() - complete) + " bytes of incomplete change log: " + file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+            }
+        }
+        return entries;
+    }
+
+    // ---------------- Logging ----------------
+    public synchronized void logAdd(RealEstate property) throws IOException {
+        ensureOpen();
+        log.writeByte(OP_ADD);
+        writeListing(log, property);
+        log.flush();
+        entriesSinceSnapshot++;
+    }
+
+    // before holds the values the listing had when it was stored
+    public synchronized void logReprice(RealEstate before, RealEstate after) throws IOException {
+        ensureOpen();
+        log.writeByte(OP_REPRICE);
+        writeListing(log, before);
+        writeListing(log, after);
+        log.flush();
+        entriesSinceSnapshot++;
+    }
+
+    public synchronized boolean compactionDue() {
+        return recoveredRotatedLog || entriesSinceSnapshot >= compactThreshold;
+    }
+
+    // ---------------- Compaction ----------------
+    // Writes the store's current contents as the new snapshot and drops the logged changes
+    public void compact(Supplier<RealEstate[]> store) throws IOException {
+        compaction.lock();
+        try {
+            compactLocked(store);
+        } finally {
+            compaction.unlock();
+        }
+    }
+
+    // For automatic compaction: skips if another thread is already compacting
+    public void compactIfDue(Supplier<RealEstate[]> store) throws IOException {
+        if (compactionDue() && compaction.tryLock()) {
+            try {
+                if (compactionDue()) {
+                    compactLocked(store);
+                }
+            } finally {
+                compaction.unlock();
+            }
+        }
+    }
+
+    private void compactLocked(Supplier<RealEstate[]> store) throws IOException {
+        Path rotated = directory.resolve(ROTATED_LOG_FILE);
+        RealEstate[] listings;
+        synchronized (this) {
+            ensureOpen();
+            log.close();
+            Path current = directory.resolve(LOG_FILE);
+            if (Files.exists(rotated)) {
+                // An earlier compaction failed; keep its entries until a snapshot succeeds
+                Files.write(rotated, Files.readAllBytes(current), StandardOpenOption.APPEND);
+                Files.delete(current);
+            } else {
+                Files.move(current, rotated, StandardCopyOption.ATOMIC_MOVE);
+            }
+            openLog();
+            entriesSinceSnapshot = 0;
+            recoveredRotatedLog = false;
+            listings = store.get();
+        }
+
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        ListingSnapshot.write(temp, listings);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(rotated);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (log == null) {
+            throw new IOException("Change log is not open: " + directory.resolve(LOG_FILE));
+        }
+    }
+
+    // ---------------- Encoding ----------------
+    private void openLog() throws IOException {
+        log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(directory.resolve(LOG_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE)));
+    }
+
+    // kind, genre, price, sqm, rooms, floor, city length (-1 = null), city UTF-8 bytes
+    private static void writeListing(DataOutputStream out, RealEstate property) throws IOException {
+        out.writeByte(ListingSnapshot.kindOf(property));
+        out.writeByte(property.getGenre() == null ? -1 : property.getGenre().ordinal());
+        out.writeDouble(property.getPrice());
+        out.writeInt(property.getSqm());
+        out.writeInt(property.getNumberOfRooms());
+        out.writeInt(property instanceof Panel ? ((Panel) property).getFloor() : 0);
+        if (property.getCity() == null) {
+            out.writeShort(-1);
+        } else {
+            byte[] city = property.getCity().getBytes(StandardCharsets.UTF_8);
+            out.writeShort(city.length);
+            out.write(city);
+        }
+    }
+
+    private static RealEstate readListing(ByteBuffer in) {
+        byte kind = in.get();
+        byte genre = in.get();
+        double price = in.getDouble();
+        int sqm = in.getInt();
+        int rooms = in.getInt();
+        int floor = in.getInt();
+        short length = in.getShort();
+        String city = null;
+        if (length >= 0) {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            city = new String(bytes, StandardCharsets.UTF_8);
+        }
+        Genre g = genre < 0 ? null : Genre.values()[genre];
+        return ListingSnapshot.isPanel(kind)
+                ? new Panel(city, price, sqm, rooms, g, floor, ListingSnapshot.isInsulated(kind))
+                : new RealEstate(city, price, sqm, rooms, g);
+    }
+}
@@ -0,0 +1,346 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// ===================== ListingQueryService CLASS =====================
+// Long-running HTTP query service over one RealEstateAgent, built on the JDK's
+// com.sun.net.httpserver and bound to the loopback interface only:
+//   GET  /report     report items 1-4 and the average total price as JSON
+//   GET  /listings   ?city=&genre=&minTotalPrice=&maxTotalPrice=&limit= (default 100),
+//                    matching listings cheapest first; item 5 of the report is
+//                    ?genre=CONDOMINIUM&maxTotalPrice=<floor of averageTotalPrice>
+//   POST /listings   listing lines in the input file format, one per line
+// GET responses are cached per request URI together with the collection version they
+// were computed at, and served from the cache until the version moves on or they age out.
+//
+//   java -cp target/classes org.example.ListingQueryService [port] [listingsFile]
+class ListingQueryService implements Closeable {
+    static final int DEFAULT_PORT = 8080;
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 10_000;
+    static final int MAX_CACHED_RESPONSES = 1024;
+    static final long MAX_CACHED_BYTES = 64L * 1024 * 1024;
+    static final long MAX_CACHED_AGE_MS = 60_000;
+    private static final int MAX_BODY_BYTES = 1 << 20;
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private final RealEstateAgent agent;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final VersionedCache<String, byte[]> cache =
+            new VersionedCache<>(MAX_CACHED_RESPONSES, MAX_CACHED_BYTES, MAX_CACHED_AGE_MS, body -> body.length);
+
+    private ListingQueryService(RealEstateAgent agent, HttpServer server, ExecutorService executor) {
+        this.agent = agent;
+        this.server = server;
+        this.executor = executor;
+    }
+
+    // Port 0 picks a free port; see getPort()
+    public static ListingQueryService start(RealEstateAgent agent, int port) throws IOException {
+        // Headers and body go out in separate writes; without TCP_NODELAY every response
+        // waits about 40 ms on the client's delayed ACK. Read once when the JDK's server
+        // configuration loads, so it must be set before the first HttpServer is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        ExecutorService executor = newRequestExecutor();
+        ListingQueryService service = new ListingQueryService(agent, server, executor);
+        // One context for every path, so unknown paths get a JSON 404 on a kept-alive connection
+        server.createContext("/", service::handle);
+        server.setExecutor(executor);
+        server.start();
+        return service;
+    }
+
+    // Virtual threads when the runtime has them (JDK 21+). Otherwise a fixed pool of two
+    // threads per core for the short, CPU-bound handlers; when its queue is full the
+    // accepting thread runs the request itself, which slows accepting down instead of
+    // dropping connections.
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Older runtime, or virtual threads still a preview feature
+        }
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), task -> {
+                    Thread thread = new Thread(task, "listing-query-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getCacheHits() {
+        return cache.getHits();
+    }
+
+    public long getCacheMisses() {
+        return cache.getMisses();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // ---------------- Requests ----------------
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals("/report") && method.equals("GET")) {
+                sendCached(exchange, this::report);
+            } else if (path.equals("/listings") && method.equals("GET")) {
+                Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+                sendCached(exchange, () -> listings(parameters));
+            } else if (path.equals("/listings") && method.equals("POST")) {
+                send(exchange, 200, add(exchange.getRequestBody()), agent.getVersion());
+            } else if (path.equals("/report") || path.equals("/listings")) {
+                exchange.getResponseHeaders().set("Allow", path.equals("/report") ? "GET" : "GET, POST");
+                send(exchange, 405, error("Method not allowed: " + method), agent.getVersion());
+            } else {
+                send(exchange, 404, error("Not found: " + path), agent.getVersion());
+            }
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()), agent.getVersion());
+        } catch (RuntimeException e) {
+            System.err.println("Error handling " + exchange.getRequestURI() + ": " + e);
+            send(exchange, 500, error("Internal error"), agent.getVersion());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private interface Renderer {
+        String render();
+    }
+
+    // The version is read before rendering, so a body never claims to be newer than it is;
+    // at worst a change that lands while rendering is shown one version early
+    private void sendCached(HttpExchange exchange, Renderer renderer) throws IOException {
+        long version = agent.getVersion();
+        String key = exchange.getRequestURI().toString();
+        byte[] body = cache.get(key, version);
+        if (body == null) {
+            body = renderer.render().getBytes(StandardCharsets.UTF_8);
+            cache.put(key, version, body);
+        }
+        send(exchange, 200, body, version);
+    }
+
+    private static void send(HttpExchange exchange, int status, String body, long version) throws IOException {
+        send(exchange, status, body.getBytes(StandardCharsets.UTF_8), version);
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body, long version) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("X-Collection-Version", Long.toString(version));
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private String report() {
+        ReportAggregator.Metrics metrics = agent.reportMetrics();
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"count\":").append(metrics.count)
+                .append(",\"averageSqmPrice\":");
+        number(json, metrics.averageSqmPrice);
+        json.append(",\"cheapestPrice\":").append(metrics.cheapestPrice)
+                .append(",\"mostExpensiveBudapest\":");
+        listing(json, metrics.mostExpensiveBudapest);
+        json.append(",\"totalPrice\":").append(metrics.totalPrice)
+                .append(",\"averageTotalPrice\":");
+        number(json, metrics.averageTotalPrice);
+        return json.append('}').toString();
+    }
+
+    private String listings(Map<String, String> parameters) {
+        PropertyQuery query = new PropertyQuery();
+        if (parameters.containsKey("city")) {
+            query.city(parameters.get("city"));
+        }
+        if (parameters.containsKey("genre")) {
+            query.genre(genre(parameters.get("genre")));
+        }
+        int min = intParameter(parameters, "minTotalPrice", Integer.MIN_VALUE);
+        int max = intParameter(parameters, "maxTotalPrice", Integer.MAX_VALUE);
+        query.totalPriceBetween(min, max);
+        int limit = intParameter(parameters, "limit", DEFAULT_LIMIT);
+        if (limit < 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 0 and " + MAX_LIMIT + ": " + limit);
+        }
+        query.limit(limit);
+
+        List<RealEstate> matches = agent.query(query);
+        StringBuilder json = new StringBuilder(64 + matches.size() * 160).append('[');
+        for (int i = 0; i < matches.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            listing(json, matches.get(i));
+        }
+        return json.append(']').toString();
+    }
+
+    private String add(InputStream body) throws IOException {
+        byte[] bytes = body.readNBytes(MAX_BODY_BYTES + 1);
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new IllegalArgumentException("Request body larger than " + MAX_BODY_BYTES + " bytes");
+        }
+        List<RealEstate> parsed = new ArrayList<>();
+        int rejected = 0;
+        for (String line : new String(bytes, StandardCharsets.UTF_8).split("\r?\n")) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            RealEstate property = RealEstateAgent.parsePropertyLine(line, agent.getMetrics());
+            if (property == null) {
+                rejected++;
+            } else {
+                parsed.add(property);
+            }
+        }
+        int added = agent.addProperties(parsed);
+        return "{\"added\":" + added + ",\"duplicates\":" + (parsed.size() - added)
+                + ",\"rejected\":" + rejected + "}";
+    }
+
+    // ---------------- Parameters and JSON ----------------
+    private static Map<String, String> parameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            parameters.put(name, value);
+        }
+        return parameters;
+    }
+
+    private static int intParameter(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    private static Genre genre(String value) {
+        try {
+            return Genre.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid genre: " + value);
+        }
+    }
+
+    private static void listing(StringBuilder json, RealEstate property) {
+        if (property == null) {
+            json.append("null");
+            return;
+        }
+        json.append("{\"type\":\"").append(property instanceof Panel ? "Panel" : "RealEstate")
+                .append("\",\"city\":");
+        string(json, property.getCity());
+        json.append(",\"genre\":");
+        string(json, property.getGenre() == null ? null : property.getGenre().name());
+        json.append(",\"price\":");
+        number(json, property.getPrice());
+        json.append(",\"sqm\":").append(property.getSqm())
+                .append(",\"rooms\":").append(property.getNumberOfRooms())
+                .append(",\"totalPrice\":").append(property.getTotalPrice());
+        if (property instanceof Panel) {
+            Panel panel = (Panel) property;
+            json.append(",\"floor\":").append(panel.getFloor())
+                    .append(",\"insulated\":").append(panel.isInsulated())
+                    .append(",\"roomPrice\":").append(panel.roomPrice());
+        }
+        json.append('}');
+    }
+
+    private static void number(StringBuilder json, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            json.append("null");
+        } else {
+            json.append(value);
+        }
+    }
+
+    private static void string(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static String error(String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        string(json, message);
+        return json.append('}').toString();
+    }
+
+    // ---------------- Standalone ----------------
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        RealEstateAgent agent = new RealEstateAgent();
+        if (args.length > 1) {
+            agent.loadFromFile(args[1]);
+        }
+        ListingQueryService service = agent.serve(port);
+        System.out.println("Serving " + agent.getCollectionSize() + " properties on http://localhost:"
+                + service.getPort() + "/ (report, listings)");
+    }
+}
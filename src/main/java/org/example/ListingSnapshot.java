@@ -0,0 +1,157 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// ===================== ListingSnapshot CLASS =====================
+// Compact binary image of a collection, read back by memory-mapping it.
+//
+//   header   int magic, int version, int cityCount, cityCount x (int length, UTF-8 bytes),
+//            long recordCount
+//   records  fixed 26 bytes each, in the order written (total-price order for a store):
+//            double price, int sqm, int rooms, int floor, int cityId (-1 = null),
+//            byte genre ordinal (-1 = null), byte kind (bit 0 panel, bit 1 insulated)
+//
+// Total prices are not stored; they are recomputed on read with the current PricingTable.
+// Cities are decoded once per dictionary entry, so every listing shares its city String.
+final class ListingSnapshot {
+    static final int MAGIC = 0x52455331;  // "RES1"
+    static final int VERSION = 1;
+    static final int RECORD_SIZE = 26;
+
+    private static final byte KIND_PANEL = 1;
+    private static final byte KIND_INSULATED = 2;
+    // Records mapped per window; keeps each mapping well below the 2 GB limit
+    private static final int RECORDS_PER_WINDOW = (1 << 30) / RECORD_SIZE;
+
+    private ListingSnapshot() {
+    }
+
+    public static void write(Path file, RealEstate[] listings) throws IOException {
+        Map<String, Integer> cityIds = new HashMap<>();
+        List<String> cities = new ArrayList<>();
+        for (RealEstate property : listings) {
+            if (property.getCity() != null && !cityIds.containsKey(property.getCity())) {
+                cityIds.put(property.getCity(), cities.size());
+                cities.add(property.getCity());
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(cities.size());
+            for (String city : cities) {
+                byte[] bytes = city.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.writeLong(listings.length);
+            for (RealEstate property : listings) {
+                out.writeDouble(property.getPrice());
+                out.writeInt(property.getSqm());
+                out.writeInt(property.getNumberOfRooms());
+                out.writeInt(property instanceof Panel ? ((Panel) property).getFloor() : 0);
+                out.writeInt(property.getCity() == null ? -1 : cityIds.get(property.getCity()));
+                out.writeByte(property.getGenre() == null ? -1 : property.getGenre().ordinal());
+                out.writeByte(kindOf(property));
+            }
+        }
+    }
+
+    public static RealEstate[] read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < 12) {
+                throw new IOException("Not a listing snapshot: " + file);
+            }
+            // Header through plain reads; only the record section is mapped
+            ByteBuffer header = readFully(channel, 0, 12);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a listing snapshot: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            }
+            int cityCount = header.getInt();
+            String[] cities = new String[cityCount];
+            long position = 12;
+            for (int i = 0; i < cityCount; i++) {
+                ByteBuffer length = readFully(channel, position, 4);
+                byte[] bytes = new byte[length.getInt()];
+                readFully(channel, position + 4, bytes.length).get(bytes);
+                cities[i] = new String(bytes, StandardCharsets.UTF_8);
+                position += 4 + bytes.length;
+            }
+            long count = readFully(channel, position, 8).getLong();
+            position += 8;
+            if (count < 0 || count > Integer.MAX_VALUE - 8 || position + count * RECORD_SIZE != channel.size()) {
+                throw new IOException("Truncated or corrupt snapshot (" + count + " records): " + file);
+            }
+
+            Genre[] genres = Genre.values();
+            RealEstate[] listings = new RealEstate[(int) count];
+            int row = 0;
+            while (row < count) {
+                int records = (int) Math.min(RECORDS_PER_WINDOW, count - row);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        (long) records * RECORD_SIZE);
+                for (int i = 0; i < records; i++) {
+                    double price = window.getDouble();
+                    int sqm = window.getInt();
+                    int rooms = window.getInt();
+                    int floor = window.getInt();
+                    int cityId = window.getInt();
+                    byte genre = window.get();
+                    byte kind = window.get();
+                    String city = cityId < 0 ? null : cities[cityId];
+                    Genre g = genre < 0 ? null : genres[genre];
+                    listings[row++] = isPanel(kind)
+                            ? new Panel(city, price, sqm, rooms, g, floor, isInsulated(kind))
+                            : new RealEstate(city, price, sqm, rooms, g);
+                }
+                position += (long) records * RECORD_SIZE;
+            }
+            return listings;
+        }
+    }
+
+    static boolean isPanel(byte kind) {
+        return (kind & KIND_PANEL) != 0;
+    }
+
+    static boolean isInsulated(byte kind) {
+        return (kind & KIND_INSULATED) != 0;
+    }
+
+    static byte kindOf(RealEstate property) {
+        if (!(property instanceof Panel)) {
+            return 0;
+        }
+        return (byte) (KIND_PANEL | (((Panel) property).isInsulated() ? KIND_INSULATED : 0));
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of snapshot");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
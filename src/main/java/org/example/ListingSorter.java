@@ -0,0 +1,148 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// ===================== ListingSorter CLASS =====================
+// Puts a batch of listings into compareTo order without duplicates, ready for
+// PropertyStore.loadSorted. Each total price is computed once and packed with a city rank
+// and the sqm into one long key, so the sort never calls compareTo or String.compareTo.
+// Keys are equal exactly when compareTo returns 0; the radix sort is stable, so of several
+// equal listings the first in input order is kept, as repeated TreeSet.add would keep it.
+final class ListingSorter {
+    private static final int RADIX_BITS = 11;
+    private static final int BUCKETS = 1 << RADIX_BITS;
+
+    private ListingSorter() {
+    }
+
+    // Null entries are skipped; a null city sorts before every other city
+    static RealEstate[] sortUnique(Collection<? extends RealEstate> properties) {
+        return sortUnique(properties, null);
+    }
+
+    // Same, adding every listing left out as equal to a kept one to duplicates (in sorted
+    // order) unless that is null
+    static RealEstate[] sortUnique(Collection<? extends RealEstate> properties, List<RealEstate> duplicates) {
+        List<RealEstate> batch = new ArrayList<>(properties.size());
+        for (RealEstate property : properties) {
+            if (property != null) {
+                batch.add(property);
+            }
+        }
+        int n = batch.size();
+        if (n == 0) {
+            return new RealEstate[0];
+        }
+
+        // Rank cities by String order; rank 0 is reserved for null
+        Map<String, Integer> cityRank = new HashMap<>();
+        for (RealEstate property : batch) {
+            if (property.getCity() != null) {
+                cityRank.putIfAbsent(property.getCity(), 0);
+            }
+        }
+        String[] names = cityRank.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        for (int i = 0; i < names.length; i++) {
+            cityRank.put(names[i], i + 1);
+        }
+
+        int[] totals = new int[n];
+        int[] cities = new int[n];
+        long minTotal = Long.MAX_VALUE;
+        long maxTotal = Long.MIN_VALUE;
+        long minSqm = Long.MAX_VALUE;
+        long maxSqm = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            RealEstate property = batch.get(i);
+            totals[i] = property.getTotalPrice();
+            cities[i] = property.getCity() == null ? 0 : cityRank.get(property.getCity());
+            minTotal = Math.min(minTotal, totals[i]);
+            maxTotal = Math.max(maxTotal, totals[i]);
+            minSqm = Math.min(minSqm, property.getSqm());
+            maxSqm = Math.max(maxSqm, property.getSqm());
+        }
+
+        // Key: total - minTotal | city rank | sqm - minSqm, each field as narrow as the batch allows
+        int sqmBits = bitsFor(maxSqm - minSqm);
+        int cityBits = bitsFor(names.length);
+        int keyBits = bitsFor(maxTotal - minTotal) + cityBits + sqmBits;
+        if (keyBits > 63) {
+            return sortByCompareTo(batch, duplicates);  // ranges too wide to pack; same result, just slower
+        }
+        long[] keys = new long[n];
+        int[] rows = new int[n];
+        for (int i = 0; i < n; i++) {
+            long key = (totals[i] - minTotal) << (cityBits + sqmBits);
+            key |= (long) cities[i] << sqmBits;
+            key |= batch.get(i).getSqm() - minSqm;
+            keys[i] = key;
+            rows[i] = i;
+        }
+        radixSort(keys, rows, keyBits);
+
+        List<RealEstate> unique = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                unique.add(batch.get(rows[i]));
+            } else if (duplicates != null) {
+                duplicates.add(batch.get(rows[i]));
+            }
+        }
+        return unique.toArray(new RealEstate[0]);
+    }
+
+    // Stable LSD radix sort of keys with rows carried along; passes whose digit is the same
+    // for every key are skipped
+    private static void radixSort(long[] keys, int[] rows, int keyBits) {
+        int n = keys.length;
+        long[] keyScratch = new long[n];
+        int[] rowScratch = new int[n];
+        int[] counts = new int[BUCKETS];
+        for (int shift = 0; shift < keyBits; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (long key : keys) {
+                counts[(int) (key >>> shift) & (BUCKETS - 1)]++;
+            }
+            if (counts[(int) (keys[0] >>> shift) & (BUCKETS - 1)] == n) {
+                continue;
+            }
+            int offset = 0;
+            for (int digit = 0; digit < BUCKETS; digit++) {
+                int count = counts[digit];
+                counts[digit] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < n; i++) {
+                int slot = counts[(int) (keys[i] >>> shift) & (BUCKETS - 1)]++;
+                keyScratch[slot] = keys[i];
+                rowScratch[slot] = rows[i];
+            }
+            System.arraycopy(keyScratch, 0, keys, 0, n);
+            System.arraycopy(rowScratch, 0, rows, 0, n);
+        }
+    }
+
+    private static RealEstate[] sortByCompareTo(List<RealEstate> batch, List<RealEstate> duplicates) {
+        RealEstate[] sorted = batch.toArray(new RealEstate[0]);
+        Arrays.sort(sorted);  // stable
+        List<RealEstate> unique = new ArrayList<>(sorted.length);
+        for (RealEstate property : sorted) {
+            if (unique.isEmpty() || unique.get(unique.size() - 1).compareTo(property) != 0) {
+                unique.add(property);
+            } else if (duplicates != null) {
+                duplicates.add(property);
+            }
+        }
+        return unique.toArray(new RealEstate[0]);
+    }
+
+    private static int bitsFor(long range) {
+        return 64 - Long.numberOfLeadingZeros(range);
+    }
+}
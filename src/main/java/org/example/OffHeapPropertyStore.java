@@ -0,0 +1,573 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// ===================== OffHeapPropertyStore CLASS =====================
+// Listing store for datasets larger than the heap. Every listing is a fixed 32-byte
+// record in memory-mapped temp files, with cities as dictionary ids; the sorted order
+// and the dedup table are int arrays in mapped memory as well. The heap only holds the
+// city dictionary and the mapping windows, so its size does not grow with the row count.
+//
+//   record  double price, int totalPrice, int sqm, int rooms, int floor, int cityId
+//           (-1 = null), byte genre ordinal (-1 = null), byte kind (bit 0 panel,
+//           bit 1 insulated), 2 bytes padding
+//
+// cursor() and cursor(query) read records in place; iterator(), snapshot() and query()
+// create detached RealEstate/Panel copies like ColumnarPropertyStore. Mutators are
+// synchronized; cursors and iterators are not safe against a concurrent clear().
+// The temp files are unlinked as soon as they are mapped where the OS allows it.
+class OffHeapPropertyStore implements PropertyStore {
+    private static final int RECORD_SIZE = 32;
+    private static final byte KIND_PANEL = 1;
+    private static final byte KIND_INSULATED = 2;
+    private static final int MIN_TABLE_SIZE = 1 << 12;
+
+    private final Path directory;
+    private Memory records;
+    private int size;
+
+    // City dictionary; small, so it stays on the heap
+    private final Map<String, Integer> cityIds = new HashMap<>();
+    private final List<String> cities = new ArrayList<>();
+
+    // Open-addressed set of row + 1 used to reject listings equal per compareTo;
+    // null after loadSorted until the next add needs it
+    private Memory slots;
+    private int slotCount;
+
+    // Rows in compareTo order; rebuilt lazily after inserts
+    private Memory order;
+
+    // Temp files in java.io.tmpdir
+    public OffHeapPropertyStore() {
+        this(Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    // Temp files in the given directory, e.g. a disk with room for the dataset
+    public OffHeapPropertyStore(Path directory) {
+        this.directory = directory;
+        this.records = new Memory(directory);
+    }
+
+    @Override
+    public synchronized boolean add(RealEstate property) {
+        int total = property.getTotalPrice();
+        int city = cityIdOf(property.getCity());
+        int area = property.getSqm();
+
+        if (slots == null || (long) (size + 1) * 2 > slotCount) {
+            rehash(Math.max(MIN_TABLE_SIZE, Integer.highestOneBit(Math.max(1, size)) << 2));
+        }
+        int mask = slotCount - 1;
+        int slot = hash(total, city, area) & mask;
+        int entry;
+        while ((entry = slots.getInt(slot * 4L)) != 0) {
+            long at = offset(entry - 1);
+            if (records.getInt(at + 8) == total && records.getInt(at + 24) == city && records.getInt(at + 12) == area) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        append(property, total, city, area);
+        slots.putInt(slot * 4L, size);
+        if (order != null) {
+            order.close();  // cursors already reading it keep their mapped windows
+            order = null;
+        }
+        return true;
+    }
+
+    // Records are appended as given, so the sorted permutation is the identity; the dedup
+    // table is only built when the next add needs it
+    @Override
+    public synchronized void loadSorted(RealEstate[] sorted) {
+        if (size != 0) {
+            throw new IllegalStateException("loadSorted needs an empty store, size is " + size);
+        }
+        slots = null;
+        for (RealEstate property : sorted) {
+            append(property, property.getTotalPrice(), cityIdOf(property.getCity()), property.getSqm());
+        }
+        Memory identity = new Memory(directory);
+        for (int i = 0; i < size; i++) {
+            identity.putInt(i * 4L, i);
+        }
+        if (order != null) {
+            order.close();
+        }
+        order = identity;
+    }
+
+    private void append(RealEstate property, int total, int city, int area) {
+        if (size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Store is full");
+        }
+        long at = offset(size++);
+        records.putDouble(at, property.getPrice());
+        records.putInt(at + 8, total);
+        records.putInt(at + 12, area);
+        records.putInt(at + 16, property.getNumberOfRooms());
+        records.putInt(at + 24, city);
+        records.putByte(at + 28, property.getGenre() == null ? -1 : (byte) property.getGenre().ordinal());
+        if (property instanceof Panel) {
+            Panel panel = (Panel) property;
+            records.putInt(at + 20, panel.getFloor());
+            records.putByte(at + 29, (byte) (KIND_PANEL | (panel.isInsulated() ? KIND_INSULATED : 0)));
+        } else {
+            records.putInt(at + 20, 0);
+            records.putByte(at + 29, (byte) 0);
+        }
+    }
+
+    // Records are copies, so no caller-held instance is ever stored here
+    @Override
+    public boolean remove(RealEstate property) {
+        return false;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void clear() {
+        records.close();
+        if (slots != null) {
+            slots.close();
+        }
+        if (order != null) {
+            order.close();
+        }
+        records = new Memory(directory);
+        slots = null;
+        slotCount = 0;
+        order = null;
+        size = 0;
+        cityIds.clear();
+        cities.clear();
+    }
+
+    // ---------------- Cursors ----------------
+    @Override
+    public synchronized ListingCursor cursor() {
+        return new RecordCursor(sortedRows(), 0, size, false, null, -1, Integer.MAX_VALUE);
+    }
+
+    // The cursor pins the sorted rows and the size, so no record copies are needed
+    @Override
+    public synchronized Frozen freeze() {
+        return new Frozen(size, cursor());
+    }
+
+    // Binary search on the sorted rows for the price range, then filter on the records
+    @Override
+    public synchronized ListingCursor cursor(PropertyQuery query) {
+        Memory rows = sortedRows();
+        boolean[] cityMatches = null;
+        if (query.cityKey() != null) {
+            cityMatches = new boolean[cities.size()];
+            for (int id = 0; id < cityMatches.length; id++) {
+                cityMatches[id] = query.cityKey().equals(PropertyQuery.cityKey(cities.get(id)));
+            }
+        }
+        int genreFilter = query.getGenre() == null ? -1 : query.getGenre().ordinal();
+
+        int low = firstAbove(rows, query.getMinTotalPrice() - 1L);
+        int high = firstAbove(rows, query.getMaxTotalPrice());
+        return new RecordCursor(rows, low, high, query.isDescending(), cityMatches, genreFilter, query.getLimit());
+    }
+
+    // Mapped temp files currently open across all off-heap stores
+    static int openMemoryCount() {
+        return Memory.OPEN.get();
+    }
+
+    // First position whose total price is above bound
+    private int firstAbove(Memory rows, long bound) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (records.getInt(offset(rows.getInt(mid * 4L)) + 8) <= bound) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Reads the current record's fields straight from mapped memory
+    private final class RecordCursor implements ListingCursor {
+        private final Memory rows;
+        private final Memory data = records;
+        private final String[] cityNames = cities.toArray(new String[0]);
+        private final Genre[] genres = Genre.values();
+        private final boolean[] cityMatches;
+        private final int genreFilter;
+        private final int step;
+        private int remaining;   // limit left
+        private int rowsLeft;    // rows of the price range not yet visited
+        private int position;
+        private long at = -1;
+
+        // Rows [from, end), the price range, walked upwards or downwards
+        RecordCursor(Memory rows, int from, int end, boolean descending, boolean[] cityMatches, int genreFilter, int limit) {
+            this.rows = rows;
+            this.position = descending ? end - 1 : from;
+            this.step = descending ? -1 : 1;
+            this.rowsLeft = end - from;
+            this.cityMatches = cityMatches;
+            this.genreFilter = genreFilter;
+            this.remaining = limit;
+        }
+
+        @Override
+        public boolean next() {
+            while (remaining > 0 && rowsLeft > 0) {
+                long candidate = offset(rows.getInt(position * 4L));
+                position += step;
+                rowsLeft--;
+                if (genreFilter >= 0 && data.getByte(candidate + 28) != genreFilter) {
+                    continue;
+                }
+                int city = data.getInt(candidate + 24);
+                if (cityMatches != null && (city < 0 || !cityMatches[city])) {
+                    continue;
+                }
+                at = candidate;
+                remaining--;
+                return true;
+            }
+            at = -1;
+            remaining = 0;
+            return false;
+        }
+
+        private long current() {
+            if (at < 0) {
+                throw new NoSuchElementException();
+            }
+            return at;
+        }
+
+        @Override
+        public String getCity() {
+            int city = data.getInt(current() + 24);
+            return city < 0 ? null : cityNames[city];
+        }
+
+        @Override
+        public Genre getGenre() {
+            byte genre = data.getByte(current() + 28);
+            return genre < 0 ? null : genres[genre];
+        }
+
+        @Override public double getPrice() { return data.getDouble(current()); }
+        @Override public int getTotalPrice() { return data.getInt(current() + 8); }
+        @Override public int getSqm() { return data.getInt(current() + 12); }
+        @Override public int getNumberOfRooms() { return data.getInt(current() + 16); }
+        @Override public int getFloor() { return data.getInt(current() + 20); }
+        @Override public boolean isPanel() { return (data.getByte(current() + 29) & KIND_PANEL) != 0; }
+        @Override public boolean isInsulated() { return (data.getByte(current() + 29) & KIND_INSULATED) != 0; }
+    }
+
+    // ---------------- Object views ----------------
+    @Override
+    public List<RealEstate> query(PropertyQuery query) {
+        ListingCursor cursor = cursor(query);
+        List<RealEstate> result = new ArrayList<>();
+        while (cursor.next()) {
+            result.add(cursor.materialize());
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized RealEstate[] snapshot() {
+        RealEstate[] copy = new RealEstate[size];
+        ListingCursor cursor = cursor();
+        for (int i = 0; cursor.next(); i++) {
+            copy[i] = cursor.materialize();
+        }
+        return copy;
+    }
+
+    @Override
+    public Iterator<RealEstate> iterator() {
+        ListingCursor cursor = cursor();
+        return new Iterator<RealEstate>() {
+            private boolean ready;
+            private boolean more;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready) {
+                    more = cursor.next();
+                    ready = true;
+                }
+                return more;
+            }
+
+            @Override
+            public RealEstate next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                return cursor.materialize();
+            }
+        };
+    }
+
+    @Override
+    public Collection<RealEstate> asCollection() {
+        return new AbstractCollection<RealEstate>() {
+            @Override
+            public Iterator<RealEstate> iterator() {
+                return OffHeapPropertyStore.this.iterator();
+            }
+
+            @Override
+            public int size() {
+                return OffHeapPropertyStore.this.size();
+            }
+
+            @Override
+            public boolean add(RealEstate property) {
+                return OffHeapPropertyStore.this.add(property);
+            }
+
+            @Override
+            public void clear() {
+                OffHeapPropertyStore.this.clear();
+            }
+        };
+    }
+
+    // ---------------- Internals ----------------
+    private static long offset(int row) {
+        return (long) row * RECORD_SIZE;
+    }
+
+    private int cityIdOf(String city) {
+        if (city == null) {
+            return -1;
+        }
+        Integer id = cityIds.get(city);
+        if (id == null) {
+            id = cities.size();
+            cities.add(city);
+            cityIds.put(city, id);
+        }
+        return id;
+    }
+
+    private static int hash(int total, int city, int area) {
+        int h = total * 31 + city;
+        h = h * 31 + area;
+        return h ^ (h >>> 16);
+    }
+
+    private void rehash(int tableSize) {
+        if (slots != null) {
+            slots.close();
+        }
+        Memory rehashed = new Memory(directory);  // a new file reads as all zero
+        int mask = tableSize - 1;
+        for (int row = 0; row < size; row++) {
+            long at = offset(row);
+            int slot = hash(records.getInt(at + 8), records.getInt(at + 24), records.getInt(at + 12)) & mask;
+            while (rehashed.getInt(slot * 4L) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            rehashed.putInt(slot * 4L, row + 1);
+        }
+        slots = rehashed;
+        slotCount = tableSize;
+    }
+
+    private Memory sortedRows() {
+        if (order != null) {
+            return order;
+        }
+        // Rank cities by String order once, so rows compare on ints only
+        int[] cityRank = new int[cities.size()];
+        Integer[] byName = new Integer[cities.size()];
+        for (int i = 0; i < byName.length; i++) {
+            byName[i] = i;
+        }
+        Arrays.sort(byName, (a, b) -> cities.get(a).compareTo(cities.get(b)));
+        for (int rank = 0; rank < byName.length; rank++) {
+            cityRank[byName[rank]] = rank;
+        }
+
+        // Sort (total price, row) pairs, so most comparisons read the pairs sequentially
+        // and only equal total prices look at the records
+        Memory entries = new Memory(directory);
+        Memory scratch = new Memory(directory);
+        for (int row = 0; row < size; row++) {
+            entries.putLong(row * 8L, ((long) records.getInt(offset(row) + 8) << 32) | row);
+        }
+        Memory sorted = mergeSort(entries, scratch, size, cityRank);
+        Memory rows = new Memory(directory);
+        for (int i = 0; i < size; i++) {
+            rows.putInt(i * 4L, (int) sorted.getLong(i * 8L));
+        }
+        entries.close();
+        scratch.close();
+        order = rows;
+        return rows;
+    }
+
+    private int compareEntries(long a, long b, int[] cityRank) {
+        int result = Integer.compare((int) (a >> 32), (int) (b >> 32));
+        if (result != 0) {
+            return result;
+        }
+        long atA = offset((int) a);
+        long atB = offset((int) b);
+        int cityA = records.getInt(atA + 24);
+        int cityB = records.getInt(atB + 24);
+        result = Integer.compare(cityA < 0 ? -1 : cityRank[cityA], cityB < 0 ? -1 : cityRank[cityB]);
+        if (result != 0) {
+            return result;
+        }
+        return Integer.compare(records.getInt(atA + 12), records.getInt(atB + 12));
+    }
+
+    // Bottom-up merge sort of 8-byte entries; stable, so equal keys keep insertion order.
+    // Returns whichever of the two buffers holds the result.
+    private Memory mergeSort(Memory entries, Memory scratch, int count, int[] cityRank) {
+        final int run = 32;
+        for (int start = 0; start < count; start += run) {
+            int stop = Math.min(start + run, count);
+            for (int i = start + 1; i < stop; i++) {
+                long entry = entries.getLong(i * 8L);
+                int j = i - 1;
+                while (j >= start && compareEntries(entries.getLong(j * 8L), entry, cityRank) > 0) {
+                    entries.putLong((j + 1) * 8L, entries.getLong(j * 8L));
+                    j--;
+                }
+                entries.putLong((j + 1) * 8L, entry);
+            }
+        }
+        Memory source = entries;
+        Memory target = scratch;
+        for (long width = run; width < count; width *= 2) {
+            for (long left = 0; left < count; left += 2 * width) {
+                int mid = (int) Math.min(left + width, count);
+                int right = (int) Math.min(left + 2 * width, count);
+                int i = (int) left;
+                int j = mid;
+                long a = i < mid ? source.getLong(i * 8L) : 0;
+                long b = j < right ? source.getLong(j * 8L) : 0;
+                for (int k = (int) left; k < right; k++) {
+                    if (j >= right || (i < mid && compareEntries(a, b, cityRank) <= 0)) {
+                        target.putLong(k * 8L, a);
+                        if (++i < mid) {
+                            a = source.getLong(i * 8L);
+                        }
+                    } else {
+                        target.putLong(k * 8L, b);
+                        if (++j < right) {
+                            b = source.getLong(j * 8L);
+                        }
+                    }
+                }
+            }
+            Memory swap = source;
+            source = target;
+            target = swap;
+        }
+        return source;
+    }
+
+    // ---------------- Mapped memory ----------------
+    // Growable byte space over an unlinked temp file, mapped in fixed windows on first use
+    private static final class Memory {
+        private static final int WINDOW_SHIFT = 26;  // 64 MB, a multiple of RECORD_SIZE
+        private static final long WINDOW_MASK = (1L << WINDOW_SHIFT) - 1;
+        // Across all stores; each open instance holds a file descriptor
+        static final AtomicInteger OPEN = new AtomicInteger();
+
+        private final FileChannel channel;
+        private ByteBuffer[] windows = new ByteBuffer[4];
+        private boolean closed;
+
+        Memory(Path directory) {
+            try {
+                Path file = Files.createTempFile(directory, "listings", ".offheap");
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                try {
+                    Files.delete(file);  // the mapping outlives the directory entry on POSIX systems
+                } catch (IOException e) {
+                    file.toFile().deleteOnExit();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create off-heap store file in " + directory, e);
+            }
+            OPEN.incrementAndGet();
+        }
+
+        private ByteBuffer window(long offset) {
+            int index = (int) (offset >>> WINDOW_SHIFT);
+            if (index >= windows.length) {
+                windows = Arrays.copyOf(windows, Math.max(index + 1, windows.length * 2));
+            }
+            ByteBuffer window = windows[index];
+            if (window == null) {
+                try {
+                    window = channel.map(FileChannel.MapMode.READ_WRITE, (long) index << WINDOW_SHIFT, 1L << WINDOW_SHIFT)
+                            .order(ByteOrder.nativeOrder());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot map off-heap store memory", e);
+                }
+                windows[index] = window;
+            }
+            return window;
+        }
+
+        long getLong(long offset) { return window(offset).getLong((int) (offset & WINDOW_MASK)); }
+        void putLong(long offset, long value) { window(offset).putLong((int) (offset & WINDOW_MASK), value); }
+        int getInt(long offset) { return window(offset).getInt((int) (offset & WINDOW_MASK)); }
+        void putInt(long offset, int value) { window(offset).putInt((int) (offset & WINDOW_MASK), value); }
+        double getDouble(long offset) { return window(offset).getDouble((int) (offset & WINDOW_MASK)); }
+        void putDouble(long offset, double value) { window(offset).putDouble((int) (offset & WINDOW_MASK), value); }
+        byte getByte(long offset) { return window(offset).get((int) (offset & WINDOW_MASK)); }
+        void putByte(long offset, byte value) { window(offset).put((int) (offset & WINDOW_MASK), value); }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            OPEN.decrementAndGet();
+            try {
+                channel.close();  // windows stay valid until collected
+            } catch (IOException e) {
+                System.err.println("Error closing off-heap store file: " + e.getMessage());
+            }
+        }
+    }
+}
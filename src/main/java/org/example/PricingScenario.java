@@ -0,0 +1,115 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// ===================== PricingScenario CLASS =====================
+// What-if repricing of a whole collection. Discount rules are evaluated for every
+// listing in one parallel pass over a snapshot; listings whose price changes are
+// replaced by repriced copies in an overlay, so the agent's listings are never
+// mutated. The overlay is re-sorted once and deduplicated like a TreeSet, then can be
+// queried and reported on, committed with RealEstateAgent.commitScenario, or simply
+// dropped to discard it.
+class PricingScenario {
+    private final Object base;          // identifies the collection the snapshot was taken from
+    private final long baseVersion;
+    private final RealEstate[] listings;
+    private final int repricedCount;
+
+    PricingScenario(Object base, long baseVersion, RealEstate[] snapshot, List<DiscountRule> rules) {
+        this.base = base;
+        this.baseVersion = baseVersion;
+        List<DiscountRule> ruleList = new ArrayList<>(rules);
+
+        // Each slot is written by exactly one task, so the result does not depend on scheduling
+        RealEstate[] overlay = new RealEstate[snapshot.length];
+        Arrays.parallelSetAll(overlay, i -> reprice(snapshot[i], ruleList));
+        int changed = 0;
+        for (int i = 0; i < overlay.length; i++) {
+            if (overlay[i] != snapshot[i]) {
+                changed++;
+            }
+        }
+        this.repricedCount = changed;
+
+        // One stable bulk sort; of several equal listings the first in snapshot order is kept
+        Arrays.parallelSort(overlay);
+        int size = 0;
+        for (RealEstate property : overlay) {
+            if (size == 0 || overlay[size - 1].compareTo(property) != 0) {
+                overlay[size++] = property;
+            }
+        }
+        this.listings = size == overlay.length ? overlay : Arrays.copyOf(overlay, size);
+    }
+
+    // Rules compound in order, like successive makeDiscount calls
+    private static RealEstate reprice(RealEstate property, List<DiscountRule> rules) {
+        double price = property.getPrice();
+        for (DiscountRule rule : rules) {
+            int percentage = rule.percentageFor(property);
+            if (percentage != 0) {
+                price = price * (100 - percentage) / 100.0;
+            }
+        }
+        if (price == property.getPrice()) {
+            return property;
+        }
+        RealEstate copy = property.withPrice(price);
+        copy.getTotalPrice();  // cache the new price inside the parallel pass
+        return copy;
+    }
+
+    public int size() {
+        return listings.length;
+    }
+
+    // Listings whose price the rules changed, before deduplication
+    public int getRepricedCount() {
+        return repricedCount;
+    }
+
+    // Repriced collection in total-price order
+    public RealEstate[] snapshot() {
+        return listings.clone();
+    }
+
+    public List<RealEstate> asList() {
+        return Collections.unmodifiableList(Arrays.asList(listings));
+    }
+
+    // Binary search for the lower price bound, then a filtered walk
+    public List<RealEstate> query(PropertyQuery query) {
+        int low = 0;
+        int high = listings.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (listings[mid].getTotalPrice() < query.getMinTotalPrice()) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        List<RealEstate> result = new ArrayList<>();
+        for (int i = low; i < listings.length && result.size() < query.getLimit(); i++) {
+            int total = listings[i].getTotalPrice();
+            if (total > query.getMaxTotalPrice()) {
+                break;
+            }
+            if (query.matches(listings[i], total)) {
+                result.add(listings[i]);
+            }
+        }
+        return result;
+    }
+
+    public ReportAggregator.Metrics metrics(ReportAggregator aggregator) {
+        return aggregator.aggregate(listings);
+    }
+
+    boolean isBasedOn(Object collection, long version) {
+        return base == collection && baseVersion == version;
+    }
+}
@@ -0,0 +1,110 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+// ===================== PricingTable CLASS =====================
+// Settlement modifiers for RealEstate.getTotalPrice(), keyed by canonical city name
+// (lower case, accents stripped). The default table is read from the
+// city-modifiers.properties resource, or from the file named by the
+// realestate.pricing.file system property.
+class PricingTable {
+    static final String RESOURCE = "/city-modifiers.properties";
+    static final String FILE_PROPERTY = "realestate.pricing.file";
+    static final int MAX_CACHED_CITIES = 10_000;
+
+    private static final PricingTable DEFAULT = loadDefault();
+
+    private final Map<String, Double> modifiers;
+    // Raw spelling -> modifier, so each distinct city string is canonicalized once
+    private final Map<String, Double> cache = new ConcurrentHashMap<>();
+
+    PricingTable(Map<String, Double> modifiers) {
+        Map<String, Double> canonical = new HashMap<>();
+        for (Map.Entry<String, Double> entry : modifiers.entrySet()) {
+            canonical.put(canonicalCity(entry.getKey()), entry.getValue());
+        }
+        this.modifiers = Collections.unmodifiableMap(canonical);
+    }
+
+    public static PricingTable getDefault() {
+        return DEFAULT;
+    }
+
+    public static PricingTable load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return fromReader(reader);
+        }
+    }
+
+    // Modifier for the given city, 1.0 when the city is unknown or null
+    public double modifierFor(String city) {
+        if (city == null) {
+            return 1.0;
+        }
+        Double modifier = cache.get(city);
+        if (modifier == null) {
+            modifier = modifiers.getOrDefault(canonicalCity(city), 1.0);
+            if (cache.size() < MAX_CACHED_CITIES) {
+                cache.put(city, modifier);
+            }
+        }
+        return modifier;
+    }
+
+    public Map<String, Double> getModifiers() {
+        return modifiers;
+    }
+
+    // "Nyíregyháza", "NYIREGYHAZA" and "nyiregyhaza" all map to "nyiregyhaza"
+    static String canonicalCity(String city) {
+        String decomposed = Normalizer.normalize(city.trim(), Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{M}+", "").toLowerCase(Locale.ROOT);
+    }
+
+    // ---------------- Loading ----------------
+    private static PricingTable fromReader(Reader reader) throws IOException {
+        Properties properties = new Properties();
+        properties.load(reader);
+        Map<String, Double> modifiers = new HashMap<>();
+        for (String city : properties.stringPropertyNames()) {
+            String value = properties.getProperty(city).trim();
+            try {
+                modifiers.put(city, Double.parseDouble(value));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid modifier for city " + city + ": " + value, e);
+            }
+        }
+        return new PricingTable(modifiers);
+    }
+
+    private static PricingTable loadDefault() {
+        try {
+            String file = System.getProperty(FILE_PROPERTY);
+            if (file != null) {
+                return load(Paths.get(file));
+            }
+            try (InputStream in = PricingTable.class.getResourceAsStream(RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing pricing resource " + RESOURCE);
+                }
+                return fromReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load pricing table: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.example;
+
+import java.util.Locale;
+
+// ===================== PropertyQuery CLASS =====================
+// Filter for PropertyStore.query: optional city (case-insensitive), genre and
+// inclusive total-price range, plus a result limit. Results come back in
+// total-price order, cheapest first, or most expensive first when descending().
+// With descending and limit(1), e.g., a store returns just the top of the range.
+class PropertyQuery {
+    private String city;
+    private String cityKey;
+    private Genre genre;
+    private int minTotalPrice = Integer.MIN_VALUE;
+    private int maxTotalPrice = Integer.MAX_VALUE;
+    private int limit = Integer.MAX_VALUE;
+    private boolean descending;
+
+    public PropertyQuery city(String city) {
+        this.city = city;
+        this.cityKey = city == null ? null : cityKey(city);
+        return this;
+    }
+
+    public PropertyQuery genre(Genre genre) {
+        this.genre = genre;
+        return this;
+    }
+
+    public PropertyQuery totalPriceBetween(int min, int max) {
+        if (min > max) {
+            throw new IllegalArgumentException("Empty price range: " + min + " > " + max);
+        }
+        this.minTotalPrice = min;
+        this.maxTotalPrice = max;
+        return this;
+    }
+
+    public PropertyQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public PropertyQuery descending() {
+        this.descending = true;
+        return this;
+    }
+
+    public String getCity() { return city; }
+    public Genre getGenre() { return genre; }
+    public int getMinTotalPrice() { return minTotalPrice; }
+    public int getMaxTotalPrice() { return maxTotalPrice; }
+    public int getLimit() { return limit; }
+    public boolean isDescending() { return descending; }
+
+    // Index key for the city filter; null when the query has no city
+    String cityKey() {
+        return cityKey;
+    }
+
+    static String cityKey(String city) {
+        return city.toLowerCase(Locale.ROOT);
+    }
+
+    // Full check, used by stores that scan instead of using an index
+    boolean matches(RealEstate property, int totalPrice) {
+        if (totalPrice < minTotalPrice || totalPrice > maxTotalPrice) {
+            return false;
+        }
+        if (genre != null && property.getGenre() != genre) {
+            return false;
+        }
+        return cityKey == null || (property.getCity() != null && cityKey.equals(cityKey(property.getCity())));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PropertyQuery [City: %s, Genre: %s, Total price: %d..%d, Limit: %d%s]",
+                city, genre, minTotalPrice, maxTotalPrice, limit, descending ? ", Descending" : "");
+    }
+}
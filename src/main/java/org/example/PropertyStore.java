@@ -0,0 +1,90 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+// ===== PropertyStore =====
+// Storage backend behind RealEstateAgent. Listings are kept unique and ordered
+// by RealEstate.compareTo (total price, then city, then sqm); adding a listing
+// that compares equal to a stored one is a no-op, as with TreeSet.add.
+interface PropertyStore extends Iterable<RealEstate> {
+    boolean add(RealEstate property);
+
+    // Removes this exact instance if the store holds it; stores that copy listings return false
+    boolean remove(RealEstate property);
+
+    int size();
+    void clear();
+
+    // Bulk load into an empty store from listings already in compareTo order with no two
+    // equal, e.g. a snapshot; stores may skip their per-add ordering and dedup work
+    default void loadSorted(RealEstate[] sorted) {
+        if (!isEmpty()) {
+            throw new IllegalStateException("loadSorted needs an empty store, size is " + size());
+        }
+        for (RealEstate property : sorted) {
+            add(property);
+        }
+    }
+
+    // Live collection view; iteration follows total-price order
+    Collection<RealEstate> asCollection();
+
+    // Frozen copy in total-price order, safe to take while other threads add
+    default RealEstate[] snapshot() {
+        return asCollection().toArray(new RealEstate[0]);
+    }
+
+    // Listings as of one moment, for walks that must not see concurrent changes; object
+    // stores walk one snapshot(), record stores pin their sorted rows
+    default Frozen freeze() {
+        RealEstate[] all = snapshot();
+        return new Frozen(all.length, ListingCursor.of(Arrays.asList(all).iterator()));
+    }
+
+    // A frozen view: its size and a cursor over exactly those listings in total-price order
+    final class Frozen {
+        final int size;
+        final ListingCursor cursor;
+
+        Frozen(int size, ListingCursor cursor) {
+            this.size = size;
+            this.cursor = cursor;
+        }
+    }
+
+    // Listings matching the query in total-price order (see PropertyQuery.descending);
+    // stores with indexes override the scan
+    default List<RealEstate> query(PropertyQuery query) {
+        List<RealEstate> result = new ArrayList<>();
+        RealEstate[] all = snapshot();
+        for (int i = 0; i < all.length && result.size() < query.getLimit(); i++) {
+            RealEstate property = all[query.isDescending() ? all.length - 1 - i : i];
+            if (query.matches(property, property.getTotalPrice())) {
+                result.add(property);
+            }
+        }
+        return result;
+    }
+
+    // All listings in total-price order; record-based stores avoid creating objects
+    default ListingCursor cursor() {
+        return ListingCursor.of(iterator());
+    }
+
+    // Listings matching the query in total-price order
+    default ListingCursor cursor(PropertyQuery query) {
+        return ListingCursor.of(query(query).iterator());
+    }
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    default Stream<RealEstate> stream() {
+        return asCollection().stream();
+    }
+}
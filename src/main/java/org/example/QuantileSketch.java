@@ -0,0 +1,146 @@
+package org.example;
+
+import java.util.Arrays;
+
+// ===================== QuantileSketch CLASS =====================
+// Approximate quantiles of non-negative prices with a relative error bound: values are
+// counted in logarithmic buckets whose bounds grow by gamma = (1 + a) / (1 - a), so any
+// returned quantile is within a (the relative accuracy) of the true value at that rank.
+// Memory is one int per bucket between the smallest and largest value seen, at most about
+// 1100 buckets for int prices at 1%. Sketches with the same accuracy merge by adding their
+// counts, and values can be removed again, so a sketch can follow a changing collection.
+// Values below 1 are counted as 0. Not thread-safe.
+class QuantileSketch {
+    static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+
+    private int[] counts = new int[0];  // counts[i] = values in bucket minIndex + i
+    private int minIndex;
+    private long zeroCount;
+    private long count;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1): " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public void add(double value) {
+        if (value < 1) {
+            zeroCount++;
+        } else {
+            int index = index(value);
+            ensureCovers(index);
+            counts[index - minIndex]++;
+        }
+        count++;
+    }
+
+    // Undoes one add of the same value; values that were never added are ignored
+    public void remove(double value) {
+        if (value < 1) {
+            if (zeroCount == 0) {
+                return;
+            }
+            zeroCount--;
+        } else {
+            int slot = index(value) - minIndex;
+            if (slot < 0 || slot >= counts.length || counts[slot] == 0) {
+                return;
+            }
+            counts[slot]--;
+        }
+        count--;
+    }
+
+    // Adds every value of other to this sketch; both must have the same accuracy
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches with relative accuracy "
+                    + relativeAccuracy + " and " + other.relativeAccuracy);
+        }
+        if (other.counts.length > 0) {
+            ensureCovers(other.minIndex);
+            ensureCovers(other.minIndex + other.counts.length - 1);
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[other.minIndex + i - minIndex] += other.counts[i];
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    public QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(relativeAccuracy);
+        copy.merge(this);
+        return copy;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    // Value at rank floor(q * (count - 1)) in ascending order; NaN when empty
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be in [0, 1]: " + q);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(q * (count - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                return value(minIndex + i);
+            }
+        }
+        return value(minIndex + counts.length - 1);
+    }
+
+    // ---------------- Internals ----------------
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    // Midpoint of bucket index, (gamma^(index-1), gamma^index], in the relative sense
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    private void ensureCovers(int index) {
+        if (counts.length == 0) {
+            counts = new int[8];
+            minIndex = index;
+            return;
+        }
+        if (index < minIndex) {
+            // Indexes of values >= 1 are never negative, so do not grow below 0
+            int shift = Math.min(Math.max(minIndex - index, counts.length / 2), minIndex);
+            int[] grown = new int[counts.length + shift];
+            System.arraycopy(counts, 0, grown, shift, counts.length);
+            counts = grown;
+            minIndex -= shift;
+        } else if (index >= minIndex + counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index - minIndex + 1, counts.length + counts.length / 2));
+        }
+    }
+}
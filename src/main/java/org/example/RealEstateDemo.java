@@ -1,7 +1,24 @@
 package org.example;
 
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 // ===== Genre enumeration =====
 enum Genre {
@@ -24,6 +41,15 @@ interface PanelInterface {
     int roomPrice();
 }
 
+// ===== PriceChangeListener =====
+// Notified around every mutation that changes a listing's total price, sort key or any
+// field the collection indexes or aggregates by (genre, rooms), so a collection holding
+// the listing can take it out and put it back.
+interface PriceChangeListener {
+    void beforePriceChange(RealEstate property);
+    void afterPriceChange(RealEstate property);
+}
+
 // ===================== RealEstate CLASS =====================
 class RealEstate implements PropertyInterface, Comparable<RealEstate> {
     protected String city;
@@ -32,6 +58,10 @@ class RealEstate implements PropertyInterface, Comparable<RealEstate> {
     protected int numberOfRooms;  // integer number of rooms
     protected Genre genre;
 
+    private static final int PRICE_NOT_CACHED = Integer.MIN_VALUE;
+    private int cachedTotalPrice = PRICE_NOT_CACHED;  // reset by every mutator that affects the price
+    private volatile PriceChangeListener priceChangeListener;
+
     // Default constructor
     public RealEstate() {
     }
@@ -47,51 +77,70 @@ class RealEstate implements PropertyInterface, Comparable<RealEstate> {
 
     // Getters and setters
     public String getCity() { return city; }
-    public void setCity(String city) { this.city = city; }
+    public void setCity(String city) { beforePriceChange(); this.city = city; afterPriceChange(); }
 
     public double getPrice() { return price; }
-    public void setPrice(double price) { this.price = price; }
+    public void setPrice(double price) { beforePriceChange(); this.price = price; afterPriceChange(); }
 
     public int getSqm() { return sqm; }
-    public void setSqm(int sqm) { this.sqm = sqm; }
+    public void setSqm(int sqm) { beforePriceChange(); this.sqm = sqm; afterPriceChange(); }
 
     public int getNumberOfRooms() { return numberOfRooms; }
-    public void setNumberOfRooms(int numberOfRooms) { this.numberOfRooms = numberOfRooms; }
+    public void setNumberOfRooms(int numberOfRooms) { beforePriceChange(); this.numberOfRooms = numberOfRooms; afterPriceChange(); }
 
     public Genre getGenre() { return genre; }
-    public void setGenre(Genre genre) { this.genre = genre; }
+    public void setGenre(Genre genre) { beforePriceChange(); this.genre = genre; afterPriceChange(); }
 
     // ---------------- Interface Implementations ----------------
     @Override
     public void makeDiscount(int percentage) {
+        beforePriceChange();
         this.price = this.price * (100 - percentage) / 100.0;
+        afterPriceChange();
     }
 
+    // Cached: compareTo calls this on every TreeSet comparison
     @Override
     public int getTotalPrice() {
+        int totalPrice = cachedTotalPrice;
+        if (totalPrice == PRICE_NOT_CACHED) {
+            totalPrice = computeTotalPrice();
+            cachedTotalPrice = totalPrice;
+        }
+        return totalPrice;
+    }
+
+    // Settlement modifier comes from the PricingTable (city-modifiers.properties)
+    protected int computeTotalPrice() {
         double basePrice = price * sqm;
-        double modifier = 1.0;
+        double modifier = PricingTable.getDefault().modifierFor(city);
+        return (int) (basePrice * modifier);
+    }
 
-        if (city != null) {
-            switch (city.toLowerCase()) {
-                case "budapest":
-                    modifier = 1.30;
-                    break;
-                case "debrecen":
-                    modifier = 1.20;
-                    break;
-                case "nyíregyháza":
-                case "nyiregyhaza":
-                    modifier = 1.15;
-                    break;
-                default:
-                    modifier = 1.0;
-                    break;
-            }
+    protected void beforePriceChange() {
+        PriceChangeListener listener = priceChangeListener;
+        if (listener != null) {
+            listener.beforePriceChange(this);
         }
-        return (int) (basePrice * modifier);
     }
 
+    protected void afterPriceChange() {
+        cachedTotalPrice = PRICE_NOT_CACHED;
+        PriceChangeListener listener = priceChangeListener;
+        if (listener != null) {
+            listener.afterPriceChange(this);
+        }
+    }
+
+    // Detached copy with another price per sqm; all other fields are kept
+    RealEstate withPrice(double newPrice) {
+        return new RealEstate(city, newPrice, sqm, numberOfRooms, genre);
+    }
+
+    // Set by the collection that owns this listing; null when it is not held anywhere
+    PriceChangeListener getPriceChangeListener() { return priceChangeListener; }
+    void setPriceChangeListener(PriceChangeListener listener) { this.priceChangeListener = listener; }
+
     @Override
     public double averageSqmPerRoom() {
         if (numberOfRooms == 0) return 0.0;
@@ -107,6 +156,34 @@ class RealEstate implements PropertyInterface, Comparable<RealEstate> {
         );
     }
 
+    // Writes exactly toString() without the intermediate String
+    void appendTo(StreamingTextWriter out) throws IOException {
+        writeListing(out, false, city, genre, price, sqm, numberOfRooms, 0, false, getTotalPrice());
+    }
+
+    // toString() text of a RealEstate or Panel from its fields, shared with ListingCursor
+    static void writeListing(StreamingTextWriter out, boolean panel, String city, Genre genre, double price,
+                             int sqm, int numberOfRooms, int floor, boolean insulated, int totalPrice)
+            throws IOException {
+        double averageSqmPerRoom = numberOfRooms == 0 ? 0.0 : (double) sqm / numberOfRooms;
+        out.write(panel ? "Panel [City: " : "RealEstate [City: ").write(city)
+                .write(", Genre: ").write(String.valueOf(genre))
+                .write(", Price per sqm: ").writeFixed2(price)
+                .write(", Area: ").writeInt(sqm)
+                .write(" sqm, Rooms: ").writeInt(numberOfRooms);
+        if (panel) {
+            out.write(", Floor: ").writeInt(floor)
+                    .write(", Insulated: ").write(insulated ? "yes" : "no");
+        }
+        out.write(", Total Price: ").writeInt(totalPrice)
+                .write(", Average sqm per room: ").writeFixed2(averageSqmPerRoom);
+        if (panel) {
+            // Same formula as Panel.roomPrice
+            out.write(", Room Price: ").writeInt(numberOfRooms == 0 ? 0 : (int) (price * sqm / numberOfRooms));
+        }
+        out.write(']');
+    }
+
     // Comparable implementation for TreeSet
     @Override
     public int compareTo(RealEstate other) {
@@ -143,15 +220,15 @@ class Panel extends RealEstate implements PanelInterface {
 
     // Getters and setters
     public int getFloor() { return floor; }
-    public void setFloor(int floor) { this.floor = floor; }
+    public void setFloor(int floor) { beforePriceChange(); this.floor = floor; afterPriceChange(); }
 
     public boolean isInsulated() { return isInsulated; }
-    public void setInsulated(boolean insulated) { isInsulated = insulated; }
+    public void setInsulated(boolean insulated) { beforePriceChange(); isInsulated = insulated; afterPriceChange(); }
 
     // ---------------- Overrides ----------------
     @Override
-    public int getTotalPrice() {
-        double basePrice = super.getTotalPrice();
+    protected int computeTotalPrice() {
+        double basePrice = super.computeTotalPrice();
         double modifier = 1.0;
 
         if (floor >= 0 && floor <= 2) {
@@ -167,6 +244,11 @@ class Panel extends RealEstate implements PanelInterface {
         return (int) (basePrice * modifier);
     }
 
+    @Override
+    Panel withPrice(double newPrice) {
+        return new Panel(city, newPrice, sqm, numberOfRooms, genre, floor, isInsulated);
+    }
+
     @Override
     public boolean hasSameAmount(RealEstate other) {
         if (other == null) return false;
@@ -190,44 +272,408 @@ class Panel extends RealEstate implements PanelInterface {
                 getTotalPrice(), averageSqmPerRoom(), roomPrice()
         );
     }
+
+    @Override
+    void appendTo(StreamingTextWriter out) throws IOException {
+        writeListing(out, true, city, genre, price, sqm, numberOfRooms, floor, isInsulated, getTotalPrice());
+    }
 }
 
 // ===================== RealEstateAgent CLASS =====================
+// Instance-based and safe for concurrent use: addProperty may be called from many
+// threads while reports run. Reports and listings work on a snapshot of the store,
+// and loads build a fresh store that is published in one step, so readers never
+// block writers and never see a half-loaded collection.
+// Report aggregates are maintained as listings arrive and as stored listings are
+// repriced (makeDiscount, setters), so the default report does not rescan the store.
 class RealEstateAgent {
-    private static TreeSet<RealEstate> realEstateCollection = new TreeSet<>();
+    private final Supplier<PropertyStore> storeFactory;
+    private volatile Listings realEstateCollection;
+    private final AgentMetrics metrics = new AgentMetrics();
+
+    // Dropped listings kept per collection for findEqualPriceGroups; all are counted
+    static final int MAX_RETAINED_DROPS = 100_000;
+
+    // Report results by collection version; see configureReportCache
+    static final int DEFAULT_REPORT_CACHE_ENTRIES = 8;
+    static final long DEFAULT_REPORT_CACHE_CHARS = 32L * 1024 * 1024;
+    static final long DEFAULT_REPORT_CACHE_AGE_MS = 10 * 60 * 1000;
+    // Keyed by Listings.id, so entries of a replaced collection are never served for its successor
+    private volatile VersionedCache<Long, RenderedReport> reportCache;
+    private volatile VersionedCache<Long, ReportAggregator.Metrics> metricsCache;
+
+    // One rendered report: the file text, whose first bodyLength chars are also what the
+    // console shows between its framing lines, and the files known to hold exactly it
+    private static final class RenderedReport {
+        final String text;
+        final int bodyLength;
+        final Map<Path, FileState> files = new ConcurrentHashMap<>();
+
+        RenderedReport(String text, int bodyLength) {
+            this.text = text;
+            this.bodyLength = bodyLength;
+        }
+    }
+
+    // Size and modification time of a written file, to notice when anyone else touched it
+    private static final class FileState {
+        final long size;
+        final FileTime modified;
+
+        FileState(long size, FileTime modified) {
+            this.size = size;
+            this.modified = modified;
+        }
+
+        static FileState of(Path file) {
+            try {
+                return new FileState(Files.size(file), Files.getLastModifiedTime(file));
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FileState && ((FileState) o).size == size && ((FileState) o).modified.equals(modified);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + modified.hashCode();
+        }
+    }
+
+    // Default: concurrent skip-list store
+    public RealEstateAgent() {
+        this(() -> new SortedSetPropertyStore(new ConcurrentSkipListSet<>()));
+    }
+
+    // Custom backend, e.g. ColumnarPropertyStore::new for very large datasets
+    public RealEstateAgent(Supplier<PropertyStore> storeFactory) {
+        if (storeFactory == null) {
+            throw new IllegalArgumentException("Store factory must not be null");
+        }
+        this.storeFactory = storeFactory;
+        this.realEstateCollection = new Listings(storeFactory.get());
+        configureReportCache(DEFAULT_REPORT_CACHE_ENTRIES, DEFAULT_REPORT_CACHE_CHARS, DEFAULT_REPORT_CACHE_AGE_MS);
+    }
+
+    // Limits of the report cache: rendered reports kept, their total size in chars (a
+    // larger report is not cached) and how long a result may be reused for an unchanged
+    // collection. Drops everything cached so far.
+    public void configureReportCache(int maxEntries, long maxChars, long maxAgeMillis) {
+        reportCache = new VersionedCache<>(maxEntries, maxChars, maxAgeMillis, report -> report.text.length());
+        metricsCache = new VersionedCache<>(maxEntries, maxEntries, maxAgeMillis, report -> 1);
+    }
+
+    // Restore the collection from the snapshot and change log in a directory (created if
+    // missing) and keep logging every add and repricing there
+    public void openJournal(Path directory) throws IOException {
+        openJournal(directory, ListingJournal.DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    // compactThreshold: logged changes after which a fresh snapshot is written
+    public synchronized void openJournal(Path directory, int compactThreshold) throws IOException {
+        closeJournal();
+        ListingJournal opened = new ListingJournal(directory, compactThreshold);
+        Listings restored = new Listings(storeFactory.get());
+        // Total prices are recomputed with the current PricingTable, which may differ from
+        // the one the snapshot was written under, so its order cannot be trusted
+        List<RealEstate> duplicates = new ArrayList<>();
+        restored.loadSorted(ListingSorter.sortUnique(Arrays.asList(opened.readSnapshot()), duplicates));
+        for (RealEstate duplicate : duplicates) {
+            restored.dropped(duplicate);
+        }
+        opened.replay(restored);
+        restored.journal = opened;
+        publish(restored);
+        opened.compactIfDue(restored.store::snapshot);
+        System.out.println("Restored " + restored.store.size() + " properties from: " + directory);
+    }
+
+    // Write a fresh snapshot now and truncate the change log
+    public void compactJournal() throws IOException {
+        Listings listings = realEstateCollection;
+        if (listings.journal != null) {
+            listings.journal.compact(listings.store::snapshot);
+        }
+    }
+
+    public synchronized void closeJournal() throws IOException {
+        Listings listings = realEstateCollection;
+        ListingJournal journal = listings.journal;
+        if (journal != null) {
+            listings.journal = null;
+            journal.close();
+        }
+    }
+
+    // Replace the collection; with a journal the new contents become its snapshot.
+    // Changes to the previous collection are locked out while it is retired and swapped;
+    // an add that reaches it afterwards is retried on next (see add), so every change
+    // lands either before or after the swap and none is lost in between.
+    private synchronized void publish(Listings next) {
+        Listings previous = realEstateCollection;
+        ListingJournal journal;
+        previous.changes.writeLock().lock();
+        try {
+            previous.retired = true;
+            // Versions keep growing across replacements, so getVersion() never repeats a value
+            next.version.addAndGet(previous.version.get() + 1);
+            journal = previous.journal;
+            if (journal != null) {
+                previous.journal = null;
+                next.journal = journal;
+            }
+            realEstateCollection = next;
+        } finally {
+            previous.changes.writeLock().unlock();
+        }
+        if (journal != null) {
+            try {
+                journal.compact(next.store::snapshot);
+            } catch (IOException e) {
+                System.err.println("Error writing snapshot: " + e.getMessage());
+            }
+        }
+    }
 
     // Load properties from file
-    public static void loadFromFile(String filename) {
+    public void loadFromFile(String filename) {
+        AgentMetrics.LoadEvent load = metrics.beginLoad(filename);
         try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
             String line;
-            realEstateCollection.clear(); // Clear existing data
+            List<RealEstate> parsed = new ArrayList<>(); // Replaces existing data once complete
+            long lines = 0;
+            long parseNanos = 0;
 
             while ((line = reader.readLine()) != null) {
                 line = line.trim();
                 if (!line.isEmpty()) {
-                    RealEstate property = parsePropertyLine(line);
+                    lines++;
+                    long start = System.nanoTime();
+                    RealEstate property = parsePropertyLine(line, metrics);
+                    parseNanos += System.nanoTime() - start;
                     if (property != null) {
-                        realEstateCollection.add(property);
+                        parsed.add(property);
                     }
                 }
             }
-            System.out.println("Successfully loaded " + realEstateCollection.size() + " properties from file: " + filename);
+            metrics.linesRead(lines);
+            metrics.parseTime(parseNanos);
+            int loaded = bulkLoad(parsed);
+            System.out.println("Successfully loaded " + loaded + " properties from file: " + filename);
         } catch (FileNotFoundException e) {
             System.err.println("File not found: " + filename + ". Loading sample data instead.");
             loadSampleData();
         } catch (IOException e) {
             System.err.println("Error reading file " + filename + ": " + e.getMessage());
             loadSampleData();
+        } finally {
+            metrics.endLoad(load);
         }
     }
 
-    // Parse a single property line from file
-    private static RealEstate parsePropertyLine(String line) {
+    // Load properties from file by memory-mapping it and parsing newline-aligned chunks in parallel
+    public void loadFromFileParallel(String filename) {
+        AgentMetrics.LoadEvent load = metrics.beginLoad(filename);
+        try {
+            long start = System.nanoTime();
+            ChunkedListingLoader.Result result = new ChunkedListingLoader().load(Paths.get(filename));
+            metrics.parseTime(System.nanoTime() - start);
+            metrics.linesRead(result.linesRead());
+            for (int i = 0; i < result.errors.size(); i++) {
+                metrics.reject(result.reasons.get(i), result.errors.get(i));
+            }
+            for (RealEstate property : result.properties) {
+                metrics.parsed(property);
+            }
+            // Properties are in file order, so the first of several equal listings wins, as in loadFromFile
+            int loaded = bulkLoad(result.properties);  // Replaces existing data
+            System.out.println("Successfully loaded " + loaded + " properties from file: " + filename);
+        } catch (NoSuchFileException e) {
+            System.err.println("File not found: " + filename + ". Loading sample data instead.");
+            loadSampleData();
+        } catch (IOException e) {
+            System.err.println("Error reading file " + filename + ": " + e.getMessage());
+            loadSampleData();
+        } finally {
+            metrics.endLoad(load);
+        }
+    }
+
+    // Listings of a file that match filter, without loading them: class, city and genre
+    // are checked on the raw line before anything is parsed, and a current sidecar index
+    // (see indexFile) limits the read to the regions that may match. Problems are
+    // reported only for lines that pass the leading-field check.
+    public List<RealEstate> scanFile(String filename, ListingFilter filter) {
+        try {
+            ChunkedListingLoader.ScanResult result = new ChunkedListingLoader().scan(Paths.get(filename), filter);
+            for (int i = 0; i < result.errors.size(); i++) {
+                metrics.reject(result.reasons.get(i), result.errors.get(i));
+            }
+            return result.properties;
+        } catch (NoSuchFileException e) {
+            System.err.println("File not found: " + filename);
+        } catch (IOException e) {
+            System.err.println("Error reading file " + filename + ": " + e.getMessage());
+        }
+        return Collections.emptyList();
+    }
+
+    // Write the sidecar index (filename + ".idx") used by scanFile; rebuild it whenever
+    // the file changes, a stale index is ignored
+    public void indexFile(String filename) {
+        try {
+            Path file = Paths.get(filename);
+            ListingFileIndex index = new ChunkedListingLoader().index(file, ListingFileIndex.DEFAULT_BLOCK_SIZE);
+            index.write(ListingFileIndex.sidecarOf(file));
+            System.out.println("Indexed " + index.blockCount() + " blocks of file: " + filename);
+        } catch (NoSuchFileException e) {
+            System.err.println("File not found: " + filename);
+        } catch (IOException e) {
+            System.err.println("Error indexing file " + filename + ": " + e.getMessage());
+        }
+    }
+
+    // Write the listings of a file of any size to outputFilename as displayAllProperties
+    // would show them after loadFromFile, without loading the file: ExternalListingSorter
+    // sorts it in bounded runs spilled to temporary files. Returns the listings written.
+    public long exportSorted(String inputFilename, String outputFilename) {
+        return exportSorted(inputFilename, outputFilename, new ExternalListingSorter());
+    }
+
+    public long exportSorted(String inputFilename, String outputFilename, ExternalListingSorter sorter) {
+        try (ExternalListingSorter.Sorted sorted = sorter.sort(Paths.get(inputFilename), metrics);
+             StreamingTextWriter out = StreamingTextWriter.file(Paths.get(outputFilename))) {
+            writePropertiesHeader(out);
+            long number = 0;
+            while (sorted.next()) {
+                writePropertyRow(out, ++number, sorted);
+            }
+            System.out.println("Sorted " + number + " properties from " + inputFilename + " to: " + outputFilename);
+            return number;
+        } catch (NoSuchFileException e) {
+            System.err.println("File not found: " + inputFilename);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error sorting file " + inputFilename + ": " + e.getMessage());
+        }
+        return 0;
+    }
+
+    // Write the listings added, removed and repriced from oldFilename to newFilename to
+    // outputFilename, one per line, without loading either file (see ListingDiff);
+    // returns the counts, or null when a file could not be read
+    public ListingDiff.Summary diffFiles(String oldFilename, String newFilename, String outputFilename) {
+        return diffFiles(oldFilename, newFilename, outputFilename, new ListingDiff());
+    }
+
+    public ListingDiff.Summary diffFiles(String oldFilename, String newFilename, String outputFilename, ListingDiff diff) {
+        // Before the output is opened, so a missing input leaves it untouched
+        for (String filename : new String[]{oldFilename, newFilename}) {
+            if (!Files.isRegularFile(Paths.get(filename))) {
+                System.err.println("File not found: " + filename);
+                return null;
+            }
+        }
+        try (StreamingTextWriter out = StreamingTextWriter.file(Paths.get(outputFilename))) {
+            ListingDiff.Summary summary = diff.diff(Paths.get(oldFilename), Paths.get(newFilename), metrics,
+                    difference -> writeDifference(out, difference));
+            System.out.println("Compared " + oldFilename + " with " + newFilename + ": " + summary.getAdded()
+                    + " added, " + summary.getRemoved() + " removed, " + summary.getChanged() + " changed, "
+                    + summary.getUnchanged() + " unchanged");
+            return summary;
+        } catch (NoSuchFileException e) {
+            System.err.println("File not found: " + e.getFile());
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error comparing files " + oldFilename + " and " + newFilename + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    // "+ listing", "- listing" or "~ listing (total price: old -> new)"
+    private static void writeDifference(StreamingTextWriter out, ListingDiff.Difference difference) throws IOException {
+        switch (difference.getChange()) {
+            case ADDED:
+                out.write("+ ");
+                break;
+            case REMOVED:
+                out.write("- ");
+                break;
+            default:
+                out.write("~ ");
+                break;
+        }
+        difference.getListing().appendTo(out);
+        if (difference.getChange() == ListingDiff.Change.CHANGED) {
+            out.write(" (total price: ").writeInt(difference.getOldTotalPrice())
+                    .write(" -> ").writeInt(difference.getNewTotalPrice()).write(")");
+        }
+        out.newLine();
+    }
+
+    // Load every regular file in a directory as one shard of a single collection, reading
+    // shards concurrently through ShardedListingIngest; prints and returns per-shard statistics
+    public List<ShardedListingIngest.ShardStats> loadFromDirectory(String directory) {
+        return loadFromDirectory(directory, new ShardedListingIngest());
+    }
+
+    public List<ShardedListingIngest.ShardStats> loadFromDirectory(String directory, ShardedListingIngest ingest) {
+        AgentMetrics.LoadEvent load = metrics.beginLoad(directory);
+        List<Path> shards = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(directory))) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file) && !file.getFileName().toString().startsWith(".")) {
+                    shards.add(file);
+                }
+            }
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            System.err.println("Directory not found: " + directory + ". Loading sample data instead.");
+            loadSampleData();
+            metrics.endLoad(load);
+            return Collections.emptyList();
+        } catch (IOException e) {
+            System.err.println("Error reading directory " + directory + ": " + e.getMessage());
+            loadSampleData();
+            metrics.endLoad(load);
+            return Collections.emptyList();
+        }
+        Collections.sort(shards);
+
+        try {
+            Listings loaded = new Listings(storeFactory.get()); // Replaces existing data once complete
+            List<ShardedListingIngest.ShardStats> stats = ingest.load(shards, loaded::add, metrics);
+            publish(loaded);
+            for (ShardedListingIngest.ShardStats shard : stats) {
+                System.out.println("  " + shard);
+            }
+            System.out.println("Successfully loaded " + loaded.store.size() + " properties from "
+                    + shards.size() + " files in: " + directory);
+            return stats;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Loading interrupted: " + directory);
+            return Collections.emptyList();
+        } finally {
+            metrics.endLoad(load);
+        }
+    }
+
+    // Parse a single property line from file; problems are printed one by one
+    static RealEstate parsePropertyLine(String line) {
+        return parsePropertyLine(line, null);
+    }
+
+    // Parse a single property line, counting it and reporting problems through metrics
+    // (sampled logging), or printing them directly when metrics is null
+    static RealEstate parsePropertyLine(String line, AgentMetrics metrics) {
         try {
             String[] parts = line.split("#");
 
             if (parts.length < 6) {
-                System.err.println("Invalid line format (not enough parts): " + line);
+                reject(metrics, AgentMetrics.RejectReason.NOT_ENOUGH_PARTS,
+                        "Invalid line format (not enough parts): " + line);
                 return null;
             }
 
@@ -247,165 +693,776 @@ class RealEstateAgent {
                     genre = Genre.valueOf(genreStr);
                 }
             } catch (IllegalArgumentException e) {
-                System.err.println("Invalid genre in line: " + line + ". Using CONDOMINIUM as default.");
+                reject(metrics, AgentMetrics.RejectReason.BAD_GENRE,
+                        "Invalid genre in line: " + line + ". Using CONDOMINIUM as default.");
                 genre = Genre.CONDOMINIUM;
             }
 
+            RealEstate property;
             if ("PANEL".equals(className)) {
                 if (parts.length >= 8) {
                     int floor = Integer.parseInt(parts[6].trim());
                     boolean isInsulated = "yes".equalsIgnoreCase(parts[7].trim());
-                    return new Panel(city, price, sqm, numberOfRooms, genre, floor, isInsulated);
+                    property = new Panel(city, price, sqm, numberOfRooms, genre, floor, isInsulated);
                 } else {
-                    System.err.println("Invalid Panel format (missing floor/insulation): " + line);
+                    reject(metrics, AgentMetrics.RejectReason.MISSING_PANEL_FIELDS,
+                            "Invalid Panel format (missing floor/insulation): " + line);
                     return null;
                 }
             } else {
-                return new RealEstate(city, price, sqm, numberOfRooms, genre);
+                property = new RealEstate(city, price, sqm, numberOfRooms, genre);
+            }
+            if (metrics != null) {
+                metrics.parsed(property);
             }
+            return property;
         } catch (NumberFormatException e) {
-            System.err.println("Invalid number format in line: " + line);
+            reject(metrics, AgentMetrics.RejectReason.BAD_NUMBER, "Invalid number format in line: " + line);
             return null;
         } catch (Exception e) {
-            System.err.println("Error parsing line: " + line + " - " + e.getMessage());
+            reject(metrics, AgentMetrics.RejectReason.OTHER, "Error parsing line: " + line + " - " + e.getMessage());
             return null;
         }
     }
 
+    private static void reject(AgentMetrics metrics, AgentMetrics.RejectReason reason, String message) {
+        if (metrics == null) {
+            System.err.println(message);
+        } else {
+            metrics.reject(reason, message);
+        }
+    }
+
     // Load sample data if file reading fails
-    private static void loadSampleData() {
+    private void loadSampleData() {
         System.out.println("Loading sample data...");
-        realEstateCollection.clear();
+        Listings sample = new Listings(storeFactory.get());
+
+        sample.add(new RealEstate("Budapest", 250000, 100, 4, Genre.CONDOMINIUM));
+        sample.add(new RealEstate("Debrecen", 220000, 120, 5, Genre.FAMILYHOUSE));
+        sample.add(new RealEstate("Nyíregyháza", 110000, 60, 2, Genre.FARM));
+        sample.add(new RealEstate("Nyíregyháza", 250000, 160, 6, Genre.FAMILYHOUSE));
+        sample.add(new RealEstate("Kisvárda", 150000, 50, 2, Genre.CONDOMINIUM));
+        sample.add(new Panel("Budapest", 180000, 70, 3, Genre.CONDOMINIUM, 4, false));
+        sample.add(new Panel("Debrecen", 120000, 35, 2, Genre.CONDOMINIUM, 0, true));
+        sample.add(new Panel("Tiszaújváros", 120000, 75, 3, Genre.CONDOMINIUM, 10, false));
+        sample.add(new Panel("Nyíregyháza", 170000, 80, 3, Genre.CONDOMINIUM, 7, false));
+
+        publish(sample);
+        System.out.println("Loaded " + sample.store.size() + " sample properties.");
+    }
+
+    // Generate analysis report from the running aggregates and save to file. While the
+    // collection is unchanged the rendered report is replayed from the cache, and a file
+    // this agent already wrote for the same version is left alone.
+    public void generateAnalysisReport(String outputFilename) {
+        Listings listings = realEstateCollection;
+        // Read first: a change landing while the report renders makes the entry stale, never wrong
+        long version = listings.version.get();
+        if (listings.statistics.count() == 0) {
+            System.out.println("No properties in collection. Cannot generate report.");
+            return;
+        }
+        try {
+            VersionedCache<Long, RenderedReport> cache = reportCache;
+            RenderedReport cached = cache.get(listings.id, version);
+            if (cached != null) {
+                writeCachedReport(outputFilename, cached);
+                return;
+            }
+            AgentMetrics.ReportSectionEvent section = metrics.beginSection(AgentMetrics.ReportSection.AGGREGATE, outputFilename);
+            // Item 5 is streamed from the store rather than collected
+            ReportAggregator.Metrics reportMetrics = reportMetrics(listings, version);
+            metrics.endSection(section);
+            RenderedReport rendered = writeReport(outputFilename, reportMetrics, listings.store, true);
+            if (rendered != null) {
+                cache.put(listings.id, version, rendered);
+            }
+        } catch (Exception e) {
+            System.err.println("Error generating analysis report: " + e.getMessage());
+        }
+    }
 
-        realEstateCollection.add(new RealEstate("Budapest", 250000, 100, 4, Genre.CONDOMINIUM));
-        realEstateCollection.add(new RealEstate("Debrecen", 220000, 120, 5, Genre.FAMILYHOUSE));
-        realEstateCollection.add(new RealEstate("Nyíregyháza", 110000, 60, 2, Genre.FARM));
-        realEstateCollection.add(new RealEstate("Nyíregyháza", 250000, 160, 6, Genre.FAMILYHOUSE));
-        realEstateCollection.add(new RealEstate("Kisvárda", 150000, 50, 2, Genre.CONDOMINIUM));
-        realEstateCollection.add(new Panel("Budapest", 180000, 70, 3, Genre.CONDOMINIUM, 4, false));
-        realEstateCollection.add(new Panel("Debrecen", 120000, 35, 2, Genre.CONDOMINIUM, 0, true));
-        realEstateCollection.add(new Panel("Tiszaújváros", 120000, 75, 3, Genre.CONDOMINIUM, 10, false));
-        realEstateCollection.add(new Panel("Nyíregyháza", 170000, 80, 3, Genre.CONDOMINIUM, 7, false));
+    private ReportAggregator.Metrics reportMetrics(Listings listings, long version) {
+        VersionedCache<Long, ReportAggregator.Metrics> cache = metricsCache;
+        ReportAggregator.Metrics cached = cache.get(listings.id, version);
+        if (cached == null) {
+            cached = listings.statistics.metrics(listings.store, false);
+            cache.put(listings.id, version, cached);
+        }
+        return cached;
+    }
 
-        System.out.println("Loaded " + realEstateCollection.size() + " sample properties.");
+    // Same console output as writeReport; the file is only rewritten when it is not the
+    // one written for this report or was changed since
+    private void writeCachedReport(String outputFilename, RenderedReport report) throws IOException {
+        AgentMetrics.ReportSectionEvent section = metrics.beginSection(AgentMetrics.ReportSection.FINISH, outputFilename);
+        try {
+            replayReport(outputFilename, report);
+        } finally {
+            metrics.endSection(section);
+        }
     }
 
-    // Generate analysis report and save to file
-    public static void generateAnalysisReport(String outputFilename) {
-        if (realEstateCollection.isEmpty()) {
+    private static void replayReport(String outputFilename, RenderedReport report) throws IOException {
+        try (StreamingTextWriter console = StreamingTextWriter.console()) {
+            console.newLine().repeat('=', 80).newLine()
+                    .write(report.text, 0, report.bodyLength)
+                    .newLine().repeat('=', 80).newLine();
+        }
+        try {
+            Path file = Paths.get(outputFilename).toAbsolutePath().normalize();
+            FileState written = report.files.get(file);
+            if (written == null || !written.equals(FileState.of(file))) {
+                try (StreamingTextWriter out = StreamingTextWriter.file(file)) {
+                    out.write(report.text);
+                }
+                rememberFile(report, file);
+            }
+            System.out.println("Report successfully saved to: " + outputFilename);
+        } catch (IOException | InvalidPathException e) {
+            System.err.println("Error writing to output file: " + e.getMessage());
+        }
+    }
+
+    private static void rememberFile(RenderedReport report, Path file) {
+        FileState state = FileState.of(file);
+        if (state != null) {
+            report.files.put(file, state);
+        }
+    }
+
+    // Generate analysis report by recomputing everything from one snapshot with the given
+    // aggregator (e.g. ReportAggregator.parallel())
+    public void generateAnalysisReport(String outputFilename, ReportAggregator aggregator) {
+        // Every metric is computed from this one snapshot, without blocking writers
+        RealEstate[] snapshot = realEstateCollection.store.snapshot();
+        if (snapshot.length == 0) {
             System.out.println("No properties in collection. Cannot generate report.");
             return;
         }
+        try {
+            // All metrics come from one pass over the snapshot
+            AgentMetrics.ReportSectionEvent section = metrics.beginSection(AgentMetrics.ReportSection.AGGREGATE, outputFilename);
+            ReportAggregator.Metrics reportMetrics = aggregator.aggregate(snapshot);
+            metrics.endSection(section);
+            writeReport(outputFilename, reportMetrics, null, false);
+        } catch (Exception e) {
+            System.err.println("Error generating analysis report: " + e.getMessage());
+        }
+    }
 
-        StringBuilder report = new StringBuilder();
-        report.append("REAL ESTATE ANALYSIS REPORT\n");
-        report.append("===========================\n\n");
+    // Streams the report to the console and the file in one pass, without building it as
+    // a String; a file name ending in ".gz" is written gzip-compressed. Item 5 comes from
+    // report.affordableCondos, or when that is null from a cursor over condoSource. With
+    // cache set the file text is captured and returned (null if it failed or was too large).
+    private RenderedReport writeReport(String outputFilename, ReportAggregator.Metrics report,
+                                       PropertyStore condoSource, boolean cache) throws IOException {
+        StreamingTextWriter out;
+        IOException fileError = null;
+        try {
+            out = StreamingTextWriter.consoleAndFile(Paths.get(outputFilename));
+        } catch (IOException | InvalidPathException e) {
+            fileError = e instanceof IOException ? (IOException) e : new IOException(e.getMessage());
+            out = StreamingTextWriter.console();
+        }
+        boolean toFile = fileError == null;
+        if (cache && toFile) {
+            out.capture(1, (int) Math.min(Integer.MAX_VALUE, reportCache.getMaxWeight()));
+        }
+        int bodyLength = -1;
 
+        AgentMetrics.ReportSectionEvent section = metrics.beginSection(AgentMetrics.ReportSection.SUMMARY, outputFilename);
         try {
+            // Console framing only
+            if (toFile) {
+                out.setActive(true, false);
+            }
+            out.newLine().repeat('=', 80).newLine();
+            if (toFile) {
+                out.setActive(true, true);
+            }
+
+            out.write("REAL ESTATE ANALYSIS REPORT\n");
+            out.write("===========================\n\n");
+
             // 1. Average square meter price of real estate
-            double avgSqmPrice = realEstateCollection.stream()
-                    .mapToDouble(RealEstate::getPrice)
-                    .average()
-                    .orElse(0.0);
-            report.append(String.format("1. Average square meter price of real estate: %.2f\n", avgSqmPrice));
+            out.write("1. Average square meter price of real estate: ").writeFixed2(report.averageSqmPrice).write('\n');
 
             // 2. Price of the cheapest property
-            int cheapestPrice = realEstateCollection.stream()
-                    .mapToInt(RealEstate::getTotalPrice)
-                    .min()
-                    .orElse(0);
-            report.append(String.format("2. Price of the cheapest property: %d\n", cheapestPrice));
+            out.write("2. Price of the cheapest property: ").writeInt(report.cheapestPrice).write('\n');
 
             // 3. Average square meter value per room of the most expensive apartment in Budapest
-            Optional<RealEstate> mostExpensiveBudapest = realEstateCollection.stream()
-                    .filter(property -> "budapest".equalsIgnoreCase(property.getCity()))
-                    .max(Comparator.comparingInt(RealEstate::getTotalPrice));
-
-            if (mostExpensiveBudapest.isPresent()) {
-                double avgSqmPerRoom = mostExpensiveBudapest.get().averageSqmPerRoom();
-                report.append(String.format("3. Average square meter value per room of most expensive Budapest property: %.2f\n", avgSqmPerRoom));
+            if (report.mostExpensiveBudapest != null) {
+                double avgSqmPerRoom = report.mostExpensiveBudapest.averageSqmPerRoom();
+                out.write("3. Average square meter value per room of most expensive Budapest property: ")
+                        .writeFixed2(avgSqmPerRoom).write('\n');
             } else {
-                report.append("3. No properties found in Budapest\n");
+                out.write("3. No properties found in Budapest\n");
             }
 
             // 4. Total price of all properties
-            long totalPrice = realEstateCollection.stream()
-                    .mapToLong(RealEstate::getTotalPrice)
-                    .sum();
-            report.append(String.format("4. Total price of all properties: %d\n", totalPrice));
+            out.write("4. Total price of all properties: ").writeInt(report.totalPrice).write('\n');
 
-            // Calculate average property price for filtering
-            double avgPropertyPrice = realEstateCollection.stream()
-                    .mapToInt(RealEstate::getTotalPrice)
-                    .average()
-                    .orElse(0.0);
+            metrics.endSection(section);
+            section = metrics.beginSection(AgentMetrics.ReportSection.CONDO_LIST, outputFilename);
 
             // 5. List of condominium properties whose total price does not exceed average price
-            report.append(String.format("\n5. Condominium properties with total price <= average price (%.2f):\n", avgPropertyPrice));
-            List<RealEstate> affordableCondos = realEstateCollection.stream()
-                    .filter(property -> property.getGenre() == Genre.CONDOMINIUM)
-                    .filter(property -> property.getTotalPrice() <= avgPropertyPrice)
-                    .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-
-            if (affordableCondos.isEmpty()) {
-                report.append("   No condominium properties found within average price range.\n");
+            out.write("\n5. Condominium properties with total price <= average price (")
+                    .writeFixed2(report.averageTotalPrice).write("):\n");
+            ListingCursor condos = report.affordableCondos != null
+                    ? ListingCursor.of(report.affordableCondos.iterator())
+                    : condoSource.cursor(ReportStatistics.affordableCondos(report.averageTotalPrice));
+            if (!condos.next()) {
+                out.write("   No condominium properties found within average price range.\n");
             } else {
-                for (RealEstate property : affordableCondos) {
-                    report.append("   - ").append(property.toString()).append("\n");
-                }
+                do {
+                    out.write("   - ");
+                    condos.appendTo(out);
+                    out.write('\n');
+                } while (condos.next());
             }
 
+            metrics.endSection(section);
+            section = metrics.beginSection(AgentMetrics.ReportSection.FINISH, outputFilename);
+
             // Display report on console
-            System.out.println("\n" + "=".repeat(80));
-            System.out.println(report.toString());
-            System.out.println("=".repeat(80));
+            if (toFile) {
+                out.setActive(true, false);
+            }
+            out.newLine().repeat('=', 80).newLine();
 
             // Save report to file
-            try (PrintWriter writer = new PrintWriter(new FileWriter(outputFilename))) {
-                writer.print(report.toString());
-                writer.println("\nGenerated on: " + new Date());
-                System.out.println("Report successfully saved to: " + outputFilename);
-            } catch (IOException e) {
-                System.err.println("Error writing to output file: " + e.getMessage());
+            if (toFile) {
+                out.setActive(false, true);
+                bodyLength = out.capturedLength();
+                out.write("\nGenerated on: ").write(new Date().toString()).newLine();
             }
-
-        } catch (Exception e) {
-            System.err.println("Error generating analysis report: " + e.getMessage());
+        } finally {
+            out.close();
+        }
+        metrics.endSection(section);
+        if (!toFile) {
+            System.err.println("Error writing to output file: " + fileError.getMessage());
+            return null;
         }
+        System.out.println("Report successfully saved to: " + outputFilename);
+        String text = out.captured();
+        if (text == null || bodyLength < 0) {
+            return null;
+        }
+        RenderedReport rendered = new RenderedReport(text, bodyLength);
+        rememberFile(rendered, Paths.get(outputFilename).toAbsolutePath().normalize());
+        return rendered;
     }
 
-    // Display all properties in the collection
-    public static void displayAllProperties() {
-        if (realEstateCollection.isEmpty()) {
+    // Display all properties in the collection, streamed from one frozen view of the store
+    public void displayAllProperties() {
+        ListingCursor cursor = realEstateCollection.store.freeze().cursor;
+        if (!cursor.next()) {
             System.out.println("No properties in the collection.");
             return;
         }
 
-        System.out.println("\n" + "=".repeat(80));
-        System.out.println("ALL PROPERTIES IN COLLECTION (sorted by total price)");
-        System.out.println("=".repeat(80));
+        // Buffered; one write per 64 KB instead of one println per listing
+        try (StreamingTextWriter out = StreamingTextWriter.console()) {
+            writePropertiesHeader(out);
+            long number = 1;
+            do {
+                writePropertyRow(out, number++, cursor);
+            } while (cursor.next());
+        } catch (IOException e) {
+            System.err.println("Error writing to console: " + e.getMessage());
+        }
+    }
 
-        int count = 1;
-        for (RealEstate property : realEstateCollection) {
-            System.out.println(count + ". " + property);
-            count++;
+    // Display one page (1-based) of the collection; rows keep their overall numbering
+    public void displayAllProperties(int page, int pageSize) {
+        if (page < 1 || pageSize < 1) {
+            throw new IllegalArgumentException("Page and page size must be positive: " + page + ", " + pageSize);
+        }
+        // Page count and rows come from the same view
+        PropertyStore.Frozen view = realEstateCollection.store.freeze();
+        int size = view.size;
+        if (size == 0) {
+            System.out.println("No properties in the collection.");
+            return;
+        }
+
+        long first = (long) (page - 1) * pageSize;
+        int pages = (int) ((size + (long) pageSize - 1) / pageSize);
+        try (StreamingTextWriter out = StreamingTextWriter.console()) {
+            writePropertiesHeader(out);
+            out.write("Page ").writeInt(page).write(" of ").writeInt(pages).newLine();
+            ListingCursor cursor = view.cursor;
+            long position = 0;
+            while (position < first + pageSize && cursor.next()) {
+                if (position >= first) {
+                    writePropertyRow(out, position + 1, cursor);
+                }
+                position++;
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing to console: " + e.getMessage());
         }
     }
 
-    // Getter for the collection
-    public static TreeSet<RealEstate> getRealEstateCollection() {
-        return realEstateCollection;
+    private static void writePropertiesHeader(StreamingTextWriter out) throws IOException {
+        out.newLine().repeat('=', 80).newLine();
+        out.write("ALL PROPERTIES IN COLLECTION (sorted by total price)").newLine();
+        out.repeat('=', 80).newLine();
+    }
+
+    private static void writePropertyRow(StreamingTextWriter out, long number, ListingCursor listing) throws IOException {
+        out.writeInt(number).write(". ");
+        listing.appendTo(out);
+        out.newLine();
+    }
+
+    // Getter for the collection (live view in total-price order)
+    public Collection<RealEstate> getRealEstateCollection() {
+        return realEstateCollection.asCollection();
     }
 
     // Get collection size
-    public static int getCollectionSize() {
-        return realEstateCollection.size();
+    public int getCollectionSize() {
+        return realEstateCollection.store.size();
+    }
+
+    // Listings matching city/genre/total-price filters, cheapest first, via the store's indexes
+    public List<RealEstate> query(PropertyQuery query) {
+        return realEstateCollection.store.query(query);
+    }
+
+    // Group-by statistics over a snapshot of the collection, all groupings in one pass, e.g.
+    // groupBy(GroupByAggregator.parallel(), Grouping.by(Dimension.CITY, Dimension.GENRE))
+    public List<GroupByAggregator.Result> groupBy(GroupByAggregator aggregator, GroupByAggregator.Grouping... groupings) {
+        return aggregator.aggregate(realEstateCollection.store.snapshot(), groupings);
+    }
+
+    // Grows with every change to the collection, including replacing it on a load
+    public long getVersion() {
+        return realEstateCollection.version.get();
+    }
+
+    // Report items 1-4 and the average total price from the running totals; the condo
+    // list (item 5) is left null, query ReportStatistics.affordableCondos for it
+    public ReportAggregator.Metrics reportMetrics() {
+        Listings listings = realEstateCollection;
+        return reportMetrics(listings, listings.version.get());
+    }
+
+    // Serve reports, queries and additions over HTTP on the loopback interface; port 0
+    // picks a free port
+    public ListingQueryService serve(int port) throws IOException {
+        return ListingQueryService.start(this, port);
+    }
+
+    // Up to k most expensive listings of a city and/or genre (null matches any), most
+    // expensive first; k is at most GroupStatistics.DEFAULT_TOP_K
+    public List<RealEstate> topByTotalPrice(String city, Genre genre, int k) {
+        Listings listings = realEstateCollection;
+        return listings.groups.top(city, genre, k, listings.store);
+    }
+
+    // Approximate total price distribution of a city and/or genre, e.g. quantile(0.9) for p90;
+    // the returned sketch is a copy and can be merged with others
+    public QuantileSketch totalPriceDistribution(String city, Genre genre) {
+        return realEstateCollection.groups.totalPrices(city, genre);
+    }
+
+    // Same over Panel.roomPrice(); only panels have a room price
+    public QuantileSketch roomPriceDistribution(String city, Genre genre) {
+        return realEstateCollection.groups.roomPrices(city, genre);
+    }
+
+    // Up to k listings of the reference's genre most similar to it, nearest first (see
+    // ComparablesIndex for the measure); the reference itself is left out. The index is
+    // built on the first call and maintained on every change after that.
+    public List<RealEstate> findComparables(RealEstate reference, int k) {
+        return realEstateCollection.comparables().nearest(reference, k);
     }
 
-    // Add property manually
-    public static void addProperty(RealEstate property) {
+    // Add property manually; safe to call from many threads
+    public void addProperty(RealEstate property) {
         if (property != null) {
-            realEstateCollection.add(property);
+            add(property);
+        }
+    }
+
+    // Adds to the current collection, or to its successor when it was replaced meanwhile
+    private boolean add(RealEstate property) {
+        while (true) {
+            Boolean added = realEstateCollection.tryAdd(property);
+            if (added != null) {
+                return added;
+            }
+        }
+    }
+
+    // Ingest and report counters of this agent
+    public AgentMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Expose the metrics over JMX as org.example:type=RealEstateAgent,name=<name>
+    public ObjectName registerMetrics(String name) throws JMException {
+        ObjectName objectName = new ObjectName("org.example:type=RealEstateAgent,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+        return objectName;
+    }
+
+    // Add several properties; returns how many were new (listings equal to a stored one are ignored)
+    public int addProperties(Collection<? extends RealEstate> properties) {
+        int added = 0;
+        for (RealEstate property : properties) {
+            if (property != null && add(property)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    // Replace the collection with a batch of listings, sorted and deduplicated by
+    // ListingSorter and handed to the store in one step instead of one sorted-set insert
+    // per listing. Of several listings equal per compareTo the first is kept, as with
+    // addProperties. Returns the number of listings loaded.
+    public int bulkLoad(Collection<? extends RealEstate> properties) {
+        Listings loaded = new Listings(storeFactory.get());
+        List<RealEstate> duplicates = new ArrayList<>();
+        loaded.loadSorted(ListingSorter.sortUnique(properties, duplicates));
+        for (RealEstate duplicate : duplicates) {
+            loaded.dropped(duplicate);
+        }
+        publish(loaded);
+        return loaded.store.size();
+    }
+
+    // Every set of listings sharing one total price, in one hashed pass over the
+    // collection; includes the listings dropped on ingest as equal to a stored one
+    public EqualPriceGroups findEqualPriceGroups() {
+        Listings listings = realEstateCollection;
+        return EqualPriceGroups.of(listings.store.snapshot(), new ArrayList<>(listings.dropped),
+                listings.droppedCount.get());
+    }
+
+    // Listings dropped since the collection was last loaded or cleared because an equal
+    // one (same total price, city and sqm) was already stored
+    public long getDroppedCount() {
+        return realEstateCollection.droppedCount.get();
+    }
+
+    // Tail a listings file: lines appended to it are added to the live collection and the
+    // report is regenerated after every batch that added something. Starts with the lines
+    // the file already holds; use the ListingFileWatcher constructor to resume at an offset.
+    public ListingFileWatcher watchFile(String filename, String reportFilename) throws IOException {
+        ListingFileWatcher watcher = new ListingFileWatcher(this, Paths.get(filename), 0,
+                () -> generateAnalysisReport(reportFilename));
+        watcher.start(ListingFileWatcher.DEFAULT_POLL_INTERVAL_MS);
+        return watcher;
+    }
+
+    // What-if repricing over a snapshot of the current collection; nothing is mutated
+    public PricingScenario createScenario(DiscountRule... rules) {
+        Listings listings = realEstateCollection;
+        long version = listings.version.get();
+        return new PricingScenario(listings, version, listings.store.snapshot(), Arrays.asList(rules));
+    }
+
+    // Generate analysis report for a scenario's repriced listings
+    public void generateAnalysisReport(String outputFilename, PricingScenario scenario) {
+        if (scenario.size() == 0) {
+            System.out.println("No properties in collection. Cannot generate report.");
+            return;
+        }
+        try {
+            AgentMetrics.ReportSectionEvent section = metrics.beginSection(AgentMetrics.ReportSection.AGGREGATE, outputFilename);
+            ReportAggregator.Metrics reportMetrics = scenario.metrics(new ReportAggregator());
+            metrics.endSection(section);
+            writeReport(outputFilename, reportMetrics, null, false);
+        } catch (Exception e) {
+            System.err.println("Error generating analysis report: " + e.getMessage());
+        }
+    }
+
+    // Replace the collection with the scenario's listings in one step. Rejected when the
+    // collection changed after the scenario was created, since those changes would be lost.
+    // Repriced listings are the scenario's copies; the original instances are left as they were.
+    // The check, the load and the swap all happen with changes to the collection locked out.
+    public synchronized void commitScenario(PricingScenario scenario) {
+        Listings current = realEstateCollection;
+        current.changes.writeLock().lock();
+        try {
+            if (!scenario.isBasedOn(current, current.version.get())) {
+                throw new IllegalStateException("Collection changed since the scenario was created");
+            }
+            Listings committed = new Listings(storeFactory.get());
+            committed.loadSorted(scenario.snapshot());  // already sorted and unique
+            publish(committed);
+        } finally {
+            current.changes.writeLock().unlock();
+        }
+    }
+
+    // Remove all properties; concurrent adds land either before or after the reset
+    public void clear() {
+        publish(new Listings(storeFactory.get()));
+    }
+
+    // ---------------- Store + aggregates ----------------
+    // A store together with its running report aggregates, published as one unit.
+    // Listings held by the store are registered with it as their PriceChangeListener:
+    // a repriced listing is taken out before the change and put back afterwards, so the
+    // sorted order, the indexes and the aggregates all see the new price. A listing can
+    // only be tracked by one agent at a time; the most recent add wins.
+    // With a journal attached, accepted adds and repricings are also logged.
+    private static final class Listings implements PriceChangeListener, ListingJournal.Replay {
+        private static final AtomicLong IDS = new AtomicLong();
+        final long id = IDS.incrementAndGet();  // unique per collection, unlike version
+        final PropertyStore store;
+        final ReportStatistics statistics = new ReportStatistics();
+        final GroupStatistics groups = new GroupStatistics();
+        // Built on the first comparables query, then kept in step with the store
+        private volatile ComparablesIndex comparables;
+        final AtomicLong version = new AtomicLong();  // bumped on every change, checked by commitScenario
+        // Listings not stored because an equal one (compareTo) already was; the first
+        // MAX_RETAINED_DROPS of them are kept for findEqualPriceGroups
+        final AtomicLong droppedCount = new AtomicLong();
+        final Queue<RealEstate> dropped = new ConcurrentLinkedQueue<>();
+        volatile ListingJournal journal;
+        // Held shared by every change and exclusively by publish; once retired, this
+        // collection has been replaced and takes no more changes
+        final ReentrantReadWriteLock changes = new ReentrantReadWriteLock();
+        boolean retired;  // guarded by changes
+        // Listings currently taken out for a price change -> their values while stored
+        private final Map<RealEstate, RealEstate> repricing = Collections.synchronizedMap(new IdentityHashMap<>());
+
+        Listings(PropertyStore store) {
+            this.store = store;
+        }
+
+        // null when this collection was replaced, so the caller can retry on its successor
+        Boolean tryAdd(RealEstate property) {
+            changes.readLock().lock();
+            try {
+                return retired ? null : addUnlocked(property);
+            } finally {
+                changes.readLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean add(RealEstate property) {
+            return Boolean.TRUE.equals(tryAdd(property));
+        }
+
+        private boolean addUnlocked(RealEstate property) {
+            if (!insert(property)) {
+                dropped(property);
+                return false;
+            }
+            ListingJournal log = journal;
+            if (log != null) {
+                try {
+                    log.logAdd(property);
+                    log.compactIfDue(store::snapshot);
+                } catch (IOException e) {
+                    System.err.println("Error writing change log: " + e.getMessage());
+                }
+            }
+            return true;
+        }
+
+        // Bulk load of listings in compareTo order without duplicates into this empty collection
+        void loadSorted(RealEstate[] sorted) {
+            store.loadSorted(sorted);
+            statistics.addAll(sorted);
+            groups.addAll(sorted);
+            ComparablesIndex index = comparables;
+            if (index != null) {
+                index.addAll(sorted);
+            }
+            for (RealEstate property : sorted) {
+                property.setPriceChangeListener(this);
+            }
+            version.incrementAndGet();
+        }
+
+        private boolean insert(RealEstate property) {
+            if (!store.add(property)) {
+                return false;
+            }
+            statistics.add(property);
+            groups.add(property);
+            ComparablesIndex index = comparables;
+            if (index != null) {
+                index.add(property);
+            }
+            property.setPriceChangeListener(this);
+            version.incrementAndGet();
+            return true;
+        }
+
+        void dropped(RealEstate property) {
+            if (droppedCount.incrementAndGet() <= MAX_RETAINED_DROPS) {
+                dropped.add(property);
+            }
+        }
+
+        ComparablesIndex comparables() {
+            ComparablesIndex index = comparables;
+            if (index == null) {
+                synchronized (this) {
+                    index = comparables;
+                    if (index == null) {
+                        index = new ComparablesIndex();
+                        // Published before it is filled, so no add is missed meanwhile; the
+                        // index takes an instance added twice only once
+                        comparables = index;
+                        index.addAll(store.snapshot());
+                    }
+                }
+            }
+            return index;
+        }
+
+        private void removeFromAggregates(RealEstate property) {
+            statistics.remove(property);
+            groups.remove(property);
+            ComparablesIndex index = comparables;
+            if (index != null) {
+                index.remove(property);
+            }
+        }
+
+        void clear() {
+            changes.readLock().lock();
+            try {
+                if (!retired) {
+                    clearUnlocked();
+                }
+            } finally {
+                changes.readLock().unlock();
+            }
+        }
+
+        private void clearUnlocked() {
+            store.clear();
+            statistics.clear();
+            groups.clear();
+            ComparablesIndex index = comparables;
+            if (index != null) {
+                index.clear();
+            }
+            repricing.clear();
+            dropped.clear();
+            droppedCount.set(0);
+            version.incrementAndGet();
+            ListingJournal log = journal;
+            if (log != null) {
+                try {
+                    log.compact(store::snapshot);
+                } catch (IOException e) {
+                    System.err.println("Error writing snapshot: " + e.getMessage());
+                }
+            }
+        }
+
+        // A change that began before this collection was retired and ends after it is only
+        // half applied here; the retired collection is no longer read by the agent
+        @Override
+        public void beforePriceChange(RealEstate property) {
+            changes.readLock().lock();
+            try {
+                if (!retired) {
+                    takeOut(property);
+                }
+            } finally {
+                changes.readLock().unlock();
+            }
+        }
+
+        private void takeOut(RealEstate property) {
+            if (store.remove(property)) {
+                removeFromAggregates(property);
+                // Remember the stored values only when they have to be logged
+                repricing.put(property, journal == null ? property : property.withPrice(property.getPrice()));
+                version.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void afterPriceChange(RealEstate property) {
+            changes.readLock().lock();
+            try {
+                if (!retired) {
+                    putBack(property);
+                }
+            } finally {
+                changes.readLock().unlock();
+            }
+        }
+
+        private void putBack(RealEstate property) {
+            RealEstate before = repricing.remove(property);
+            if (before == null) {
+                return;
+            }
+            if (!insert(property)) {
+                // Now equal to another stored listing; dropped, as TreeSet.add would
+                property.setPriceChangeListener(null);
+                dropped(property);
+            }
+            ListingJournal log = journal;
+            if (log != null && before != property) {
+                try {
+                    log.logReprice(before, property);
+                    log.compactIfDue(store::snapshot);
+                } catch (IOException e) {
+                    System.err.println("Error writing change log: " + e.getMessage());
+                }
+            }
+        }
+
+        // Replay: the stored listing equal to before takes after's values
+        @Override
+        public void reprice(RealEstate before, RealEstate after) {
+            int total = before.getTotalPrice();
+            for (RealEstate stored : store.query(new PropertyQuery().totalPriceBetween(total, total))) {
+                if (stored.compareTo(before) == 0) {
+                    if (store.remove(stored)) {
+                        removeFromAggregates(stored);
+                        stored.setPriceChangeListener(null);
+                    }
+                    break;
+                }
+            }
+            insert(after);
+        }
+
+        // Live view; adds and clears go through the aggregates
+        Collection<RealEstate> asCollection() {
+            return new AbstractCollection<RealEstate>() {
+                @Override
+                public Iterator<RealEstate> iterator() {
+                    return store.iterator();
+                }
+
+                @Override
+                public int size() {
+                    return store.size();
+                }
+
+                @Override
+                public boolean add(RealEstate property) {
+                    return Listings.this.add(property);
+                }
+
+                @Override
+                public void clear() {
+                    Listings.this.clear();
+                }
+            };
         }
     }
 }
@@ -416,14 +1473,16 @@ public class RealEstateDemo {
         System.out.println("REAL ESTATE MANAGEMENT SYSTEM");
         System.out.println("==============================\n");
 
+        RealEstateAgent agent = new RealEstateAgent();
+
         // Load data manually (no file needed)
-        loadDataManually();
+        loadDataManually(agent);
 
         // Display all loaded properties
-        RealEstateAgent.displayAllProperties();
+        agent.displayAllProperties();
 
         // Generate and display comprehensive analysis report
-        RealEstateAgent.generateAnalysisReport("outputRealEstate.txt");
+        agent.generateAnalysisReport("outputRealEstate.txt");
 
         // Original demo code
         System.out.println("\n" + "=".repeat(80));
@@ -458,27 +1517,27 @@ public class RealEstateDemo {
     }
 
     // Method to load data manually without file
-    private static void loadDataManually() {
+    private static void loadDataManually(RealEstateAgent agent) {
         System.out.println("Loading data manually...\n");
 
         // REALESTATE properties
-        addPropertyToCollection("REALESTATE#Budapest#250000#100#4#CONDOMINIUM");
-        addPropertyToCollection("REALESTATE#Debrecen#220000#120#5#FAMILYHOUSE");
-        addPropertyToCollection("REALESTATE#Nyíregyháza#110000#60#2#FARM");
-        addPropertyToCollection("REALESTATE#Nyíregyháza#250000#160#6#FAMILYHOUSE");
-        addPropertyToCollection("REALESTATE#Kisvárda#150000#50#2#CONDOMINIUM");
+        addPropertyToCollection(agent, "REALESTATE#Budapest#250000#100#4#CONDOMINIUM");
+        addPropertyToCollection(agent, "REALESTATE#Debrecen#220000#120#5#FAMILYHOUSE");
+        addPropertyToCollection(agent, "REALESTATE#Nyíregyháza#110000#60#2#FARM");
+        addPropertyToCollection(agent, "REALESTATE#Nyíregyháza#250000#160#6#FAMILYHOUSE");
+        addPropertyToCollection(agent, "REALESTATE#Kisvárda#150000#50#2#CONDOMINIUM");
 
         // PANEL properties
-        addPropertyToCollection("PANEL#Budapest#180000#70#3#CONDOMINIUM#4#no");
-        addPropertyToCollection("PANEL#Debrecen#120000#35#2#CONDOMINIUM#0#yes");
-        addPropertyToCollection("PANEL#Tiszaújváros#120000#75#3#CONDOMINIUM#10#no");
-        addPropertyToCollection("PANEL#Nyíregyháza#170000#80#3#CONDOMINIUM#7#no");
+        addPropertyToCollection(agent, "PANEL#Budapest#180000#70#3#CONDOMINIUM#4#no");
+        addPropertyToCollection(agent, "PANEL#Debrecen#120000#35#2#CONDOMINIUM#0#yes");
+        addPropertyToCollection(agent, "PANEL#Tiszaújváros#120000#75#3#CONDOMINIUM#10#no");
+        addPropertyToCollection(agent, "PANEL#Nyíregyháza#170000#80#3#CONDOMINIUM#7#no");
 
-        System.out.println("Successfully loaded " + RealEstateAgent.getCollectionSize() + " properties manually.\n");
+        System.out.println("Successfully loaded " + agent.getCollectionSize() + " properties manually.\n");
     }
 
     // Helper method to parse and add a property
-    private static void addPropertyToCollection(String propertyString) {
+    private static void addPropertyToCollection(RealEstateAgent agent, String propertyString) {
         try {
             String[] parts = propertyString.split("#");
             String className = parts[0].trim().toUpperCase();
@@ -504,7 +1563,7 @@ public class RealEstateDemo {
                 property = new RealEstate(city, price, sqm, numberOfRooms, genre);
             }
 
-            RealEstateAgent.addProperty(property);
+            agent.addProperty(property);
         } catch (Exception e) {
             System.err.println("Error adding property: " + propertyString);
         }
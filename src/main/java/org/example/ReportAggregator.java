@@ -0,0 +1,196 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// ===================== ReportAggregator CLASS =====================
+// Computes every metric of the analysis report in a single pass over the listings,
+// calling getTotalPrice() once per listing. In parallel mode the snapshot array is cut
+// into fixed ranges whose partial results are merged left to right, so the
+// outcome does not depend on thread scheduling.
+class ReportAggregator {
+    static final int DEFAULT_SPLIT_THRESHOLD = 16 * 1024;
+
+    private final ForkJoinPool pool;
+    private final int splitThreshold;
+
+    public ReportAggregator() {
+        this(null, DEFAULT_SPLIT_THRESHOLD);
+    }
+
+    // A null pool means sequential aggregation
+    public ReportAggregator(ForkJoinPool pool, int splitThreshold) {
+        if (splitThreshold <= 0) {
+            throw new IllegalArgumentException("Split threshold must be positive: " + splitThreshold);
+        }
+        this.pool = pool;
+        this.splitThreshold = splitThreshold;
+    }
+
+    public static ReportAggregator parallel() {
+        return new ReportAggregator(ForkJoinPool.commonPool(), DEFAULT_SPLIT_THRESHOLD);
+    }
+
+    public Metrics aggregate(Collection<RealEstate> properties) {
+        return aggregate(properties.toArray(new RealEstate[0]));
+    }
+
+    public Metrics aggregate(RealEstate[] snapshot) {
+        Partial partial = pool == null || snapshot.length <= splitThreshold
+                ? new Partial().accumulate(snapshot, 0, snapshot.length)
+                : pool.invoke(new AggregateTask(snapshot, 0, snapshot.length, splitThreshold));
+        return new Metrics(partial);
+    }
+
+    // ---------------- Results ----------------
+    static class Metrics {
+        final long count;
+        final double averageSqmPrice;
+        final int cheapestPrice;
+        final RealEstate mostExpensiveBudapest;   // null if there is none
+        final long totalPrice;
+        final double averageTotalPrice;
+        final List<RealEstate> affordableCondos;  // condos priced <= averageTotalPrice, in collection order
+
+        // From precomputed values, e.g. ReportStatistics; condos must already be filtered
+        Metrics(long count, double averageSqmPrice, int cheapestPrice, RealEstate mostExpensiveBudapest,
+                long totalPrice, List<RealEstate> affordableCondos) {
+            this.count = count;
+            this.averageSqmPrice = averageSqmPrice;
+            this.cheapestPrice = cheapestPrice;
+            this.mostExpensiveBudapest = mostExpensiveBudapest;
+            this.totalPrice = totalPrice;
+            this.averageTotalPrice = count > 0 ? (double) totalPrice / count : 0.0;
+            this.affordableCondos = affordableCondos;
+        }
+
+        private Metrics(Partial partial) {
+            this.count = partial.count;
+            this.averageSqmPrice = partial.count > 0 ? partial.finalPriceSum() / partial.count : 0.0;
+            this.cheapestPrice = partial.count > 0 ? partial.minTotalPrice : 0;
+            this.mostExpensiveBudapest = partial.budapestMax;
+            this.totalPrice = partial.totalPriceSum;
+            this.averageTotalPrice = partial.count > 0 ? (double) partial.totalPriceSum / partial.count : 0.0;
+
+            // Second pass over the buffered condos only, using their precomputed prices
+            List<RealEstate> condos = new ArrayList<>();
+            for (int i = 0; i < partial.condos.size(); i++) {
+                if (partial.condoPrices[i] <= averageTotalPrice) {
+                    condos.add(partial.condos.get(i));
+                }
+            }
+            this.affordableCondos = condos;
+        }
+    }
+
+    // Per-range accumulator; merge() must be applied in range order
+    private static class Partial {
+        long count;
+        // Compensated sum of price per sqm, same scheme as DoubleStream.average()
+        double priceSum;
+        double priceCompensation;
+        double simplePriceSum;
+        int minTotalPrice = Integer.MAX_VALUE;
+        long totalPriceSum;
+        RealEstate budapestMax;
+        int budapestMaxPrice;
+        final List<RealEstate> condos = new ArrayList<>();
+        int[] condoPrices = new int[16];
+
+        Partial accumulate(RealEstate[] properties, int from, int to) {
+            for (int i = from; i < to; i++) {
+                RealEstate property = properties[i];
+                int total = property.getTotalPrice();
+
+                count++;
+                addPrice(property.getPrice());
+                simplePriceSum += property.getPrice();
+                minTotalPrice = Math.min(minTotalPrice, total);
+                totalPriceSum += total;
+
+                // Strictly greater keeps the first of equal maxima, like Stream.max
+                if ("budapest".equalsIgnoreCase(property.getCity())
+                        && (budapestMax == null || total > budapestMaxPrice)) {
+                    budapestMax = property;
+                    budapestMaxPrice = total;
+                }
+                if (property.getGenre() == Genre.CONDOMINIUM) {
+                    addCondo(property, total);
+                }
+            }
+            return this;
+        }
+
+        Partial merge(Partial right) {
+            count += right.count;
+            addPrice(right.priceSum);
+            addPrice(-right.priceCompensation);
+            simplePriceSum += right.simplePriceSum;
+            minTotalPrice = Math.min(minTotalPrice, right.minTotalPrice);
+            totalPriceSum += right.totalPriceSum;
+            if (right.budapestMax != null && (budapestMax == null || right.budapestMaxPrice > budapestMaxPrice)) {
+                budapestMax = right.budapestMax;
+                budapestMaxPrice = right.budapestMaxPrice;
+            }
+            for (int i = 0; i < right.condos.size(); i++) {
+                addCondo(right.condos.get(i), right.condoPrices[i]);
+            }
+            return this;
+        }
+
+        double finalPriceSum() {
+            double sum = priceSum - priceCompensation;
+            if (Double.isNaN(sum) && Double.isInfinite(simplePriceSum)) {
+                return simplePriceSum;
+            }
+            return sum;
+        }
+
+        private void addPrice(double value) {
+            double tmp = value - priceCompensation;
+            double sum = priceSum + tmp;
+            priceCompensation = (sum - priceSum) - tmp;
+            priceSum = sum;
+        }
+
+        private void addCondo(RealEstate property, int total) {
+            if (condos.size() == condoPrices.length) {
+                condoPrices = Arrays.copyOf(condoPrices, condoPrices.length * 2);
+            }
+            condoPrices[condos.size()] = total;
+            condos.add(property);
+        }
+    }
+
+    private static class AggregateTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final RealEstate[] properties;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        AggregateTask(RealEstate[] properties, int from, int to, int threshold) {
+            this.properties = properties;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= threshold) {
+                return new Partial().accumulate(properties, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            AggregateTask left = new AggregateTask(properties, from, mid, threshold);
+            AggregateTask right = new AggregateTask(properties, mid, to, threshold);
+            right.fork();
+            return left.compute().merge(right.join());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.example;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// ===================== ReportStatistics CLASS =====================
+// Running aggregates behind the analysis report, kept in step with one store as
+// listings are added and removed: count, compensated sum of price per sqm, sum and
+// minimum of total price, and the maximum total price per city. Sums are updated in
+// O(1); a minimum or maximum whose listing left the store is marked stale and read
+// back from the store's price order the next time it is needed.
+class ReportStatistics {
+    private long count;
+    // Compensated sum of price per sqm, same scheme as ReportAggregator
+    private double priceSum;
+    private double priceCompensation;
+    private double simplePriceSum;
+    private long totalPriceSum;
+
+    private int minTotalPrice = Integer.MAX_VALUE;
+    private boolean minStale;
+    // Keyed by PropertyQuery.cityKey
+    private final Map<String, Integer> maxTotalPriceByCity = new HashMap<>();
+    private final Set<String> staleCities = new HashSet<>();
+    // Raw city spelling -> key, so keys are not re-derived on every add
+    private final Map<String, String> cityKeys = new HashMap<>();
+
+    public synchronized void add(RealEstate property) {
+        accumulate(property);
+    }
+
+    // One lock acquisition for a whole bulk load
+    public synchronized void addAll(RealEstate[] properties) {
+        for (RealEstate property : properties) {
+            accumulate(property);
+        }
+    }
+
+    private void accumulate(RealEstate property) {
+        int total = property.getTotalPrice();
+        count++;
+        addPrice(property.getPrice());
+        simplePriceSum += property.getPrice();
+        totalPriceSum += total;
+        if (!minStale) {
+            minTotalPrice = Math.min(minTotalPrice, total);
+        }
+        String city = cityKey(property);
+        if (city != null && !staleCities.contains(city)) {
+            Integer max = maxTotalPriceByCity.get(city);
+            if (max == null || total > max) {
+                maxTotalPriceByCity.put(city, total);
+            }
+        }
+    }
+
+    // Must be called with the price the listing had while it was stored
+    public synchronized void remove(RealEstate property) {
+        int total = property.getTotalPrice();
+        count--;
+        addPrice(-property.getPrice());
+        simplePriceSum -= property.getPrice();
+        totalPriceSum -= total;
+        if (total == minTotalPrice) {
+            minStale = true;
+        }
+        String city = cityKey(property);
+        if (city != null) {
+            Integer max = maxTotalPriceByCity.get(city);
+            if (max != null && total == max) {
+                staleCities.add(city);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        count = 0;
+        priceSum = 0;
+        priceCompensation = 0;
+        simplePriceSum = 0;
+        totalPriceSum = 0;
+        minTotalPrice = Integer.MAX_VALUE;
+        minStale = false;
+        maxTotalPriceByCity.clear();
+        staleCities.clear();
+        cityKeys.clear();
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    // Report metrics from the running totals; only item 5 walks the store, and only
+    // over condos priced up to the average. Not a point-in-time snapshot while other
+    // threads add; use ReportAggregator on store.snapshot() for that.
+    public ReportAggregator.Metrics metrics(PropertyStore store) {
+        return metrics(store, true);
+    }
+
+    // listAffordableCondos false leaves item 5 null, for callers that stream it from
+    // store.cursor(affordableCondos(averageTotalPrice)) instead
+    public ReportAggregator.Metrics metrics(PropertyStore store, boolean listAffordableCondos) {
+        long n;
+        double averageSqmPrice;
+        int cheapest;
+        long total;
+        Integer budapestMax;
+        synchronized (this) {
+            n = count;
+            averageSqmPrice = n > 0 ? finalPriceSum() / n : 0.0;
+            cheapest = n > 0 ? minTotalPrice(store) : 0;
+            total = totalPriceSum;
+            budapestMax = maxTotalPrice("budapest", store);
+        }
+
+        // First Budapest listing at the maximum in collection order, as Stream.max picks it
+        RealEstate mostExpensiveBudapest = null;
+        if (budapestMax != null) {
+            List<RealEstate> top = store.query(new PropertyQuery().city("Budapest")
+                    .totalPriceBetween(budapestMax, budapestMax).limit(1));
+            mostExpensiveBudapest = top.isEmpty() ? null : top.get(0);
+        }
+
+        double averageTotalPrice = n > 0 ? (double) total / n : 0.0;
+        List<RealEstate> affordableCondos = listAffordableCondos
+                ? store.query(affordableCondos(averageTotalPrice)) : null;
+        return new ReportAggregator.Metrics(n, averageSqmPrice, cheapest, mostExpensiveBudapest, total, affordableCondos);
+    }
+
+    // Item 5: condominiums with total price <= the average, cheapest first
+    static PropertyQuery affordableCondos(double averageTotalPrice) {
+        return new PropertyQuery().genre(Genre.CONDOMINIUM)
+                .totalPriceBetween(Integer.MIN_VALUE, (int) Math.floor(averageTotalPrice));
+    }
+
+    // ---------------- Internals ----------------
+    private int minTotalPrice(PropertyStore store) {
+        if (minStale) {
+            List<RealEstate> cheapest = store.query(new PropertyQuery().limit(1));
+            minTotalPrice = cheapest.isEmpty() ? Integer.MAX_VALUE : cheapest.get(0).getTotalPrice();
+            minStale = false;
+        }
+        return minTotalPrice;
+    }
+
+    private Integer maxTotalPrice(String city, PropertyStore store) {
+        if (staleCities.remove(city)) {
+            // Rare: only after the city's most expensive listing was removed or repriced
+            List<RealEstate> top = store.query(new PropertyQuery().city(city).descending().limit(1));
+            if (top.isEmpty()) {
+                maxTotalPriceByCity.remove(city);
+            } else {
+                maxTotalPriceByCity.put(city, top.get(0).getTotalPrice());
+            }
+        }
+        return maxTotalPriceByCity.get(city);
+    }
+
+    private String cityKey(RealEstate property) {
+        return property.getCity() == null ? null : cityKeys.computeIfAbsent(property.getCity(), PropertyQuery::cityKey);
+    }
+
+    private double finalPriceSum() {
+        double sum = priceSum - priceCompensation;
+        if (Double.isNaN(sum) && Double.isInfinite(simplePriceSum)) {
+            return simplePriceSum;
+        }
+        return sum;
+    }
+
+    private void addPrice(double value) {
+        double tmp = value - priceCompensation;
+        double sum = priceSum + tmp;
+        priceCompensation = (sum - priceSum) - tmp;
+        priceSum = sum;
+    }
+}
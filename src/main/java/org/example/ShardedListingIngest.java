@@ -0,0 +1,257 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+// ===================== ShardedListingIngest CLASS =====================
+// Loads many listing files (e.g. per-region shards) into one collection as a pipeline:
+//
+//   readers (one task per shard) -> line batches -> parsers -> listing batches -> inserter
+//
+// Stages are joined by bounded queues, so a fast reader blocks instead of buffering a whole
+// shard when parsing or inserting falls behind. Parsers use parsePropertyLine, which also
+// validates the fields and normalizes the genre (FLAT -> CONDOMINIUM). The inserter is the
+// calling thread; listings equal to one already inserted count as duplicates of their shard,
+// and which of several equal listings from different shards wins depends on timing.
+class ShardedListingIngest {
+    static final int DEFAULT_BATCH_SIZE = 1024;
+    static final int DEFAULT_QUEUE_CAPACITY = 64;  // batches per queue
+
+    private final int readerThreads;
+    private final int parserThreads;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final Charset charset = Charset.defaultCharset();  // as FileReader
+
+    public ShardedListingIngest() {
+        this(4, Math.max(1, Runtime.getRuntime().availableProcessors() - 1), DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    public ShardedListingIngest(int readerThreads, int parserThreads, int queueCapacity, int batchSize) {
+        if (readerThreads <= 0 || parserThreads <= 0 || queueCapacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Thread counts, queue capacity and batch size must be positive");
+        }
+        this.readerThreads = readerThreads;
+        this.parserThreads = parserThreads;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+    }
+
+    // Per-shard counters, filled in as the shard moves through the pipeline
+    static class ShardStats {
+        final Path file;
+        final AtomicLong linesRead = new AtomicLong();
+        final AtomicLong parsed = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        long added;       // inserter thread only
+        long duplicates;  // inserter thread only
+        volatile long readNanos;
+        volatile String error;
+
+        ShardStats(Path file) {
+            this.file = file;
+        }
+
+        public long getLinesRead() { return linesRead.get(); }
+        public long getParsed() { return parsed.get(); }
+        public long getRejected() { return rejected.get(); }
+        public long getAdded() { return added; }
+        public long getDuplicates() { return duplicates; }
+        public String getError() { return error; }
+
+        @Override
+        public String toString() {
+            String line = String.format("%s: %d lines, %d parsed, %d rejected, %d added, %d duplicates, read in %d ms",
+                    file.getFileName(), linesRead.get(), parsed.get(), rejected.get(), added, duplicates,
+                    readNanos / 1_000_000);
+            return error == null ? line : line + " (failed: " + error + ")";
+        }
+    }
+
+    private static final class LineBatch {
+        static final LineBatch END = new LineBatch(-1, new String[0], 0);
+        final int shard;
+        final String[] lines;
+        final int count;
+
+        LineBatch(int shard, String[] lines, int count) {
+            this.shard = shard;
+            this.lines = lines;
+            this.count = count;
+        }
+    }
+
+    private static final class ListingBatch {
+        static final ListingBatch END = new ListingBatch(-1, new RealEstate[0], 0);
+        final int shard;
+        final RealEstate[] properties;
+        final int count;
+
+        ListingBatch(int shard, RealEstate[] properties, int count) {
+            this.shard = shard;
+            this.properties = properties;
+            this.count = count;
+        }
+    }
+
+    // Runs the pipeline; sink.test adds a listing and returns false for a duplicate.
+    // Blocks until every shard has been read and inserted.
+    public List<ShardStats> load(List<Path> shards, Predicate<RealEstate> sink, AgentMetrics metrics)
+            throws InterruptedException {
+        List<ShardStats> stats = new ArrayList<>(shards.size());
+        for (Path shard : shards) {
+            stats.add(new ShardStats(shard));
+        }
+        if (shards.isEmpty()) {
+            return stats;
+        }
+
+        BlockingQueue<LineBatch> lines = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<ListingBatch> listings = new ArrayBlockingQueue<>(queueCapacity);
+        ExecutorService readers = Executors.newFixedThreadPool(Math.min(readerThreads, shards.size()), daemon("shard-reader"));
+        ExecutorService parsers = Executors.newFixedThreadPool(parserThreads, daemon("shard-parser"));
+        try {
+            AtomicInteger remainingShards = new AtomicInteger(shards.size());
+            for (int i = 0; i < shards.size(); i++) {
+                int shard = i;
+                readers.execute(() -> {
+                    try {
+                        read(shard, stats.get(shard), lines);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        // The last reader tells every parser that no more lines are coming
+                        if (remainingShards.decrementAndGet() == 0) {
+                            putQuietly(lines, LineBatch.END, parserThreads);
+                        }
+                    }
+                });
+            }
+            for (int i = 0; i < parserThreads; i++) {
+                parsers.execute(() -> {
+                    try {
+                        parse(lines, listings, stats, metrics);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        putQuietly(listings, ListingBatch.END, 1);
+                    }
+                });
+            }
+
+            int finishedParsers = 0;
+            while (finishedParsers < parserThreads) {
+                ListingBatch batch = listings.take();
+                if (batch == ListingBatch.END) {
+                    finishedParsers++;
+                    continue;
+                }
+                ShardStats shard = stats.get(batch.shard);
+                for (int i = 0; i < batch.count; i++) {
+                    if (sink.test(batch.properties[i])) {
+                        shard.added++;
+                    } else {
+                        shard.duplicates++;
+                    }
+                }
+            }
+            return stats;
+        } finally {
+            readers.shutdownNow();
+            parsers.shutdownNow();
+        }
+    }
+
+    // ---------------- Stages ----------------
+    private void read(int shard, ShardStats stats, BlockingQueue<LineBatch> out) throws InterruptedException {
+        long start = System.nanoTime();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(stats.file), charset), 1 << 16)) {
+            String[] batch = new String[batchSize];
+            int count = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                batch[count++] = line;
+                if (count == batchSize) {
+                    stats.linesRead.addAndGet(count);
+                    out.put(new LineBatch(shard, batch, count));  // blocks while the parsers are behind
+                    batch = new String[batchSize];
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                stats.linesRead.addAndGet(count);
+                out.put(new LineBatch(shard, batch, count));
+            }
+        } catch (IOException e) {
+            stats.error = e.getMessage();
+            System.err.println("Error reading file " + stats.file + ": " + e.getMessage());
+        } finally {
+            stats.readNanos = System.nanoTime() - start;
+        }
+    }
+
+    private static void parse(BlockingQueue<LineBatch> in, BlockingQueue<ListingBatch> out,
+                              List<ShardStats> stats, AgentMetrics metrics) throws InterruptedException {
+        while (true) {
+            LineBatch batch = in.take();
+            if (batch == LineBatch.END) {
+                return;
+            }
+            long start = System.nanoTime();
+            RealEstate[] properties = new RealEstate[batch.count];
+            int parsed = 0;
+            for (int i = 0; i < batch.count; i++) {
+                RealEstate property = RealEstateAgent.parsePropertyLine(batch.lines[i], metrics);
+                if (property != null) {
+                    properties[parsed++] = property;
+                }
+            }
+            if (metrics != null) {
+                metrics.linesRead(batch.count);
+                metrics.parseTime(System.nanoTime() - start);
+            }
+            ShardStats shard = stats.get(batch.shard);
+            shard.parsed.addAndGet(parsed);
+            shard.rejected.addAndGet(batch.count - parsed);
+            out.put(new ListingBatch(batch.shard, properties, parsed));
+        }
+    }
+
+    private static <T> void putQuietly(BlockingQueue<T> queue, T item, int copies) {
+        try {
+            for (int i = 0; i < copies; i++) {
+                queue.put(item);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
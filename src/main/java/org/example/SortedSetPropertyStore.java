@@ -0,0 +1,359 @@
+package org.example;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// ===================== SortedSetPropertyStore CLASS =====================
+// Default object store: every listing is a RealEstate/Panel instance kept in a sorted set.
+// Thread-safe when backed by a concurrent set such as ConcurrentSkipListSet.
+// Secondary indexes by city and by genre are maintained on add and remove; each is ordered like
+// the primary set (total price first), so every index doubles as a price-range index.
+class SortedSetPropertyStore implements PropertyStore {
+    private final NavigableSet<RealEstate> properties;
+    private final AtomicInteger count = new AtomicInteger();  // ConcurrentSkipListSet.size() is O(n)
+    private final boolean concurrent;
+    private final boolean indexed;
+
+    // Secondary indexes, keyed by PropertyQuery.cityKey / genre
+    private final Map<String, NavigableSet<RealEstate>> byCity = new ConcurrentHashMap<>();
+    private final Map<Genre, NavigableSet<RealEstate>> byGenre = new ConcurrentHashMap<>();
+    // Raw city spelling -> index key, so keys are not re-derived on every add
+    private final Map<String, String> cityKeys = new ConcurrentHashMap<>();
+
+    public SortedSetPropertyStore() {
+        this(new TreeSet<>());
+    }
+
+    public SortedSetPropertyStore(NavigableSet<RealEstate> properties) {
+        this(properties, true);
+    }
+
+    // Without indexes inserts are cheaper and queries fall back to a filtered price-range walk
+    public SortedSetPropertyStore(NavigableSet<RealEstate> properties, boolean indexed) {
+        this.properties = properties;
+        this.concurrent = properties instanceof ConcurrentSkipListSet;
+        this.indexed = indexed;
+        for (RealEstate property : properties) {
+            index(property);
+        }
+        this.count.set(properties.size());
+    }
+
+    @Override
+    public boolean add(RealEstate property) {
+        if (properties.add(property)) {
+            index(property);
+            count.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    // A naturally ordered TreeSet and its indexes are built from the sorted array in linear
+    // time (TreeSet.addAll takes that path for an empty set and a SortedSet argument); other
+    // sets get ascending inserts, which at least skip the duplicate checks of the default
+    @Override
+    public void loadSorted(RealEstate[] sorted) {
+        if (!properties.isEmpty()) {
+            throw new IllegalStateException("loadSorted needs an empty store, size is " + size());
+        }
+        properties.addAll(new SortedRun(sorted));
+        if (indexed) {
+            Map<String, List<RealEstate>> cityRuns = new HashMap<>();
+            Map<Genre, List<RealEstate>> genreRuns = new EnumMap<>(Genre.class);
+            for (RealEstate property : sorted) {
+                if (property.getCity() != null) {
+                    String cityKey = cityKeys.computeIfAbsent(property.getCity(), PropertyQuery::cityKey);
+                    cityRuns.computeIfAbsent(cityKey, key -> new ArrayList<>()).add(property);
+                }
+                if (property.getGenre() != null) {
+                    genreRuns.computeIfAbsent(property.getGenre(), key -> new ArrayList<>()).add(property);
+                }
+            }
+            cityRuns.forEach((key, run) ->
+                    byCity.computeIfAbsent(key, k -> newIndex()).addAll(new SortedRun(run.toArray(new RealEstate[0]))));
+            genreRuns.forEach((key, run) ->
+                    byGenre.computeIfAbsent(key, k -> newIndex()).addAll(new SortedRun(run.toArray(new RealEstate[0]))));
+        }
+        count.set(properties.size());
+    }
+
+    // Must be called before the listing's price or sort key changes
+    @Override
+    public boolean remove(RealEstate property) {
+        if (properties.ceiling(property) != property || !properties.remove(property)) {
+            return false;
+        }
+        if (indexed) {
+            if (property.getCity() != null) {
+                NavigableSet<RealEstate> city = byCity.get(cityKeys.computeIfAbsent(property.getCity(), PropertyQuery::cityKey));
+                if (city != null) {
+                    city.remove(property);
+                }
+            }
+            NavigableSet<RealEstate> genre = property.getGenre() == null ? null : byGenre.get(property.getGenre());
+            if (genre != null) {
+                genre.remove(property);
+            }
+        }
+        count.decrementAndGet();
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    @Override
+    public void clear() {
+        properties.clear();
+        byCity.clear();
+        byGenre.clear();
+        cityKeys.clear();
+        count.set(0);
+    }
+
+    // Starts from the city or genre index, then walks only the price range
+    @Override
+    public List<RealEstate> query(PropertyQuery query) {
+        if (!indexed) {
+            return scan(query);
+        }
+        NavigableSet<RealEstate> source;
+        Genre genreFilter = null;
+        String cityKey = query.cityKey();
+        if (cityKey != null) {
+            // Cities are the more selective key; genre is checked while walking
+            source = byCity.get(cityKey);
+            genreFilter = query.getGenre();
+        } else if (query.getGenre() != null) {
+            source = byGenre.get(query.getGenre());
+        } else {
+            source = properties;
+        }
+
+        List<RealEstate> result = new ArrayList<>();
+        if (source == null || query.getLimit() == 0) {
+            return result;
+        }
+        for (RealEstate property : priceRange(source, query)) {
+            if (genreFilter != null && property.getGenre() != genreFilter) {
+                continue;
+            }
+            result.add(property);
+            if (result.size() >= query.getLimit()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private List<RealEstate> scan(PropertyQuery query) {
+        List<RealEstate> result = new ArrayList<>();
+        for (RealEstate property : priceRange(properties, query)) {
+            if (result.size() >= query.getLimit()) {
+                break;
+            }
+            if (query.matches(property, property.getTotalPrice())) {
+                result.add(property);
+            }
+        }
+        return result;
+    }
+
+    // Adds and clears through the view keep the count in step; iterators are read-only
+    @Override
+    public Collection<RealEstate> asCollection() {
+        return new AbstractCollection<RealEstate>() {
+            @Override
+            public Iterator<RealEstate> iterator() {
+                return SortedSetPropertyStore.this.iterator();
+            }
+
+            @Override
+            public int size() {
+                return count.get();
+            }
+
+            @Override
+            public boolean add(RealEstate property) {
+                return SortedSetPropertyStore.this.add(property);
+            }
+
+            @Override
+            public void clear() {
+                SortedSetPropertyStore.this.clear();
+            }
+        };
+    }
+
+    // One weakly consistent traversal; never blocks concurrent adds
+    @Override
+    public RealEstate[] snapshot() {
+        List<RealEstate> copy = new ArrayList<>(count.get() + 16);
+        for (RealEstate property : properties) {
+            copy.add(property);
+        }
+        return copy.toArray(new RealEstate[0]);
+    }
+
+    @Override
+    public Iterator<RealEstate> iterator() {
+        return Collections.unmodifiableCollection(properties).iterator();
+    }
+
+    // ---------------- Indexes ----------------
+    private void index(RealEstate property) {
+        if (!indexed) {
+            return;
+        }
+        Genre genre = property.getGenre();
+        String cityKey = property.getCity() == null ? null
+                : cityKeys.computeIfAbsent(property.getCity(), PropertyQuery::cityKey);
+        if (cityKey != null) {
+            byCity.computeIfAbsent(cityKey, key -> newIndex()).add(property);
+        }
+        if (genre != null) {
+            byGenre.computeIfAbsent(genre, key -> newIndex()).add(property);
+        }
+    }
+
+    private NavigableSet<RealEstate> newIndex() {
+        return concurrent ? new ConcurrentSkipListSet<>() : new TreeSet<>();
+    }
+
+    // The query's price range, walked in the query's direction
+    private static NavigableSet<RealEstate> priceRange(NavigableSet<RealEstate> set, PropertyQuery query) {
+        NavigableSet<RealEstate> range = priceRange(set, query.getMinTotalPrice(), query.getMaxTotalPrice());
+        return query.isDescending() ? range.descendingSet() : range;
+    }
+
+    // Listings whose total price lies in [min, max], using probe bounds on the sorted set
+    static NavigableSet<RealEstate> priceRange(NavigableSet<RealEstate> set, int min, int max) {
+        if (min == Integer.MIN_VALUE && max == Integer.MAX_VALUE) {
+            return set;
+        }
+        if (max == Integer.MAX_VALUE) {
+            return set.tailSet(new PriceBound(min), true);
+        }
+        if (min == Integer.MIN_VALUE) {
+            return set.headSet(new PriceBound(max + 1), false);
+        }
+        return set.subSet(new PriceBound(min), true, new PriceBound(max + 1), false);
+    }
+
+    // Read-only SortedSet over listings already in natural order, so TreeSet.addAll can
+    // build from it in linear time; views are index ranges of the same array
+    private static final class SortedRun extends AbstractSet<RealEstate> implements SortedSet<RealEstate> {
+        private final RealEstate[] sorted;
+        private final int from;
+        private final int to;
+
+        SortedRun(RealEstate[] sorted) {
+            this(sorted, 0, sorted.length);
+        }
+
+        private SortedRun(RealEstate[] sorted, int from, int to) {
+            this.sorted = sorted;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Iterator<RealEstate> iterator() {
+            return Arrays.asList(sorted).subList(from, to).iterator();
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public Comparator<? super RealEstate> comparator() {
+            return null;
+        }
+
+        @Override
+        public RealEstate first() {
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+            return sorted[from];
+        }
+
+        @Override
+        public RealEstate last() {
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+            return sorted[to - 1];
+        }
+
+        @Override
+        public SortedSet<RealEstate> subSet(RealEstate fromElement, RealEstate toElement) {
+            if (fromElement.compareTo(toElement) > 0) {
+                throw new IllegalArgumentException("fromElement > toElement");
+            }
+            return new SortedRun(sorted, firstAtLeast(fromElement), firstAtLeast(toElement));
+        }
+
+        @Override
+        public SortedSet<RealEstate> headSet(RealEstate toElement) {
+            return new SortedRun(sorted, from, firstAtLeast(toElement));
+        }
+
+        @Override
+        public SortedSet<RealEstate> tailSet(RealEstate fromElement) {
+            return new SortedRun(sorted, firstAtLeast(fromElement), to);
+        }
+
+        // First position in this run whose listing is not below the given one
+        private int firstAtLeast(RealEstate bound) {
+            int low = from;
+            int high = to;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sorted[mid].compareTo(bound) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    // Sorts before every real listing with the same total price (empty city, minimal sqm)
+    private static final class PriceBound extends RealEstate {
+        private final int totalPrice;
+
+        PriceBound(int totalPrice) {
+            super("", 0, Integer.MIN_VALUE, 0, null);
+            this.totalPrice = totalPrice;
+        }
+
+        @Override
+        protected int computeTotalPrice() {
+            return totalPrice;
+        }
+    }
+}
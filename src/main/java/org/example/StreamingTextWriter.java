@@ -0,0 +1,323 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+// ===================== StreamingTextWriter CLASS =====================
+// Buffered text output to one or more byte channels, each with its own charset, so a
+// report can go to the console and a file in one pass without building the whole text
+// as a String. Numbers are formatted straight into the buffer; "%.2f" and "%d" output
+// is identical to String.format with the default locale (anything the fast path cannot
+// prove identical falls back to String.format).
+class StreamingTextWriter implements Closeable {
+    private static final int CHAR_BUFFER_SIZE = 8 * 1024;
+    private static final int BYTE_BUFFER_SIZE = 64 * 1024;
+    // |value| below this keeps the error of value * 100 far under the rounding margin
+    private static final double FAST_FIXED_LIMIT = 1e7;
+    private static final double TIE_MARGIN = 1e-6;
+
+    private final Target[] targets;
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+    private final char decimalSeparator;
+    private final boolean asciiDigits;
+    private final char[] digits = new char[20];
+    // Copy of the text one destination receives; null when not capturing or over the limit
+    private StringBuilder capture;
+    private int captureTarget;
+    private int captureLimit;
+
+    // One destination; encoder errors are replaced like PrintStream/FileWriter do
+    private static final class Target {
+        final WritableByteChannel channel;
+        final CharsetEncoder encoder;
+        final ByteBuffer bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+        final PrintStream console;  // flushed but never closed; null for files
+        boolean active = true;
+
+        Target(WritableByteChannel channel, Charset charset, PrintStream console) {
+            this.channel = channel;
+            this.encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.console = console;
+        }
+    }
+
+    private StreamingTextWriter(Target... targets) {
+        this.targets = targets;
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+        this.decimalSeparator = symbols.getDecimalSeparator();
+        this.asciiDigits = symbols.getZeroDigit() == '0';
+    }
+
+    // System.out in its own encoding; System.out itself is left open
+    public static StreamingTextWriter console() {
+        return new StreamingTextWriter(consoleTarget());
+    }
+
+    // File in the platform charset like FileWriter; gzip-compressed when the name ends in ".gz"
+    public static StreamingTextWriter file(Path file) throws IOException {
+        return new StreamingTextWriter(fileTarget(file));
+    }
+
+    // Console and file together, e.g. for the analysis report
+    public static StreamingTextWriter consoleAndFile(Path file) throws IOException {
+        return new StreamingTextWriter(consoleTarget(), fileTarget(file));
+    }
+
+    private static Target consoleTarget() {
+        PrintStream out = System.out;
+        // Not Channels.newChannel(out): closing that channel would close System.out
+        return new Target(Channels.newChannel(new OutputStream() {
+            @Override
+            public void write(int b) {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                out.write(b, off, len);
+            }
+        }), consoleCharset(), out);
+    }
+
+    private static Target fileTarget(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        if (!file.toString().endsWith(".gz")) {
+            return new Target(channel, Charset.defaultCharset(), null);
+        }
+        return new Target(Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(channel), BYTE_BUFFER_SIZE)),
+                Charset.defaultCharset(), null);
+    }
+
+    private static Charset consoleCharset() {
+        for (String property : new String[]{"stdout.encoding", "sun.stdout.encoding"}) {
+            String name = System.getProperty(property);
+            if (name != null && Charset.isSupported(name)) {
+                return Charset.forName(name);
+            }
+        }
+        return Charset.defaultCharset();
+    }
+
+    // ---------------- Text ----------------
+    public StreamingTextWriter write(CharSequence text) throws IOException {
+        String value = String.valueOf(text);  // null prints as "null", like %s
+        return write(value, 0, value.length());
+    }
+
+    // Chars start (inclusive) to end (exclusive) of text, without copying them first
+    public StreamingTextWriter write(String text, int start, int end) throws IOException {
+        int offset = start;
+        while (offset < end) {
+            if (!chars.hasRemaining()) {
+                flushChars();
+            }
+            int count = Math.min(chars.remaining(), end - offset);
+            chars.put(text, offset, offset + count);
+            offset += count;
+        }
+        return this;
+    }
+
+    public StreamingTextWriter write(char c) throws IOException {
+        if (!chars.hasRemaining()) {
+            flushChars();
+        }
+        chars.put(c);
+        return this;
+    }
+
+    public StreamingTextWriter repeat(char c, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            write(c);
+        }
+        return this;
+    }
+
+    // Selects which destinations (in creation order) receive the following text
+    public void setActive(boolean... active) throws IOException {
+        if (active.length != targets.length) {
+            throw new IllegalArgumentException("Expected " + targets.length + " flags, got " + active.length);
+        }
+        flushChars();
+        for (int i = 0; i < targets.length; i++) {
+            targets[i].active = active[i];
+        }
+    }
+
+    // Also keep the text that destination target (in creation order) receives from now on,
+    // e.g. to cache a rendered file; capturing stops once it would exceed limit chars
+    public void capture(int target, int limit) throws IOException {
+        if (target < 0 || target >= targets.length) {
+            throw new IllegalArgumentException("No destination " + target + " of " + targets.length);
+        }
+        flushChars();
+        capture = new StringBuilder();
+        captureTarget = target;
+        captureLimit = limit;
+    }
+
+    // Captured text so far (complete after close()), or null when it exceeded the limit
+    public String captured() {
+        return capture == null ? null : capture.toString();
+    }
+
+    // Length of the captured text so far, or -1 when it exceeded the limit
+    public int capturedLength() throws IOException {
+        flushChars();
+        return capture == null ? -1 : capture.length();
+    }
+
+    // Platform line separator, as println writes it
+    public StreamingTextWriter newLine() throws IOException {
+        return write(System.lineSeparator());
+    }
+
+    // Same text as String.format("%d", value)
+    public StreamingTextWriter writeInt(long value) throws IOException {
+        if (!asciiDigits) {
+            return write(String.format("%d", value));
+        }
+        if (value == Long.MIN_VALUE) {
+            return write(Long.toString(value));
+        }
+        if (value < 0) {
+            write('-');
+            value = -value;
+        }
+        int length = 0;
+        do {
+            digits[length++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (length > 0) {
+            write(digits[--length]);
+        }
+        return this;
+    }
+
+    // Same text as String.format("%.2f", value): half-up rounding of the decimal value
+    public StreamingTextWriter writeFixed2(double value) throws IOException {
+        double magnitude = Math.abs(value);
+        if (!asciiDigits || !(magnitude < FAST_FIXED_LIMIT)) {
+            return write(String.format("%.2f", value));  // NaN, infinities, huge values
+        }
+        double scaled = magnitude * 100;
+        double fraction = scaled - Math.floor(scaled);
+        if (Math.abs(fraction - 0.5) < TIE_MARGIN) {
+            // Too close to a rounding tie to decide from the binary value
+            return write(String.format("%.2f", value));
+        }
+        long cents = (long) Math.floor(scaled + 0.5);
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            write('-');
+        }
+        writeInt(cents / 100);
+        write(decimalSeparator);
+        long remainder = cents % 100;
+        write((char) ('0' + remainder / 10));
+        return write((char) ('0' + remainder % 10));
+    }
+
+    // ---------------- Output ----------------
+    // Pushes buffered text through to every destination
+    public void flush() throws IOException {
+        flushChars();
+        for (Target target : targets) {
+            drain(target);
+            if (target.console != null) {
+                target.console.flush();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        try {
+            flushChars();
+            chars.flip();
+            for (Target target : targets) {
+                CharBuffer rest = target.active ? chars.duplicate() : CharBuffer.allocate(0);
+                while (target.encoder.encode(rest, target.bytes, true).isOverflow()) {
+                    drain(target);
+                }
+                while (target.encoder.flush(target.bytes).isOverflow()) {
+                    drain(target);
+                }
+                drain(target);
+                if (target.console != null) {
+                    target.console.flush();
+                }
+            }
+            chars.clear();
+        } catch (IOException e) {
+            failure = e;
+        }
+        for (Target target : targets) {
+            if (target.console == null) {
+                try {
+                    target.channel.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Encodes the buffered chars for every destination; a trailing half surrogate pair
+    // stays buffered until its other half arrives
+    private void flushChars() throws IOException {
+        chars.flip();
+        int consumed = chars.limit();
+        for (Target target : targets) {
+            if (!target.active) {
+                continue;
+            }
+            CharBuffer view = chars.duplicate();
+            while (target.encoder.encode(view, target.bytes, false).isOverflow()) {
+                drain(target);
+            }
+            consumed = view.position();
+        }
+        if (capture != null && targets[captureTarget].active) {
+            if (capture.length() + consumed > captureLimit) {
+                capture = null;
+            } else {
+                capture.append(chars.array(), chars.arrayOffset(), consumed);
+            }
+        }
+        chars.position(consumed);
+        chars.compact();
+    }
+
+    private static void drain(Target target) throws IOException {
+        target.bytes.flip();
+        while (target.bytes.hasRemaining()) {
+            target.channel.write(target.bytes);
+        }
+        target.bytes.clear();
+    }
+}
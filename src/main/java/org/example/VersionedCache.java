@@ -0,0 +1,132 @@
+package org.example;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+// ===================== VersionedCache CLASS =====================
+// Results computed from one version of a collection, keyed by what was computed. A value
+// is returned only while its version is still the current one and it is younger than
+// maxAge. Beyond maxEntries entries or maxWeight total weight the least recently used
+// entries are evicted; a value heavier than maxWeight on its own is not cached at all.
+// All methods are synchronized; values are computed outside the lock by the caller.
+class VersionedCache<K, V> {
+    private final int maxEntries;
+    private final long maxWeight;
+    private final long maxAgeNanos;
+    private final ToLongFunction<? super V> weigher;
+    private final LongSupplier nanoClock;
+
+    // Access order, so the eldest entry is the least recently used
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static final class Entry<V> {
+        final long version;
+        final V value;
+        final long weight;
+        final long createdNanos;
+
+        Entry(long version, V value, long weight, long createdNanos) {
+            this.version = version;
+            this.value = value;
+            this.weight = weight;
+            this.createdNanos = createdNanos;
+        }
+    }
+
+    public VersionedCache(int maxEntries, long maxWeight, long maxAgeMillis, ToLongFunction<? super V> weigher) {
+        this(maxEntries, maxWeight, maxAgeMillis, weigher, System::nanoTime);
+    }
+
+    // nanoClock replaces System.nanoTime, e.g. for tests
+    VersionedCache(int maxEntries, long maxWeight, long maxAgeMillis, ToLongFunction<? super V> weigher,
+                   LongSupplier nanoClock) {
+        if (maxEntries < 1 || maxWeight < 1 || maxAgeMillis < 1) {
+            throw new IllegalArgumentException("Cache limits must be positive: " + maxEntries + " entries, "
+                    + maxWeight + " weight, " + maxAgeMillis + " ms");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.maxAgeNanos = maxAgeMillis * 1_000_000L;
+        this.weigher = weigher;
+        this.nanoClock = nanoClock;
+    }
+
+    // Value cached for key at exactly this version, or null
+    public synchronized V get(K key, long version) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.version != version || nanoClock.getAsLong() - entry.createdNanos > maxAgeNanos) {
+            remove(key, entry);
+            evictions++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    public synchronized void put(K key, long version, V value) {
+        long valueWeight = weigher.applyAsLong(value);
+        Entry<V> previous = entries.get(key);
+        if (previous != null) {
+            remove(key, previous);
+        }
+        if (valueWeight > maxWeight) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        entries.put(key, new Entry<>(version, value, valueWeight, now));
+        weight += valueWeight;
+
+        Iterator<Map.Entry<K, Entry<V>>> eldestFirst = entries.entrySet().iterator();
+        while (eldestFirst.hasNext()) {
+            Entry<V> entry = eldestFirst.next().getValue();
+            boolean expired = now - entry.createdNanos > maxAgeNanos;
+            if (expired || entries.size() > maxEntries || weight > maxWeight) {
+                eldestFirst.remove();
+                weight -= entry.weight;
+                evictions++;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private void remove(K key, Entry<V> entry) {
+        entries.remove(key);
+        weight -= entry.weight;
+    }
+}
@@ -1,13 +1,39 @@
 package org.example;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import static org.example.TestListings.randomListings;
 
 // ==========================================================
 // 🧪 Combined JUnit 5 Tests for Real Estate Project
 // ==========================================================
 
+// Shared test data: a seeded mix of Panel and RealEstate listings
+class TestListings {
+    static List<RealEstate> randomListings(long seed, int count, String... cities) {
+        Random random = new Random(seed);
+        List<RealEstate> listings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String city = cities[random.nextInt(cities.length)];
+            Genre genre = Genre.values()[random.nextInt(Genre.values().length)];
+            double price = 50000 + random.nextInt(400000) + random.nextInt(100) / 100.0;
+            int sqm = 20 + random.nextInt(150);
+            int rooms = 1 + random.nextInt(6);
+            listings.add(random.nextBoolean()
+                    ? new Panel(city, price, sqm, rooms, genre, random.nextInt(12), random.nextBoolean())
+                    : new RealEstate(city, price, sqm, rooms, genre));
+        }
+        return listings;
+    }
+}
+
 class RealEstateTest {
 
     @Test
@@ -82,25 +108,27 @@ class PanelTest {
 // ==========================================================
 class RealEstateAgentTest {
 
+    private RealEstateAgent agent;
+
     @BeforeEach
     void setup() {
-        RealEstateAgent.getRealEstateCollection().clear();
-        RealEstateAgent.addProperty(new RealEstate("Budapest", 200000, 100, 4, Genre.CONDOMINIUM));
-        RealEstateAgent.addProperty(new RealEstate("Debrecen", 150000, 80, 3, Genre.FAMILYHOUSE));
-        RealEstateAgent.addProperty(new Panel("Budapest", 180000, 70, 3, Genre.CONDOMINIUM, 4, true));
+        agent = new RealEstateAgent();
+        agent.addProperty(new RealEstate("Budapest", 200000, 100, 4, Genre.CONDOMINIUM));
+        agent.addProperty(new RealEstate("Debrecen", 150000, 80, 3, Genre.FAMILYHOUSE));
+        agent.addProperty(new Panel("Budapest", 180000, 70, 3, Genre.CONDOMINIUM, 4, true));
     }
 
     @Test
     void testAddPropertyIncreasesCollection() {
-        int before = RealEstateAgent.getCollectionSize();
-        RealEstateAgent.addProperty(new RealEstate("Nyíregyháza", 100000, 60, 2, Genre.FARM));
-        assertEquals(before + 1, RealEstateAgent.getCollectionSize());
+        int before = agent.getCollectionSize();
+        agent.addProperty(new RealEstate("Nyíregyháza", 100000, 60, 2, Genre.FARM));
+        assertEquals(before + 1, agent.getCollectionSize());
     }
 
     @Test
     void testGenerateAnalysisReportCreatesFile() {
         String filename = "testReport.txt";
-        RealEstateAgent.generateAnalysisReport(filename);
+        agent.generateAnalysisReport(filename);
         File report = new File(filename);
         assertTrue(report.exists());
         assertTrue(report.length() > 0);
@@ -109,6 +137,2094 @@ class RealEstateAgentTest {
 
     @Test
     void testGetCollectionSize() {
-        assertEquals(3, RealEstateAgent.getCollectionSize());
+        assertEquals(3, agent.getCollectionSize());
+    }
+}
+
+// ==========================================================
+// 🧪 ChunkedListingLoader Tests
+// ==========================================================
+class ChunkedListingLoaderTest {
+
+    private static final String[] LINES = {
+            "REALESTATE#Budapest#250000#100#4#CONDOMINIUM",
+            "  PANEL # Debrecen # 120000 # 35 # 2 # condominium # 0 # YES  ",
+            "",
+            "REALESTATE#Nyíregyháza#110000.5#60#2#FLAT",
+            "REALESTATE#Kisvárda#150000#50#2",
+            "REALESTATE#Szeged#abc#50#2#FARM",
+            "PANEL#Tiszaújváros#120000#75#3#CONDOMINIUM#10",
+            "PANEL#Budapest#180000#70#3#CASTLE#4#no",
+            "REALESTATE#Budapest#250000#100#4#CONDOMINIUM",
+            "PANEL#Eger#1.5e5#40#1#FARM#x#no",
+            "realestate#Győr#99999999999999999#40#1#FAMILYHOUSE",
+    };
+
+    @Test
+    void testParallelLoadMatchesLineByLineLoad() throws IOException {
+        File file = File.createTempFile("listings", ".txt");
+        try (PrintWriter writer = new PrintWriter(file)) {
+            for (int i = 0; i < 50; i++) {
+                for (String line : LINES) {
+                    writer.print(line.replace("#50#", "#" + (50 + i) + "#"));
+                    writer.print(i % 2 == 0 ? "\n" : "\r\n");
+                }
+            }
+        }
+
+        // loadFromFile samples its error log, so the unsampled messages come from parsePropertyLine
+        PrintStream originalErr = System.err;
+        ByteArrayOutputStream expectedErrors = new ByteArrayOutputStream();
+        RealEstateAgent agent = new RealEstateAgent();
+        try {
+            System.setErr(new PrintStream(expectedErrors, true));
+            agent.loadFromFile(file.getPath());
+            expectedErrors.reset();
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        RealEstateAgent.parsePropertyLine(line.trim());
+                    }
+                }
+            }
+        } finally {
+            System.setErr(originalErr);
+        }
+        List<String> expected = new ArrayList<>();
+        for (RealEstate property : agent.getRealEstateCollection()) {
+            expected.add(property.toString());
+        }
+
+        // Tiny chunks force many chunk boundaries through the middle of the file
+        ChunkedListingLoader.Result result =
+                new ChunkedListingLoader(ForkJoinPool.commonPool(), 64).load(file.toPath());
+        TreeSet<RealEstate> loaded = new TreeSet<>(result.properties);
+        List<String> actual = new ArrayList<>();
+        for (RealEstate property : loaded) {
+            actual.add(property.toString());
+        }
+
+        assertEquals(expected, actual);
+        assertEquals(expectedErrors.toString(),
+                String.join(System.lineSeparator(), result.errors) + System.lineSeparator());
+        file.delete();
+    }
+
+    @Test
+    void testPanelClassIsPreserved() throws IOException {
+        File file = File.createTempFile("listings", ".txt");
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println("PANEL#Budapest#180000#70#3#CONDOMINIUM#1#yes");
+        }
+        ChunkedListingLoader.Result result = new ChunkedListingLoader().load(file.toPath());
+        assertEquals(1, result.properties.size());
+        Panel panel = (Panel) result.properties.get(0);
+        assertEquals(1, panel.getFloor());
+        assertTrue(panel.isInsulated());
+        file.delete();
+    }
+}
+
+// ==========================================================
+// 🧪 ColumnarPropertyStore Tests
+// ==========================================================
+class ColumnarPropertyStoreTest {
+
+    private static List<RealEstate> sampleListings() {
+        return Arrays.asList(
+                new RealEstate("Budapest", 250000, 100, 4, Genre.CONDOMINIUM),
+                new RealEstate("Debrecen", 220000, 120, 5, Genre.FAMILYHOUSE),
+                new RealEstate("Nyíregyháza", 110000, 60, 2, Genre.FARM),
+                new Panel("Budapest", 180000, 70, 3, Genre.CONDOMINIUM, 4, false),
+                new Panel("Debrecen", 120000, 35, 2, Genre.CONDOMINIUM, 0, true),
+                new Panel("Tiszaújváros", 120000, 75, 3, Genre.CONDOMINIUM, 10, false),
+                // Same total price, city and sqm as the first listing: rejected like TreeSet.add
+                new RealEstate("Budapest", 250000, 100, 2, Genre.FAMILYHOUSE));
+    }
+
+    @Test
+    void testMatchesTreeSetOrderingAndDedup() {
+        TreeSet<RealEstate> expected = new TreeSet<>();
+        ColumnarPropertyStore store = new ColumnarPropertyStore(16);
+        for (RealEstate property : sampleListings()) {
+            assertEquals(expected.add(property), store.add(property));
+        }
+        assertEquals(expected.size(), store.size());
+
+        List<String> expectedRows = new ArrayList<>();
+        expected.forEach(property -> expectedRows.add(property.toString()));
+        List<String> actualRows = new ArrayList<>();
+        store.forEach(property -> actualRows.add(property.toString()));
+        assertEquals(expectedRows, actualRows);
+        assertTrue(store.get(0) instanceof Panel);
+    }
+
+    @Test
+    void testGrowsPastInitialCapacity() {
+        ColumnarPropertyStore store = new ColumnarPropertyStore(16);
+        for (int i = 0; i < 5000; i++) {
+            store.add(new RealEstate("City" + (i % 7), 1000 + i, 50, 2, Genre.FARM));
+        }
+        assertEquals(5000, store.size());
+        assertEquals(50000, store.get(0).getTotalPrice());
+        store.clear();
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void testAgentReportIsUnchangedWithColumnarBackend() throws IOException {
+        File objectReport = File.createTempFile("objectReport", ".txt");
+        File columnarReport = File.createTempFile("columnarReport", ".txt");
+        try {
+            RealEstateAgent objectAgent = new RealEstateAgent();
+            sampleListings().forEach(objectAgent::addProperty);
+            objectAgent.generateAnalysisReport(objectReport.getPath());
+
+            RealEstateAgent columnarAgent = new RealEstateAgent(ColumnarPropertyStore::new);
+            sampleListings().forEach(columnarAgent::addProperty);
+            assertEquals(6, columnarAgent.getCollectionSize());
+            columnarAgent.generateAnalysisReport(columnarReport.getPath());
+
+            assertEquals(withoutTimestamp(objectReport), withoutTimestamp(columnarReport));
+        } finally {
+            objectReport.delete();
+            columnarReport.delete();
+        }
+    }
+
+    static String withoutTimestamp(File report) throws IOException {
+        String text = new String(java.nio.file.Files.readAllBytes(report.toPath()));
+        return text.substring(0, text.indexOf("Generated on:"));
+    }
+}
+
+// ==========================================================
+// 🧪 ReportAggregator Tests
+// ==========================================================
+class ReportAggregatorTest {
+    private static final String[] REPORT_CITIES = {"Budapest", "budapest", "Debrecen", "Nyíregyháza", "Kisvárda"};
+
+    @Test
+    void testSinglePassMatchesSeparateStreams() {
+        TreeSet<RealEstate> properties = new TreeSet<>(randomListings(7, 5000, REPORT_CITIES));
+        ReportAggregator.Metrics metrics = new ReportAggregator().aggregate(properties);
+
+        double avgTotal = properties.stream().mapToInt(RealEstate::getTotalPrice).average().orElse(0.0);
+        assertEquals(properties.stream().mapToDouble(RealEstate::getPrice).average().orElse(0.0), metrics.averageSqmPrice);
+        assertEquals(properties.stream().mapToInt(RealEstate::getTotalPrice).min().orElse(0), metrics.cheapestPrice);
+        assertSame(properties.stream()
+                        .filter(property -> "budapest".equalsIgnoreCase(property.getCity()))
+                        .max(Comparator.comparingInt(RealEstate::getTotalPrice)).orElse(null),
+                metrics.mostExpensiveBudapest);
+        assertEquals(properties.stream().mapToLong(RealEstate::getTotalPrice).sum(), metrics.totalPrice);
+        assertEquals(avgTotal, metrics.averageTotalPrice);
+        assertEquals(properties.stream()
+                        .filter(property -> property.getGenre() == Genre.CONDOMINIUM)
+                        .filter(property -> property.getTotalPrice() <= avgTotal)
+                        .collect(java.util.stream.Collectors.toList()),
+                metrics.affordableCondos);
+    }
+
+    @Test
+    void testParallelMatchesSequential() {
+        TreeSet<RealEstate> properties = new TreeSet<>(randomListings(7, 5000, REPORT_CITIES));
+        ReportAggregator.Metrics sequential = new ReportAggregator().aggregate(properties);
+        ReportAggregator.Metrics parallel =
+                new ReportAggregator(ForkJoinPool.commonPool(), 100).aggregate(properties);
+
+        assertEquals(String.format("%.2f", sequential.averageSqmPrice), String.format("%.2f", parallel.averageSqmPrice));
+        assertEquals(sequential.cheapestPrice, parallel.cheapestPrice);
+        assertSame(sequential.mostExpensiveBudapest, parallel.mostExpensiveBudapest);
+        assertEquals(sequential.totalPrice, parallel.totalPrice);
+        assertEquals(sequential.averageTotalPrice, parallel.averageTotalPrice);
+        assertEquals(sequential.affordableCondos, parallel.affordableCondos);
+    }
+}
+
+// ==========================================================
+// 🧪 PricingTable Tests
+// ==========================================================
+class PricingTableTest {
+
+    @Test
+    void testAccentAndCaseVariantsShareModifier() {
+        PricingTable table = PricingTable.getDefault();
+        assertEquals(1.15, table.modifierFor("Nyíregyháza"));
+        assertEquals(1.15, table.modifierFor("nyiregyhaza"));
+        assertEquals(1.15, table.modifierFor("NYÍREGYHÁZA"));
+        assertEquals(1.30, table.modifierFor("BUDAPEST"));
+        assertEquals(1.0, table.modifierFor("Kisvárda"));
+        assertEquals(1.0, table.modifierFor(null));
+    }
+
+    @Test
+    void testLoadFromFile() throws IOException {
+        File file = File.createTempFile("modifiers", ".properties");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+            writer.write("Szeged = 1.10\nPécs = 1.05\n");
+        }
+        PricingTable table = PricingTable.load(file.toPath());
+        assertEquals(1.10, table.modifierFor("szeged"));
+        assertEquals(1.05, table.modifierFor("Pecs"));
+        assertEquals(1.0, table.modifierFor("Budapest"));
+        file.delete();
+    }
+
+    @Test
+    void testCachedTotalPriceFollowsMutations() {
+        RealEstate estate = new RealEstate("Budapest", 200000, 100, 4, Genre.CONDOMINIUM);
+        assertEquals(26000000, estate.getTotalPrice());
+        estate.setCity("Kisvárda");
+        assertEquals(20000000, estate.getTotalPrice());
+        estate.setSqm(50);
+        assertEquals(10000000, estate.getTotalPrice());
+        estate.setPrice(100000);
+        assertEquals(5000000, estate.getTotalPrice());
+        estate.makeDiscount(10);
+        assertEquals(4500000, estate.getTotalPrice());
+
+        Panel panel = new Panel("Debrecen", 100000, 100, 3, Genre.CONDOMINIUM, 5, false);
+        assertEquals(12000000, panel.getTotalPrice());
+        panel.setFloor(1);
+        assertEquals(12600000, panel.getTotalPrice());
+        panel.setInsulated(true);
+        assertEquals(13200000, panel.getTotalPrice());
+    }
+}
+
+// ==========================================================
+// 🧪 Concurrent RealEstateAgent Stress Tests
+// ==========================================================
+class ConcurrentRealEstateAgentTest {
+
+    private static final int LISTINGS_PER_THREAD = 20_000;
+
+    // Distinct total price per (thread, index), so nothing is deduplicated
+    private static RealEstate listing(int thread, int index) {
+        return new RealEstate("City" + thread, 1000 + index, 10 + thread, 2, Genre.values()[index % 3]);
+    }
+
+    private static long addConcurrently(RealEstateAgent agent, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < LISTINGS_PER_THREAD; i++) {
+                    agent.addProperty(listing(thread, i));
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        return elapsed;
+    }
+
+    @Test
+    void testConcurrentWritersWithSnapshotReaders() throws Exception {
+        RealEstateAgent agent = new RealEstateAgent();
+        int writers = Math.max(4, Runtime.getRuntime().availableProcessors());
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> readerFailure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            try {
+                int lastSize = 0;
+                while (!done.get()) {
+                    RealEstate[] snapshot = agent.getRealEstateCollection().toArray(new RealEstate[0]);
+                    for (int i = 1; i < snapshot.length; i++) {
+                        assertTrue(snapshot[i - 1].compareTo(snapshot[i]) < 0, "snapshot out of order");
+                    }
+                    assertTrue(snapshot.length >= lastSize, "snapshot shrank while only adding");
+                    lastSize = snapshot.length;
+                }
+            } catch (Throwable e) {
+                readerFailure.set(e);
+            }
+        });
+        reader.start();
+        addConcurrently(agent, writers);
+        done.set(true);
+        reader.join();
+
+        assertNull(readerFailure.get());
+        assertEquals(writers * LISTINGS_PER_THREAD, agent.getCollectionSize());
+        assertEquals(writers * LISTINGS_PER_THREAD, agent.getRealEstateCollection().size());
+    }
+
+    @Test
+    void testPagedListingTakesPageCountAndRowsFromOneView() throws Exception {
+        RealEstateAgent agent = new RealEstateAgent();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < LISTINGS_PER_THREAD && !done.get(); i++) {
+                agent.addProperty(listing(0, i));
+            }
+        });
+        int pageSize = 7;
+        PrintStream originalOut = System.out;
+        writer.start();
+        try {
+            while (writer.isAlive()) {
+                // Roughly the last page, which the size read and the rows could disagree on
+                int page = agent.getCollectionSize() / pageSize + 1;
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                System.setOut(new PrintStream(output, true));
+                agent.displayAllProperties(page, pageSize);
+                System.setOut(originalOut);
+
+                int pages = 0;
+                int rows = 0;
+                for (String line : output.toString().split("\\R")) {
+                    if (line.startsWith("Page ")) {
+                        pages = Integer.parseInt(line.substring(line.indexOf(" of ") + 4).trim());
+                    } else if (line.matches("\\d+\\. .*")) {
+                        rows++;
+                    }
+                }
+                if (pages > 0) {
+                    assertEquals(page <= pages, rows > 0, "page " + page + " of " + pages + " had " + rows + " rows");
+                    if (page < pages) {
+                        assertEquals(pageSize, rows);
+                    }
+                }
+            }
+        } finally {
+            done.set(true);
+            System.setOut(originalOut);
+            writer.join();
+        }
+    }
+
+    @Test
+    void testAddThroughputByThreadCount() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= Math.max(2, cores); threads *= 2) {
+            RealEstateAgent agent = new RealEstateAgent();
+            long elapsed = addConcurrently(agent, threads);
+            int added = threads * LISTINGS_PER_THREAD;
+            assertEquals(added, agent.getCollectionSize());
+            System.out.printf("addProperty with %d thread(s) on %d core(s): %.0f adds/s%n",
+                    threads, cores, added / (elapsed / 1e9));
+        }
+    }
+
+    @Test
+    void testClearPublishesEmptyCollection() {
+        RealEstateAgent agent = new RealEstateAgent();
+        agent.addProperty(listing(0, 0));
+        Collection<RealEstate> before = agent.getRealEstateCollection();
+        agent.clear();
+        assertEquals(0, agent.getCollectionSize());
+        assertEquals(1, before.size());
+    }
+}
+
+// ==========================================================
+// 🧪 PropertyQuery Tests
+// ==========================================================
+class PropertyQueryTest {
+
+    private static List<String> bruteForce(Collection<RealEstate> properties, PropertyQuery query) {
+        List<String> result = new ArrayList<>();
+        for (RealEstate property : properties) {
+            if (result.size() < query.getLimit() && query.matches(property, property.getTotalPrice())) {
+                result.add(property.toString());
+            }
+        }
+        return result;
+    }
+
+    private static List<String> rows(List<RealEstate> properties) {
+        List<String> result = new ArrayList<>();
+        properties.forEach(property -> result.add(property.toString()));
+        return result;
+    }
+
+    @Test
+    void testIndexedAndColumnarQueriesMatchFullScan() {
+        TreeSet<RealEstate> reference = new TreeSet<>();
+        RealEstateAgent indexed = new RealEstateAgent();
+        SortedSetPropertyStore unindexed = new SortedSetPropertyStore(new TreeSet<>(), false);
+        ColumnarPropertyStore columnar = new ColumnarPropertyStore();
+        for (RealEstate property : randomListings(11, 3000, "Budapest", "BUDAPEST", "Debrecen", "Nyíregyháza", "Kisvárda")) {
+            reference.add(property);
+            indexed.addProperty(property);
+            unindexed.add(property);
+            columnar.add(property);
+        }
+
+        List<PropertyQuery> queries = Arrays.asList(
+                new PropertyQuery(),
+                new PropertyQuery().city("budapest"),
+                new PropertyQuery().genre(Genre.CONDOMINIUM).totalPriceBetween(0, 10_000_000),
+                new PropertyQuery().city("Debrecen").genre(Genre.FARM).limit(5),
+                new PropertyQuery().city("Nyíregyháza").totalPriceBetween(5_000_000, 20_000_000).limit(20),
+                new PropertyQuery().totalPriceBetween(10_000_000, 10_000_000),
+                new PropertyQuery().city("Szeged"),
+                new PropertyQuery().genre(Genre.FAMILYHOUSE).limit(0));
+        for (PropertyQuery query : queries) {
+            List<String> expected = bruteForce(reference, query);
+            assertEquals(expected, rows(indexed.query(query)), query.toString());
+            assertEquals(expected, rows(unindexed.query(query)), query.toString());
+            assertEquals(expected, rows(columnar.query(query)), query.toString());
+        }
+    }
+
+    @Test
+    void testGenreAndRoomChangesReindexListing() {
+        RealEstateAgent agent = new RealEstateAgent();
+        RealEstate listing = new RealEstate("Budapest", 200000, 60, 2, Genre.CONDOMINIUM);
+        RealEstate other = new RealEstate("Budapest", 150000, 60, 2, Genre.CONDOMINIUM);
+        agent.addProperty(listing);
+        agent.addProperty(other);
+        assertEquals(Collections.singletonList(other), agent.findComparables(listing, 5));
+
+        long version = agent.getVersion();
+        listing.setGenre(Genre.FARM);
+        assertTrue(agent.getVersion() > version);
+        assertEquals(Collections.singletonList(other), agent.query(new PropertyQuery().genre(Genre.CONDOMINIUM)));
+        assertEquals(Collections.singletonList(listing), agent.query(new PropertyQuery().genre(Genre.FARM)));
+        assertEquals(Collections.singletonList(other), agent.topByTotalPrice(null, Genre.CONDOMINIUM, 5));
+        assertTrue(agent.findComparables(listing, 5).isEmpty());  // no other farm
+
+        version = agent.getVersion();
+        listing.setNumberOfRooms(5);
+        assertTrue(agent.getVersion() > version);
+        listing.setPrice(100000);  // removal must find it under FARM
+        assertEquals(Collections.singletonList(listing), agent.query(new PropertyQuery().genre(Genre.FARM)));
+        assertEquals(Collections.singletonList(other), agent.query(new PropertyQuery().genre(Genre.CONDOMINIUM)));
+        assertEquals(2, agent.getCollectionSize());
+    }
+
+    @Test
+    void testInvalidArgumentsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new PropertyQuery().totalPriceBetween(10, 5));
+        assertThrows(IllegalArgumentException.class, () -> new PropertyQuery().limit(-1));
+    }
+}
+
+// ==========================================================
+// 🧪 ReportStatistics Tests
+// ==========================================================
+class ReportStatisticsTest {
+
+    private static String report(RealEstateAgent agent, ReportAggregator aggregator) throws IOException {
+        File file = File.createTempFile("statisticsReport", ".txt");
+        try {
+            if (aggregator == null) {
+                agent.generateAnalysisReport(file.getPath());
+            } else {
+                agent.generateAnalysisReport(file.getPath(), aggregator);
+            }
+            String text = new String(java.nio.file.Files.readAllBytes(file.toPath()));
+            return text.substring(0, text.indexOf("Generated on:"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testIncrementalReportMatchesFullRecompute() throws IOException {
+        RealEstateAgent agent = new RealEstateAgent();
+        List<RealEstate> listings = new ArrayList<>();
+        Random random = new Random(5);
+        String[] cities = {"Budapest", "budapest", "Debrecen", "Kisvárda"};
+        for (int i = 0; i < 400; i++) {
+            RealEstate property = new RealEstate(cities[random.nextInt(cities.length)],
+                    50000 + random.nextInt(300000), 20 + random.nextInt(150), 1 + random.nextInt(6),
+                    Genre.values()[random.nextInt(Genre.values().length)]);
+            listings.add(property);
+            agent.addProperty(property);
+        }
+        assertEquals(report(agent, new ReportAggregator()), report(agent, null));
+
+        // Reprice the cheapest and the most expensive Budapest listing, then some at random
+        List<RealEstate> budapest = agent.query(new PropertyQuery().city("Budapest"));
+        budapest.get(budapest.size() - 1).makeDiscount(40);
+        agent.query(new PropertyQuery().limit(1)).get(0).setPrice(400000);
+        for (int i = 0; i < 50; i++) {
+            listings.get(random.nextInt(listings.size())).makeDiscount(1 + random.nextInt(30));
+        }
+        assertEquals(report(agent, new ReportAggregator()), report(agent, null));
+    }
+
+    @Test
+    void testDescendingQueryIsReversedAscending() {
+        Random random = new Random(7);
+        String[] cities = {"Budapest", "budapest", "Debrecen"};
+        List<PropertyStore> stores = Arrays.asList(new SortedSetPropertyStore(new TreeSet<>()),
+                new SortedSetPropertyStore(new TreeSet<>(), false), new ColumnarPropertyStore(), new OffHeapPropertyStore());
+        for (int i = 0; i < 300; i++) {
+            RealEstate property = new RealEstate(cities[random.nextInt(cities.length)], 1000 * (1 + random.nextInt(100)),
+                    50, 2, Genre.values()[random.nextInt(Genre.values().length)]);
+            stores.forEach(store -> store.add(property));
+        }
+        for (PropertyStore store : stores) {
+            List<PropertyQuery> ascending = Arrays.asList(new PropertyQuery(), new PropertyQuery().city("BUDAPEST"),
+                    new PropertyQuery().genre(Genre.FARM).totalPriceBetween(2_000_000, 4_000_000));
+            for (PropertyQuery query : ascending) {
+                List<String> expected = new ArrayList<>();
+                store.query(query).forEach(property -> expected.add(property.toString()));
+                Collections.reverse(expected);
+                List<String> actual = new ArrayList<>();
+                store.query(query.descending()).forEach(property -> actual.add(property.toString()));
+                assertEquals(expected, actual, store.getClass().getSimpleName() + " " + query);
+                List<RealEstate> top = store.query(query.limit(1));
+                assertEquals(expected.isEmpty() ? 0 : 1, top.size());
+                if (!top.isEmpty()) {
+                    assertEquals(expected.get(0), top.get(0).toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testDiscountKeepsStoredListingInPriceOrder() {
+        RealEstateAgent agent = new RealEstateAgent();
+        RealEstate expensive = new RealEstate("Budapest", 300000, 100, 4, Genre.CONDOMINIUM);
+        RealEstate cheap = new RealEstate("Debrecen", 100000, 100, 4, Genre.CONDOMINIUM);
+        agent.addProperty(expensive);
+        agent.addProperty(cheap);
+
+        expensive.makeDiscount(90);
+        assertEquals(Arrays.asList(expensive, cheap), new ArrayList<>(agent.getRealEstateCollection()));
+        assertSame(expensive, agent.query(new PropertyQuery().city("budapest")
+                .totalPriceBetween(expensive.getTotalPrice(), expensive.getTotalPrice())).get(0));
+        assertEquals(2, agent.getCollectionSize());
+    }
+}
+
+// ==========================================================
+// 🧪 PricingScenario Tests
+// ==========================================================
+class PricingScenarioTest {
+
+    private RealEstateAgent agent;
+    private RealEstate budapest;
+    private Panel lowPanel;
+    private Panel highPanel;
+    private RealEstate debrecenFarm;
+
+    @BeforeEach
+    void setup() {
+        agent = new RealEstateAgent();
+        budapest = new RealEstate("Budapest", 250000, 100, 4, Genre.CONDOMINIUM);
+        lowPanel = new Panel("Debrecen", 120000, 35, 2, Genre.CONDOMINIUM, 1, true);
+        highPanel = new Panel("Nyíregyháza", 170000, 80, 3, Genre.CONDOMINIUM, 11, false);
+        debrecenFarm = new RealEstate("Debrecen", 110000, 60, 2, Genre.FARM);
+        Arrays.asList(budapest, lowPanel, highPanel, debrecenFarm).forEach(agent::addProperty);
+    }
+
+    @Test
+    void testScenarioDoesNotMutateBaseListings() {
+        List<RealEstate> before = new ArrayList<>(agent.getRealEstateCollection());
+        PricingScenario scenario = agent.createScenario(
+                DiscountRule.byCity(Collections.singletonMap("budapest", 50)),
+                DiscountRule.panelFloors(10, 20, 10));
+
+        assertEquals(2, scenario.getRepricedCount());
+        assertEquals(250000, budapest.getPrice());
+        assertEquals(170000, highPanel.getPrice());
+        assertEquals(before, new ArrayList<>(agent.getRealEstateCollection()));
+    }
+
+    @Test
+    void testScenarioMatchesInPlaceDiscounts() {
+        PricingScenario scenario = agent.createScenario(
+                DiscountRule.byGenre(Collections.singletonMap(Genre.CONDOMINIUM, 20)),
+                DiscountRule.byCity(Collections.singletonMap("DEBRECEN", 5)));
+
+        // Same rules applied one listing at a time to fresh copies
+        List<String> expected = new ArrayList<>();
+        TreeSet<RealEstate> reference = new TreeSet<>();
+        RealEstate a = new RealEstate("Budapest", 250000, 100, 4, Genre.CONDOMINIUM);
+        a.makeDiscount(20);
+        Panel b = new Panel("Debrecen", 120000, 35, 2, Genre.CONDOMINIUM, 1, true);
+        b.makeDiscount(20);
+        b.makeDiscount(5);
+        Panel c = new Panel("Nyíregyháza", 170000, 80, 3, Genre.CONDOMINIUM, 11, false);
+        c.makeDiscount(20);
+        RealEstate d = new RealEstate("Debrecen", 110000, 60, 2, Genre.FARM);
+        d.makeDiscount(5);
+        reference.addAll(Arrays.asList(a, b, c, d));
+        reference.forEach(property -> expected.add(property.toString()));
+
+        List<String> actual = new ArrayList<>();
+        scenario.asList().forEach(property -> actual.add(property.toString()));
+        assertEquals(expected, actual);
+
+        List<RealEstate> condos = scenario.query(new PropertyQuery().genre(Genre.CONDOMINIUM).city("debrecen"));
+        assertEquals(1, condos.size());
+        assertEquals(b.getTotalPrice(), condos.get(0).getTotalPrice());
+        assertEquals(new ReportAggregator().aggregate(reference).totalPrice,
+                scenario.metrics(new ReportAggregator()).totalPrice);
+    }
+
+    @Test
+    void testCommitReplacesCollection() {
+        PricingScenario scenario = agent.createScenario(DiscountRule.panelFloors(0, 2, 30));
+        agent.commitScenario(scenario);
+
+        assertEquals(4, agent.getCollectionSize());
+        assertEquals(120000, lowPanel.getPrice());
+        RealEstate committed = agent.query(new PropertyQuery().city("Debrecen").genre(Genre.CONDOMINIUM)).get(0);
+        assertEquals(84000, committed.getPrice(), 1e-9);
+        assertNotSame(lowPanel, committed);
+    }
+
+    @Test
+    void testCommitRejectedAfterConcurrentChange() {
+        PricingScenario scenario = agent.createScenario(DiscountRule.panelFloors(0, 2, 30));
+        agent.addProperty(new RealEstate("Kisvárda", 150000, 50, 2, Genre.CONDOMINIUM));
+        assertThrows(IllegalStateException.class, () -> agent.commitScenario(scenario));
+        assertEquals(5, agent.getCollectionSize());
+    }
+
+    @Test
+    void testCommitNeverLosesConcurrentAdds() throws Exception {
+        int adds = 3000;
+        Thread adder = new Thread(() -> {
+            for (int i = 0; i < adds; i++) {
+                agent.addProperty(new RealEstate("Eger", 1000 + i, 10, 1, Genre.FARM));
+            }
+        });
+        adder.start();
+        int commits = 0;
+        while (adder.isAlive()) {
+            try {
+                agent.commitScenario(agent.createScenario(DiscountRule.panelFloors(0, 2, 1)));
+                commits++;
+            } catch (IllegalStateException e) {
+                // An add came first; the next attempt starts from it
+            }
+        }
+        adder.join();
+        // Every add either preceded a rejected commit or landed in the committed collection
+        assertEquals(4 + adds, agent.getCollectionSize(), "after " + commits + " commits");
+    }
+
+    @Test
+    void testInvalidRulesAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> DiscountRule.byCity(Collections.singletonMap("Budapest", 101)));
+        assertThrows(IllegalArgumentException.class, () -> DiscountRule.panelFloors(5, 2, 10));
+    }
+}
+
+// ==========================================================
+// 🧪 ListingJournal Tests
+// ==========================================================
+class ListingJournalTest {
+
+    private static List<String> rows(RealEstateAgent agent) {
+        List<String> rows = new ArrayList<>();
+        agent.getRealEstateCollection().forEach(property -> rows.add(property.toString()));
+        return rows;
+    }
+
+    @Test
+    void testRestartRestoresAddsAndDiscounts(@TempDir File directory) throws IOException {
+        RealEstateAgent agent = new RealEstateAgent();
+        agent.openJournal(directory.toPath(), 3);
+        RealEstate budapest = new RealEstate("Budapest", 250000, 100, 4, Genre.CONDOMINIUM);
+        Panel panel = new Panel("Nyíregyháza", 170000, 80, 3, Genre.CONDOMINIUM, 7, false);
+        agent.addProperty(budapest);
+        agent.addProperty(panel);
+        agent.addProperty(new RealEstate("Debrecen", 220000, 120, 5, Genre.FAMILYHOUSE));
+        agent.addProperty(new RealEstate("Kisvárda", 150000, 50, 2, Genre.CONDOMINIUM));  // compacts
+        budapest.makeDiscount(50);
+        panel.setInsulated(true);
+        agent.closeJournal();
+
+        assertTrue(new File(directory, ListingJournal.SNAPSHOT_FILE).exists());
+        RealEstateAgent restarted = new RealEstateAgent();
+        restarted.openJournal(directory.toPath());
+        assertEquals(rows(agent), rows(restarted));
+        restarted.closeJournal();
+    }
+
+    @Test
+    void testRestoreUnderDifferentPricingTableKeepsStoreOrder(@TempDir File root) throws IOException {
+        // The order this snapshot had under a table with Budapest = 1.0; the default
+        // table prices Budapest at 130000, so it belongs last now
+        RealEstate[] written = {
+                new RealEstate("Budapest", 1000, 100, 3, Genre.CONDOMINIUM),
+                new RealEstate("Debrecen", 1000, 100, 3, Genre.CONDOMINIUM),
+                new RealEstate("Szeged", 1200, 100, 3, Genre.CONDOMINIUM)};
+        List<Supplier<PropertyStore>> backends = Arrays.asList(
+                SortedSetPropertyStore::new, ColumnarPropertyStore::new, OffHeapPropertyStore::new);
+        for (int b = 0; b < backends.size(); b++) {
+            File directory = new File(root, "journal-" + b);
+            assertTrue(directory.mkdir());
+            ListingSnapshot.write(new File(directory, ListingJournal.SNAPSHOT_FILE).toPath(), written);
+            RealEstateAgent agent = new RealEstateAgent(backends.get(b));
+            agent.openJournal(directory.toPath());
+            agent.addProperty(new RealEstate("Nyíregyháza", 1000, 110, 3, Genre.CONDOMINIUM));
+            agent.addProperty(new RealEstate("Szeged", 1200, 100, 3, Genre.CONDOMINIUM));  // duplicate
+
+            List<RealEstate> listings = new ArrayList<>(agent.getRealEstateCollection());
+            assertEquals(4, listings.size());
+            assertEquals("Budapest", listings.get(3).getCity());
+            for (int i = 1; i < listings.size(); i++) {
+                assertTrue(listings.get(i - 1).compareTo(listings.get(i)) < 0);
+            }
+            agent.closeJournal();
+        }
+    }
+
+    @Test
+    void testTornLogEntryIsDiscarded(@TempDir File directory) throws IOException {
+        RealEstateAgent agent = new RealEstateAgent();
+        agent.openJournal(directory.toPath());
+        agent.addProperty(new RealEstate("Budapest", 250000, 100, 4, Genre.CONDOMINIUM));
+        agent.closeJournal();
+        try (FileOutputStream log = new FileOutputStream(new File(directory, ListingJournal.LOG_FILE), true)) {
+            log.write(new byte[]{1, 0, 0, 42});  // half-written add
+        }
+
+        RealEstateAgent restarted = new RealEstateAgent();
+        restarted.openJournal(directory.toPath());
+        restarted.addProperty(new RealEstate("Debrecen", 220000, 120, 5, Genre.FAMILYHOUSE));
+        restarted.closeJournal();
+
+        RealEstateAgent again = new RealEstateAgent();
+        again.openJournal(directory.toPath());
+        assertEquals(2, again.getCollectionSize());
+        again.closeJournal();
+    }
+}
+
+// ==========================================================
+// 🧪 StreamingTextWriter Tests
+// ==========================================================
+
+class StreamingTextWriterTest {
+
+    private static String streamed(RealEstate property) throws IOException {
+        File file = File.createTempFile("row", ".txt");
+        try {
+            try (StreamingTextWriter out = StreamingTextWriter.file(file.toPath())) {
+                property.appendTo(out);
+            }
+            return new String(java.nio.file.Files.readAllBytes(file.toPath()), java.nio.charset.Charset.defaultCharset());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testAppendToMatchesToString() throws IOException {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            double price = random.nextInt(400000) + random.nextInt(1000) / 1000.0;
+            int sqm = 1 + random.nextInt(300);
+            int rooms = 1 + random.nextInt(9);
+            RealEstate property = i % 2 == 0
+                    ? new RealEstate("Budapest", price, sqm, rooms, Genre.CONDOMINIUM)
+                    : new Panel("Debrecen", price, sqm, rooms, Genre.CONDOMINIUM, random.nextInt(11), random.nextBoolean());
+            assertEquals(property.toString(), streamed(property));
+        }
+        assertEquals(new RealEstate(null, 0.125, 0, 3, null).toString(),
+                streamed(new RealEstate(null, 0.125, 0, 3, null)));
+    }
+
+    @Test
+    void testWriteFixed2MatchesFormat() throws IOException {
+        double[] values = {0, -0.0, 0.005, 0.015, 1.005, 2.675, -1.255, 17.5, 26.666666, 99.995,
+                9999999.994, 1e7, 1e12, Double.NaN, Double.NEGATIVE_INFINITY, -123.454999};
+        File file = File.createTempFile("fixed", ".txt");
+        try {
+            StringBuilder expected = new StringBuilder();
+            try (StreamingTextWriter out = StreamingTextWriter.file(file.toPath())) {
+                for (double value : values) {
+                    out.writeFixed2(value).write('|');
+                    expected.append(String.format("%.2f", value)).append('|');
+                }
+            }
+            assertEquals(expected.toString(), new String(java.nio.file.Files.readAllBytes(file.toPath()),
+                    java.nio.charset.Charset.defaultCharset()));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testGzipReportMatchesPlainReport() throws IOException {
+        RealEstateAgent agent = new RealEstateAgent();
+        agent.addProperty(new RealEstate("Budapest", 250000, 100, 4, Genre.CONDOMINIUM));
+        agent.addProperty(new Panel("Debrecen", 120000, 35, 2, Genre.CONDOMINIUM, 0, true));
+        File plain = File.createTempFile("report", ".txt");
+        File gzip = File.createTempFile("report", ".txt.gz");
+        try {
+            agent.generateAnalysisReport(plain.getPath());
+            agent.generateAnalysisReport(gzip.getPath());
+            ByteArrayOutputStream unpacked = new ByteArrayOutputStream();
+            try (InputStream in = new java.util.zip.GZIPInputStream(new FileInputStream(gzip))) {
+                in.transferTo(unpacked);
+            }
+            String expected = new String(java.nio.file.Files.readAllBytes(plain.toPath()));
+            String actual = unpacked.toString();
+            // Everything but the timestamp line
+            assertEquals(expected.substring(0, expected.indexOf("Generated on:")),
+                    actual.substring(0, actual.indexOf("Generated on:")));
+        } finally {
+            plain.delete();
+            gzip.delete();
+        }
+    }
+
+    @Test
+    void testDisplayPageKeepsOverallNumbering() {
+        RealEstateAgent agent = new RealEstateAgent();
+        for (int i = 1; i <= 5; i++) {
+            agent.addProperty(new RealEstate("Budapest", 100000 * i, 50, 2, Genre.CONDOMINIUM));
+        }
+        PrintStream original = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true));
+        try {
+            agent.displayAllProperties(2, 2);
+        } finally {
+            System.setOut(original);
+        }
+        String text = captured.toString();
+        assertTrue(text.contains("Page 2 of 3"));
+        assertTrue(text.contains("3. RealEstate [City: Budapest, Genre: CONDOMINIUM, Price per sqm: 300000.00"));
+        assertTrue(text.contains("4. RealEstate"));
+        assertFalse(text.contains("2. RealEstate"));
+        assertFalse(text.contains("5. RealEstate"));
+    }
+}
+
+// ==========================================================
+// 🧪 ListingFileWatcher Tests
+// ==========================================================
+
+class ListingFileWatcherTest {
+
+    private static void append(File file, String text) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(text.getBytes(java.nio.charset.Charset.defaultCharset()));
+        }
+    }
+
+    @Test
+    void testPollIngestsOnlyCompleteAppendedLines() throws IOException {
+        File file = File.createTempFile("listings", ".txt");
+        try {
+            append(file, "REALESTATE#Budapest#250000#100#4#CONDOMINIUM\n");
+            RealEstateAgent agent = new RealEstateAgent();
+            ListingFileWatcher watcher = new ListingFileWatcher(agent, file.toPath(), 0, null);
+            assertEquals(1, watcher.poll());
+
+            append(file, "PANEL#Debrecen#120000#35#2#CONDOMINIUM#0#yes\nREALESTATE#Szeged#2000");
+            assertEquals(1, watcher.poll());
+            assertEquals(2, agent.getCollectionSize());
+
+            append(file, "00#80#3#FAMILYHOUSE\r\n");
+            assertEquals(1, watcher.poll());
+            assertEquals(3, agent.getCollectionSize());
+            assertEquals(file.length(), watcher.getOffset());
+            assertEquals(200000, agent.query(new PropertyQuery().city("Szeged")).get(0).getPrice(), 0.01);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testChangeCallbackOnlyWhenSomethingWasAdded() throws IOException {
+        File file = File.createTempFile("listings", ".txt");
+        try {
+            append(file, "REALESTATE#Budapest#250000#100#4#CONDOMINIUM\n");
+            RealEstateAgent agent = new RealEstateAgent();
+            int[] refreshes = {0};
+            ListingFileWatcher watcher = new ListingFileWatcher(agent, file.toPath(), file.length(), () -> refreshes[0]++);
+
+            assertEquals(0, watcher.poll());
+            append(file, "REALESTATE#Budapest#250000#100#4#CONDOMINIUM\n");
+            watcher.poll();
+            assertEquals(1, refreshes[0]);
+            append(file, "REALESTATE#Budapest#250000#100#4#CONDOMINIUM\nnot a listing\n");
+            assertEquals(0, watcher.poll());
+            assertEquals(1, refreshes[0]);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testBackgroundWatcherPicksUpAppends() throws Exception {
+        File file = File.createTempFile("listings", ".txt");
+        RealEstateAgent agent = new RealEstateAgent();
+        CountDownLatch refreshed = new CountDownLatch(1);
+        try (ListingFileWatcher watcher = new ListingFileWatcher(agent, file.toPath(), 0, refreshed::countDown)) {
+            watcher.start(100);
+            append(file, "REALESTATE#Debrecen#220000#120#5#FAMILYHOUSE\n");
+            assertTrue(refreshed.await(10, TimeUnit.SECONDS));
+            assertEquals(1, agent.getCollectionSize());
+        } finally {
+            file.delete();
+        }
+    }
+}
+
+// ==========================================================
+// 🧪 AgentMetrics Tests
+// ==========================================================
+
+class AgentMetricsTest {
+
+    @Test
+    void testLoadCountsLinesClassesAndRejectReasons() throws IOException {
+        File file = File.createTempFile("listings", ".txt");
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println("REALESTATE#Budapest#250000#100#4#CONDOMINIUM");
+            writer.println("PANEL#Debrecen#120000#35#2#CONDOMINIUM#0#yes");
+            writer.println("REALESTATE#Kisvárda#150000#50#2");
+            writer.println("REALESTATE#Szeged#abc#50#2#FARM");
+            writer.println("PANEL#Eger#120000#75#3#CONDOMINIUM#10");
+            writer.println("REALESTATE#Győr#99000#40#1#CASTLE");
+        }
+        try {
+            for (boolean parallel : new boolean[]{false, true}) {
+                RealEstateAgent agent = new RealEstateAgent();
+                PrintStream originalErr = System.err;
+                System.setErr(new PrintStream(new ByteArrayOutputStream(), true));
+                try {
+                    if (parallel) {
+                        agent.loadFromFileParallel(file.getPath());
+                    } else {
+                        agent.loadFromFile(file.getPath());
+                    }
+                } finally {
+                    System.setErr(originalErr);
+                }
+                AgentMetrics metrics = agent.getMetrics();
+                assertEquals(6, metrics.getLinesRead());
+                assertEquals(2, metrics.getParsedRealEstates());
+                assertEquals(1, metrics.getParsedPanels());
+                assertEquals(3, metrics.getRejectedLines());
+                assertEquals(1, metrics.getProblems(AgentMetrics.RejectReason.NOT_ENOUGH_PARTS));
+                assertEquals(1, metrics.getProblems(AgentMetrics.RejectReason.BAD_NUMBER));
+                assertEquals(1, metrics.getProblems(AgentMetrics.RejectReason.MISSING_PANEL_FIELDS));
+                assertEquals(1, metrics.getProblems(AgentMetrics.RejectReason.BAD_GENRE));
+                assertTrue(metrics.getParseThroughputLinesPerSecond() > 0);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testRejectLoggingIsSampled() {
+        AgentMetrics metrics = new AgentMetrics();
+        PrintStream originalErr = System.err;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(captured, true));
+        try {
+            AgentMetrics.LoadEvent load = metrics.beginLoad("test");
+            for (int i = 0; i < 1000; i++) {
+                metrics.reject(AgentMetrics.RejectReason.BAD_NUMBER, "Invalid number format in line: " + i);
+            }
+            metrics.endLoad(load);
+        } finally {
+            System.setErr(originalErr);
+        }
+        String[] lines = captured.toString().trim().split("\\R");
+        assertEquals(AgentMetrics.LOG_BURST + 1, lines.length);
+        assertEquals("Suppressed " + (1000 - AgentMetrics.LOG_BURST) + " more BAD_NUMBER messages",
+                lines[lines.length - 1]);
+        assertEquals(1000, metrics.getProblems(AgentMetrics.RejectReason.BAD_NUMBER));
+        assertEquals(1000 - AgentMetrics.LOG_BURST, metrics.getSuppressedLogMessages());
+    }
+
+    @Test
+    void testReportSectionsAreTimedAndExposedOverJmx() throws Exception {
+        RealEstateAgent agent = new RealEstateAgent();
+        agent.addProperty(new RealEstate("Budapest", 250000, 100, 4, Genre.CONDOMINIUM));
+        File report = File.createTempFile("report", ".txt");
+        javax.management.ObjectName name = agent.registerMetrics("metrics-test");
+        PrintStream originalOut = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream(), true));
+        try {
+            agent.generateAnalysisReport(report.getPath());
+            agent.generateAnalysisReport(report.getPath());
+
+            javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+            assertEquals(2L, server.getAttribute(name, "ReportsGenerated"));
+            javax.management.openmbean.TabularData sections =
+                    (javax.management.openmbean.TabularData) server.getAttribute(name, "ReportSectionAverageMillis");
+            assertEquals(AgentMetrics.ReportSection.values().length, sections.size());
+        } finally {
+            System.setOut(originalOut);
+            java.lang.management.ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            report.delete();
+        }
+    }
+}
+
+// ==========================================================
+// 🧪 ShardedListingIngest Tests
+// ==========================================================
+
+class ShardedListingIngestTest {
+
+    private static void writeShards(File directory, String[][] shards) throws IOException {
+        for (int i = 0; i < shards.length; i++) {
+            try (PrintWriter writer = new PrintWriter(new File(directory, "shard-" + i + ".txt"))) {
+                for (String line : shards[i]) {
+                    writer.println(line);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testShardsMergeIntoOneCollectionWithPerShardStats(@TempDir File directory) throws IOException {
+        writeShards(directory, new String[][]{
+                {"REALESTATE#Budapest#250000#100#4#CONDOMINIUM", "REALESTATE#Debrecen#220000#120#5#FAMILYHOUSE"},
+                {"PANEL#Debrecen#120000#35#2#CONDOMINIUM#0#yes", "REALESTATE#Szeged#abc#50#2#FARM", ""},
+                {"REALESTATE#Budapest#250000#100#4#CONDOMINIUM", "REALESTATE#Miskolc#150000#50#2#FLAT"},
+        });
+        PrintStream originalErr = System.err;
+        PrintStream originalOut = System.out;
+        System.setErr(new PrintStream(new ByteArrayOutputStream(), true));
+        System.setOut(new PrintStream(new ByteArrayOutputStream(), true));
+        try {
+            RealEstateAgent agent = new RealEstateAgent();
+            agent.addProperty(new RealEstate("Eger", 100000, 40, 1, Genre.FARM));  // replaced by the load
+            List<ShardedListingIngest.ShardStats> stats = agent.loadFromDirectory(directory.getPath());
+
+            assertEquals(4, agent.getCollectionSize());
+            assertEquals(3, stats.size());
+            long added = 0;
+            long duplicates = 0;
+            for (ShardedListingIngest.ShardStats shard : stats) {
+                added += shard.getAdded();
+                duplicates += shard.getDuplicates();
+            }
+            assertEquals(4, added);
+            assertEquals(1, duplicates);
+            assertEquals(2, stats.get(1).getLinesRead());
+            assertEquals(1, stats.get(1).getParsed());
+            assertEquals(1, stats.get(1).getRejected());
+            assertEquals(Genre.CONDOMINIUM, agent.query(new PropertyQuery().city("Miskolc")).get(0).getGenre());
+        } finally {
+            System.setErr(originalErr);
+            System.setOut(originalOut);
+        }
+    }
+
+    @Test
+    void testTinyQueuesStillDrainEveryShard(@TempDir File directory) throws Exception {
+        String[][] shards = new String[6][];
+        for (int s = 0; s < shards.length; s++) {
+            shards[s] = new String[500];
+            for (int i = 0; i < 500; i++) {
+                shards[s][i] = "REALESTATE#Budapest#" + (100000 + s * 1000 + i) + "#50#2#CONDOMINIUM";
+            }
+        }
+        writeShards(directory, shards);
+        List<RealEstate> sink = Collections.synchronizedList(new ArrayList<>());
+        File[] files = Objects.requireNonNull(directory.listFiles());
+        List<java.nio.file.Path> paths = new ArrayList<>();
+        for (File file : files) {
+            paths.add(file.toPath());
+        }
+        List<ShardedListingIngest.ShardStats> stats =
+                new ShardedListingIngest(3, 2, 1, 7).load(paths, sink::add, null);
+        assertEquals(3000, sink.size());
+        for (ShardedListingIngest.ShardStats shard : stats) {
+            assertEquals(500, shard.getAdded());
+        }
+    }
+}
+
+// ==========================================================
+// 🧪 OffHeapPropertyStore Tests
+// ==========================================================
+
+class OffHeapPropertyStoreTest {
+    private static final String[] OFF_HEAP_CITIES = {"Budapest", "Debrecen", "Szeged", "Eger"};
+
+    @Test
+    void testMatchesTreeSetOrderingDedupAndQueries() {
+        TreeSet<RealEstate> expected = new TreeSet<>();
+        OffHeapPropertyStore store = new OffHeapPropertyStore();
+        List<RealEstate> listings = randomListings(7, 20000, OFF_HEAP_CITIES);
+        for (int i = 0; i < listings.size(); i++) {
+            RealEstate property = listings.get(i);
+            assertEquals(expected.add(property), store.add(property));
+            if (i % 3 == 0) {
+                assertFalse(store.add(property.withPrice(property.getPrice())));  // equal copy is dropped
+            }
+        }
+        assertEquals(expected.size(), store.size());
+
+        List<String> expectedRows = new ArrayList<>();
+        expected.forEach(property -> expectedRows.add(property.toString()));
+        List<String> actualRows = new ArrayList<>();
+        store.forEach(property -> actualRows.add(property.toString()));
+        assertEquals(expectedRows, actualRows);
+
+        PropertyQuery query = new PropertyQuery().city("debrecen").genre(Genre.CONDOMINIUM)
+                .totalPriceBetween(4_000_000, 6_000_000).limit(25);
+        SortedSetPropertyStore reference = new SortedSetPropertyStore(new TreeSet<>());
+        expected.forEach(reference::add);
+        assertEquals(reference.query(query).toString(), store.query(query).toString());
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertFalse(store.cursor().next());
+    }
+
+    @Test
+    void testReplacedSortOrderIsClosed() {
+        OffHeapPropertyStore store = new OffHeapPropertyStore();
+        int before = OffHeapPropertyStore.openMemoryCount();
+        for (int i = 0; i < 500; i++) {
+            store.add(new RealEstate("Budapest", 100000 + i, 50, 2, Genre.CONDOMINIUM));
+            ListingCursor cursor = store.cursor();
+            assertTrue(cursor.next());
+        }
+        // Dedup table and sort order only; records were open before the loop
+        assertTrue(OffHeapPropertyStore.openMemoryCount() - before <= 2);
+        assertEquals(500, store.size());
+        store.clear();
+    }
+
+    @Test
+    void testCursorReadsRecordsInPlace() {
+        OffHeapPropertyStore store = new OffHeapPropertyStore();
+        store.add(new Panel("Budapest", 180000, 70, 3, Genre.CONDOMINIUM, 4, true));
+        store.add(new RealEstate("Debrecen", 220000, 120, 5, Genre.FAMILYHOUSE));
+
+        ListingCursor cursor = store.cursor();
+        assertTrue(cursor.next());
+        assertTrue(cursor.isPanel());
+        assertTrue(cursor.isInsulated());
+        assertEquals(4, cursor.getFloor());
+        assertEquals("Budapest", cursor.getCity());
+        assertEquals(new Panel("Budapest", 180000, 70, 3, Genre.CONDOMINIUM, 4, true).getTotalPrice(), cursor.getTotalPrice());
+        assertTrue(cursor.next());
+        assertEquals(Genre.FAMILYHOUSE, cursor.getGenre());
+        assertEquals(120, cursor.getSqm());
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    void testAgentReportAndListingAreUnchangedWithOffHeapBackend() throws IOException {
+        File objectReport = File.createTempFile("objectReport", ".txt");
+        File offHeapReport = File.createTempFile("offHeapReport", ".txt");
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream objectOutput = new ByteArrayOutputStream();
+        ByteArrayOutputStream offHeapOutput = new ByteArrayOutputStream();
+        try {
+            RealEstateAgent objectAgent = new RealEstateAgent();
+            randomListings(7, 500, OFF_HEAP_CITIES).forEach(objectAgent::addProperty);
+            System.setOut(new PrintStream(objectOutput, true));
+            objectAgent.generateAnalysisReport(objectReport.getPath());
+            objectAgent.displayAllProperties();
+
+            RealEstateAgent offHeapAgent = new RealEstateAgent(OffHeapPropertyStore::new);
+            randomListings(7, 500, OFF_HEAP_CITIES).forEach(offHeapAgent::addProperty);
+            System.setOut(new PrintStream(offHeapOutput, true));
+            offHeapAgent.generateAnalysisReport(offHeapReport.getPath());
+            offHeapAgent.displayAllProperties();
+        } finally {
+            System.setOut(originalOut);
+        }
+        try {
+            assertEquals(objectOutput.toString().replace(objectReport.getPath(), ""),
+                    offHeapOutput.toString().replace(offHeapReport.getPath(), ""));
+            assertEquals(ColumnarPropertyStoreTest.withoutTimestamp(objectReport),
+                    ColumnarPropertyStoreTest.withoutTimestamp(offHeapReport));
+        } finally {
+            objectReport.delete();
+            offHeapReport.delete();
+        }
+    }
+}
+
+// ==========================================================
+// 🧪 ListingSorter / Bulk Load Tests
+// ==========================================================
+
+class ListingSorterTest {
+
+    // Narrow price and sqm ranges so many listings collide on compareTo
+    private static List<RealEstate> listingsWithDuplicates(int count) {
+        Random random = new Random(5);
+        String[] cities = {"Budapest", "BUDAPEST", "Debrecen", "Szeged", "Eger"};
+        List<RealEstate> listings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String city = cities[random.nextInt(cities.length)];
+            Genre genre = Genre.values()[random.nextInt(Genre.values().length)];
+            double price = 100000 + random.nextInt(20) * 1000;
+            int sqm = 30 + random.nextInt(20);
+            listings.add(i % 4 == 0
+                    ? new Panel(city, price, sqm, 1 + random.nextInt(4), genre, random.nextInt(12), random.nextBoolean())
+                    : new RealEstate(city, price, sqm, 1 + random.nextInt(4), genre));
+        }
+        return listings;
+    }
+
+    private static void assertSameAsTreeSetInsertion(List<RealEstate> input, RealEstate[] sorted) {
+        TreeSet<RealEstate> expected = new TreeSet<>();
+        input.forEach(expected::add);
+        assertEquals(expected.size(), sorted.length);
+        int i = 0;
+        for (RealEstate property : expected) {
+            assertSame(property, sorted[i++]);  // same instance: the first of equal listings wins
+        }
+    }
+
+    @Test
+    void testSortUniqueMatchesTreeSetInsertion() {
+        List<RealEstate> input = listingsWithDuplicates(20000);
+        RealEstate[] sorted = ListingSorter.sortUnique(input);
+        assertTrue(sorted.length < input.size());
+        assertSameAsTreeSetInsertion(input, sorted);
+    }
+
+    @Test
+    void testWideRangesFallBackToCompareTo() {
+        List<RealEstate> input = new ArrayList<>(listingsWithDuplicates(2000));
+        input.add(new RealEstate("Budapest", 1e9, 2, 1, Genre.FAMILYHOUSE));
+        input.add(new RealEstate("Budapest", -1e9, 2, 1, Genre.FAMILYHOUSE));
+        input.add(new RealEstate("Eger", 0, Integer.MAX_VALUE, 1, Genre.FARM));
+        input.add(new RealEstate("Eger", 0, Integer.MIN_VALUE, 1, Genre.FARM));
+        input.add(null);
+        RealEstate[] sorted = ListingSorter.sortUnique(input);
+        input.remove(null);
+        assertSameAsTreeSetInsertion(input, sorted);
+        assertEquals(0, ListingSorter.sortUnique(Collections.emptyList()).length);
+    }
+
+    @Test
+    void testBulkLoadMatchesRepeatedAddProperty() {
+        List<RealEstate> input = listingsWithDuplicates(5000);
+        PropertyQuery query = new PropertyQuery().city("budapest").genre(Genre.CONDOMINIUM);
+        for (Supplier<PropertyStore> backend : Arrays.<Supplier<PropertyStore>>asList(
+                () -> new SortedSetPropertyStore(new ConcurrentSkipListSet<>()),
+                SortedSetPropertyStore::new, ColumnarPropertyStore::new)) {
+            RealEstateAgent added = new RealEstateAgent(backend);
+            input.forEach(added::addProperty);
+            RealEstateAgent bulk = new RealEstateAgent(backend);
+            assertEquals(added.getCollectionSize(), bulk.bulkLoad(input));
+
+            assertEquals(added.getCollectionSize(), bulk.getCollectionSize());
+            assertEquals(new ArrayList<>(added.getRealEstateCollection()).toString(),
+                    new ArrayList<>(bulk.getRealEstateCollection()).toString());
+            assertEquals(added.query(query).toString(), bulk.query(query).toString());
+            assertFalse(bulk.query(query).isEmpty());
+        }
+    }
+}
+
+// ==========================================================
+// 🧪 GroupStatistics / QuantileSketch Tests
+// ==========================================================
+
+class GroupStatisticsTest {
+    private static final String[] GROUP_CITIES = {"Budapest", "BUDAPEST", "Debrecen", "Szeged"};
+
+    private static double exactQuantile(List<Integer> sorted, double q) {
+        return sorted.get((int) Math.floor(q * (sorted.size() - 1)));
+    }
+
+    @Test
+    void testSketchQuantilesWithinRelativeAccuracyAndMergeable() {
+        Random random = new Random(3);
+        QuantileSketch whole = new QuantileSketch();
+        QuantileSketch left = new QuantileSketch();
+        QuantileSketch right = new QuantileSketch();
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            int value = 1 + (int) Math.abs(random.nextGaussian() * 20_000_000);
+            values.add(value);
+            whole.add(value);
+            (i % 2 == 0 ? left : right).add(value);
+        }
+        Collections.sort(values);
+        left.merge(right);
+        for (double q : new double[]{0, 0.5, 0.9, 0.99, 1}) {
+            double exact = exactQuantile(values, q);
+            assertEquals(exact, whole.quantile(q), exact * 0.01, "q=" + q);
+            assertEquals(whole.quantile(q), left.quantile(q));
+        }
+
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(1000);
+        sketch.add(5000);
+        sketch.remove(5000);
+        sketch.remove(7);  // never added
+        assertEquals(1, sketch.count());
+        assertEquals(1000, sketch.quantile(0.99), 10);
+        assertTrue(Double.isNaN(new QuantileSketch().quantile(0.5)));
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(new QuantileSketch(0.05)));
+    }
+
+    @Test
+    void testTopKMatchesSortedCollectionAcrossRepricing() {
+        RealEstateAgent agent = new RealEstateAgent();
+        List<RealEstate> listings = randomListings(13, 3000, GROUP_CITIES);
+        listings.forEach(agent::addProperty);
+
+        // Discount the current top listings so heaps have to be refilled from the store
+        for (RealEstate property : agent.topByTotalPrice("budapest", Genre.CONDOMINIUM, 5)) {
+            property.makeDiscount(90);
+        }
+        agent.topByTotalPrice(null, Genre.FARM, 3).get(0).makeDiscount(50);
+
+        for (String city : new String[]{"Budapest", "debrecen", null}) {
+            for (Genre genre : new Genre[]{Genre.CONDOMINIUM, Genre.FARM, null}) {
+                List<RealEstate> expected = new ArrayList<>();
+                for (RealEstate property : agent.getRealEstateCollection()) {
+                    if ((city == null || PropertyQuery.cityKey(city).equals(PropertyQuery.cityKey(property.getCity())))
+                            && (genre == null || property.getGenre() == genre)) {
+                        expected.add(0, property);
+                    }
+                }
+                assertEquals(expected.subList(0, 10), agent.topByTotalPrice(city, genre, 10), city + "/" + genre);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> agent.topByTotalPrice(null, null, 11));
+    }
+
+    @Test
+    void testDistributionsPerCityAndGenre() {
+        RealEstateAgent agent = new RealEstateAgent();
+        randomListings(13, 5000, GROUP_CITIES).forEach(agent::addProperty);
+        List<Integer> totals = new ArrayList<>();
+        List<Integer> roomPrices = new ArrayList<>();
+        for (RealEstate property : agent.getRealEstateCollection()) {
+            if (PropertyQuery.cityKey(property.getCity()).equals(PropertyQuery.cityKey("Debrecen"))
+                    && property.getGenre() == Genre.FAMILYHOUSE) {
+                totals.add(property.getTotalPrice());
+                if (property instanceof Panel) {
+                    roomPrices.add(((Panel) property).roomPrice());
+                }
+            }
+        }
+        Collections.sort(totals);
+        Collections.sort(roomPrices);
+
+        QuantileSketch total = agent.totalPriceDistribution("Debrecen", Genre.FAMILYHOUSE);
+        QuantileSketch room = agent.roomPriceDistribution("Debrecen", Genre.FAMILYHOUSE);
+        assertEquals(totals.size(), total.count());
+        assertEquals(roomPrices.size(), room.count());
+        for (double q : new double[]{0.5, 0.9, 0.99}) {
+            assertEquals(exactQuantile(totals, q), total.quantile(q), exactQuantile(totals, q) * 0.01);
+            assertEquals(exactQuantile(roomPrices, q), room.quantile(q), exactQuantile(roomPrices, q) * 0.01);
+        }
+        assertEquals(agent.getCollectionSize(), agent.totalPriceDistribution(null, null).count());
+    }
+}
+
+// ==========================================================
+// 🧪 GroupByAggregator Tests
+// ==========================================================
+
+class GroupByAggregatorTest {
+    private static final String[] GROUPBY_CITIES = {"Budapest", "BUDAPEST", "Debrecen", "Szeged", "Eger"};
+    private static final GroupByAggregator.Grouping CITY_GENRE = GroupByAggregator.Grouping.by(
+            GroupByAggregator.Dimension.CITY, GroupByAggregator.Dimension.GENRE);
+    private static final GroupByAggregator.Grouping INSULATED_FLOORS = GroupByAggregator.Grouping.by(
+            GroupByAggregator.Dimension.INSULATED, GroupByAggregator.Dimension.FLOOR_BAND).floorBandWidth(4);
+
+    @Test
+    void testCityGenreBreakdownMatchesStreams() {
+        RealEstate[] listings = randomListings(17, 20000, GROUPBY_CITIES).toArray(new RealEstate[0]);
+        GroupByAggregator.Result result = new GroupByAggregator().aggregate(listings, CITY_GENRE).get(0);
+
+        assertEquals(5 * Genre.values().length - Genre.values().length, result.getGroups().size());  // 4 cities
+        for (String city : new String[]{"budapest", "debrecen"}) {
+            for (Genre genre : Genre.values()) {
+                DoubleSummaryStatistics prices = Arrays.stream(listings)
+                        .filter(p -> p.getCity().equalsIgnoreCase(city) && p.getGenre() == genre)
+                        .mapToDouble(RealEstate::getPrice).summaryStatistics();
+                IntSummaryStatistics totals = Arrays.stream(listings)
+                        .filter(p -> p.getCity().equalsIgnoreCase(city) && p.getGenre() == genre)
+                        .mapToInt(RealEstate::getTotalPrice).summaryStatistics();
+                GroupByAggregator.Group group = result.get(city, genre);
+                assertEquals(prices.getCount(), group.getCount());
+                assertEquals(prices.getAverage(), group.get(GroupByAggregator.Measure.PRICE).getAverage(), 1e-6);
+                assertEquals(prices.getMin(), group.get(GroupByAggregator.Measure.PRICE).getMin());
+                assertEquals(totals.getSum(), group.get(GroupByAggregator.Measure.TOTAL_PRICE).getSum());
+                assertEquals(totals.getMax(), group.get(GroupByAggregator.Measure.TOTAL_PRICE).getMax());
+            }
+        }
+    }
+
+    @Test
+    void testPanelDimensionsOnlyGroupPanels() {
+        RealEstate[] listings = randomListings(17, 5000, GROUPBY_CITIES).toArray(new RealEstate[0]);
+        GroupByAggregator.Result result = new GroupByAggregator().aggregate(listings, INSULATED_FLOORS).get(0);
+
+        long panels = Arrays.stream(listings).filter(p -> p instanceof Panel).count();
+        assertEquals(panels, result.getGroups().values().stream().mapToLong(GroupByAggregator.Group::getCount).sum());
+        assertEquals(Arrays.asList(Arrays.asList(false, 0), Arrays.asList(false, 4), Arrays.asList(false, 8),
+                Arrays.asList(true, 0), Arrays.asList(true, 4), Arrays.asList(true, 8)),
+                new ArrayList<>(result.getGroups().keySet()));
+
+        IntSummaryStatistics roomPrices = Arrays.stream(listings)
+                .filter(p -> p instanceof Panel && ((Panel) p).isInsulated() && ((Panel) p).getFloor() >= 4
+                        && ((Panel) p).getFloor() < 8)
+                .mapToInt(p -> ((Panel) p).roomPrice()).summaryStatistics();
+        GroupByAggregator.Stats stats = result.get(true, 4).get(GroupByAggregator.Measure.ROOM_PRICE);
+        assertEquals(roomPrices.getCount(), stats.getCount());
+        assertEquals(roomPrices.getMin(), stats.getMin());
+        assertEquals(roomPrices.getAverage(), stats.getAverage(), 1e-6);
+    }
+
+    @Test
+    void testParallelMatchesSequentialExactly() {
+        RealEstate[] listings = randomListings(17, 30000, GROUPBY_CITIES).toArray(new RealEstate[0]);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<GroupByAggregator.Result> sequential = new GroupByAggregator()
+                    .aggregate(listings, CITY_GENRE, INSULATED_FLOORS, GroupByAggregator.Grouping.by());
+            List<GroupByAggregator.Result> parallel = new GroupByAggregator(pool, 1000)
+                    .aggregate(listings, CITY_GENRE, INSULATED_FLOORS, GroupByAggregator.Grouping.by());
+            for (int i = 0; i < sequential.size(); i++) {
+                assertEquals(sequential.get(i).getGroups().keySet(), parallel.get(i).getGroups().keySet());
+                for (List<Object> key : sequential.get(i).getGroups().keySet()) {
+                    for (GroupByAggregator.Measure measure : GroupByAggregator.Measure.values()) {
+                        assertEquals(sequential.get(i).getGroups().get(key).get(measure).toString(),
+                                parallel.get(i).getGroups().get(key).get(measure).toString());
+                    }
+                }
+            }
+            assertEquals(listings.length, parallel.get(2).get().getCount());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
+
+// ==========================================================
+// 🧪 ListingQueryService Tests
+// ==========================================================
+
+class ListingQueryServiceTest {
+    private RealEstateAgent agent;
+    private ListingQueryService service;
+    private final java.net.http.HttpClient client = java.net.http.HttpClient.newHttpClient();
+
+    @BeforeEach
+    void start() throws IOException {
+        agent = new RealEstateAgent();
+        agent.addProperty(new RealEstate("Budapest", 500000, 120, 4, Genre.FAMILYHOUSE));
+        agent.addProperty(new RealEstate("Debrecen", 300000, 80, 3, Genre.CONDOMINIUM));
+        agent.addProperty(new Panel("Budapest", 400000, 60, 2, Genre.CONDOMINIUM, 1, true));
+        service = agent.serve(0);
+    }
+
+    @AfterEach
+    void stop() {
+        service.close();
+    }
+
+    private java.net.http.HttpResponse<String> get(String pathAndQuery) throws Exception {
+        return client.send(java.net.http.HttpRequest.newBuilder(
+                java.net.URI.create("http://localhost:" + service.getPort() + pathAndQuery)).build(),
+                java.net.http.HttpResponse.BodyHandlers.ofString());
+    }
+
+    private java.net.http.HttpResponse<String> post(String body) throws Exception {
+        return client.send(java.net.http.HttpRequest.newBuilder(
+                java.net.URI.create("http://localhost:" + service.getPort() + "/listings"))
+                .POST(java.net.http.HttpRequest.BodyPublishers.ofString(body)).build(),
+                java.net.http.HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testReportIsCachedUntilTheCollectionChanges() throws Exception {
+        java.net.http.HttpResponse<String> first = get("/report");
+        assertEquals(200, first.statusCode());
+        assertTrue(first.body().startsWith("{\"count\":3,"), first.body());
+        assertTrue(first.body().contains("\"mostExpensiveBudapest\":{\"type\":\"RealEstate\",\"city\":\"Budapest\""));
+        assertEquals(first.body(), get("/report").body());
+        assertEquals(1, service.getCacheHits());
+
+        java.net.http.HttpResponse<String> added = post("REALESTATE#Szeged#200000#50#2#FARM\n"
+                + "REALESTATE#Szeged#200000#50#2#FARM\nnot a listing\n");
+        assertEquals("{\"added\":1,\"duplicates\":1,\"rejected\":1}", added.body());
+        java.net.http.HttpResponse<String> second = get("/report");
+        assertTrue(second.body().startsWith("{\"count\":4,"), second.body());
+        assertTrue(Long.parseLong(second.headers().firstValue("X-Collection-Version").orElse("0"))
+                > Long.parseLong(first.headers().firstValue("X-Collection-Version").orElse("0")));
+        assertEquals(1, service.getCacheHits());
+    }
+
+    @Test
+    void testListingsQueryAndErrors() throws Exception {
+        java.net.http.HttpResponse<String> condos = get("/listings?city=BUDAPEST&genre=condominium&limit=5");
+        assertEquals(200, condos.statusCode());
+        assertTrue(condos.body().startsWith("[{\"type\":\"Panel\",\"city\":\"Budapest\",\"genre\":\"CONDOMINIUM\""),
+                condos.body());
+        assertTrue(condos.body().contains("\"floor\":1,\"insulated\":true"));
+        assertEquals("[]", get("/listings?maxTotalPrice=1").body());
+
+        assertEquals(400, get("/listings?genre=CASTLE").statusCode());
+        assertEquals(400, get("/listings?limit=abc").statusCode());
+        assertEquals(404, get("/nothing").statusCode());
+        assertEquals(405, client.send(java.net.http.HttpRequest.newBuilder(
+                java.net.URI.create("http://localhost:" + service.getPort() + "/report"))
+                .POST(java.net.http.HttpRequest.BodyPublishers.noBody()).build(),
+                java.net.http.HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    void testVersionKeepsGrowingWhenTheCollectionIsReplaced() {
+        long before = agent.getVersion();
+        agent.bulkLoad(Collections.singletonList(new RealEstate("Eger", 100000, 40, 1, Genre.FARM)));
+        assertTrue(agent.getVersion() > before);
+    }
+}
+
+// ==========================================================
+// 🧪 VersionedCache / Report Cache Tests
+// ==========================================================
+
+class VersionedCacheTest {
+    @Test
+    void testEntriesMissOnNewVersionAgeAndLimits() {
+        long[] now = {0};
+        VersionedCache<String, String> cache = new VersionedCache<>(2, 10, 1000, String::length, () -> now[0]);
+        cache.put("a", 1, "aaaa");
+        assertEquals("aaaa", cache.get("a", 1));
+        assertNull(cache.get("a", 2));
+        assertEquals(0, cache.size());
+
+        cache.put("a", 2, "aaaa");
+        now[0] = 1001 * 1_000_000L;
+        assertNull(cache.get("a", 2));
+
+        cache.put("a", 3, "aaaa");
+        cache.put("b", 3, "bbbb");
+        cache.get("a", 3);
+        cache.put("c", 3, "cccc");           // 12 > 10: b is least recently used
+        assertNull(cache.get("b", 3));
+        assertEquals("aaaa", cache.get("a", 3));
+        cache.put("d", 3, "dddddddddddd");  // heavier than the whole cache
+        assertNull(cache.get("d", 3));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testUnchangedCollectionReplaysReportWithoutRewritingTheFile() throws Exception {
+        RealEstateAgent agent = new RealEstateAgent();
+        agent.addProperty(new RealEstate("Budapest", 250000, 100, 4, Genre.CONDOMINIUM));
+        agent.addProperty(new RealEstate("Szeged", 150000, 60, 2, Genre.CONDOMINIUM));
+        File report = File.createTempFile("report", ".txt");
+        java.nio.file.Path path = report.toPath();
+        PrintStream originalOut = System.out;
+        try {
+            ByteArrayOutputStream first = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(first, true));
+            agent.generateAnalysisReport(report.getPath());
+            String written = new String(java.nio.file.Files.readAllBytes(path));
+            java.nio.file.attribute.FileTime modified = java.nio.file.Files.getLastModifiedTime(path);
+
+            Thread.sleep(20);
+            ByteArrayOutputStream second = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(second, true));
+            agent.generateAnalysisReport(report.getPath());
+            assertEquals(first.toString(), second.toString());
+            assertEquals(modified, java.nio.file.Files.getLastModifiedTime(path));
+
+            // Changed or deleted behind the agent's back: written again from the cache
+            java.nio.file.Files.write(path, "tampered".getBytes());
+            agent.generateAnalysisReport(report.getPath());
+            assertEquals(written, new String(java.nio.file.Files.readAllBytes(path)));
+            java.nio.file.Files.delete(path);
+            agent.generateAnalysisReport(report.getPath());
+            assertEquals(written, new String(java.nio.file.Files.readAllBytes(path)));
+
+            agent.addProperty(new RealEstate("Eger", 100000, 40, 1, Genre.FARM));
+            agent.generateAnalysisReport(report.getPath());
+            String changed = new String(java.nio.file.Files.readAllBytes(path));
+            assertNotEquals(written, changed);
+
+            // Larger than the cache: rendered every time, same file
+            agent.configureReportCache(8, 10, 60_000);
+            java.nio.file.Files.delete(path);
+            agent.generateAnalysisReport(report.getPath());
+            agent.generateAnalysisReport(report.getPath());
+            assertEquals(changed.substring(0, changed.indexOf("Generated on")),
+                    new String(java.nio.file.Files.readAllBytes(path)).substring(0, changed.indexOf("Generated on")));
+        } finally {
+            System.setOut(originalOut);
+            report.delete();
+        }
+    }
+
+    @Test
+    void testReportMetricsAreRecomputedAfterAPriceChange() {
+        RealEstateAgent agent = new RealEstateAgent();
+        RealEstate flat = new RealEstate("Budapest", 250000, 100, 4, Genre.CONDOMINIUM);
+        agent.addProperty(flat);
+        ReportAggregator.Metrics first = agent.reportMetrics();
+        assertSame(first, agent.reportMetrics());
+
+        flat.setPrice(300000);
+        ReportAggregator.Metrics repriced = agent.reportMetrics();
+        assertNotSame(first, repriced);
+        assertEquals(flat.getTotalPrice(), repriced.totalPrice);
+    }
+
+    @Test
+    void testReplacedCollectionNeverServesItsCachedMetrics() {
+        RealEstateAgent agent = new RealEstateAgent();
+        RealEstate old = new RealEstate("Budapest", 250000, 100, 4, Genre.CONDOMINIUM);
+        agent.addProperty(old);
+        ReportAggregator.Metrics before = agent.reportMetrics();
+
+        RealEstate replacement = new RealEstate("Szeged", 150000, 60, 2, Genre.CONDOMINIUM);
+        agent.bulkLoad(Collections.singletonList(replacement));
+        old.setPrice(300000);  // late change on the replaced collection
+        ReportAggregator.Metrics after = agent.reportMetrics();
+        assertNotSame(before, after);
+        assertEquals(replacement.getTotalPrice(), after.totalPrice);
+        assertSame(after, agent.reportMetrics());
+    }
+}
+
+// ==========================================================
+// 🧪 ListingFilter / ListingFileIndex Tests
+// ==========================================================
+
+class ListingFileScanTest {
+    private static final String[] LINES = {
+            "REALESTATE#Budapest#250000#100#4#CONDOMINIUM",
+            "  PANEL # BUDAPEST # 120000 # 35 # 2 # condominium # 0 # YES  ",
+            "PANEL#Budapest#180000#70#3#CASTLE#4#no",
+            "REALESTATE#Szeged#abc#50#2#FARM",
+            "REALESTATE#Pécs#150000#50#2#FAMILYHOUSE",
+            "PANEL#PÉCS#90000#45#2#FLAT#2#yes",
+            "REALESTATE#Kisvárda#150000#50#2",
+            "PANEL#Debrecen#120000#75#3#CONDOMINIUM#10",
+    };
+
+    private static File write(List<String> lines) throws IOException {
+        File file = File.createTempFile("listings", ".txt");
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            for (String line : lines) {
+                writer.print(line + "\n");
+            }
+        }
+        return file;
+    }
+
+    private static List<String> strings(List<RealEstate> listings) {
+        List<String> result = new ArrayList<>();
+        for (RealEstate property : listings) {
+            result.add(property.toString());
+        }
+        return result;
+    }
+
+    @Test
+    void testScanMatchesLoadThenFilter() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            for (String line : LINES) {
+                lines.add(line.replace("#50#", "#" + (50 + i) + "#"));
+            }
+        }
+        File file = write(lines);
+        ChunkedListingLoader loader =
+                new ChunkedListingLoader(ForkJoinPool.commonPool(), 64, java.nio.charset.StandardCharsets.UTF_8);
+        try {
+            List<RealEstate> all = loader.load(file.toPath()).properties;
+            ListingFilter[] filters = {
+                    new ListingFilter().cities("budapest"),
+                    new ListingFilter().panels(true).genres(Genre.CONDOMINIUM),
+                    new ListingFilter().cities("pécs", "Debrecen").panels(false),
+                    new ListingFilter().genres(Genre.FAMILYHOUSE, Genre.FARM).totalPriceBetween(0, 200000),
+            };
+            for (ListingFilter filter : filters) {
+                List<RealEstate> expected = new ArrayList<>();
+                for (RealEstate property : all) {
+                    if (filter.matches(property)) {
+                        expected.add(property);
+                    }
+                }
+                assertEquals(strings(expected), strings(loader.scan(file.toPath(), filter).properties), filter.toString());
+            }
+
+            // Lines skipped on their leading fields are never parsed, so the Szeged line with a
+            // bad price is not reported; lines too short to check still are
+            ChunkedListingLoader.ScanResult budapest = loader.scan(file.toPath(), new ListingFilter().cities("Budapest"));
+            assertFalse(budapest.reasons.contains(AgentMetrics.RejectReason.BAD_NUMBER));
+            assertEquals(20, Collections.frequency(budapest.reasons, AgentMetrics.RejectReason.BAD_GENRE));
+            assertEquals(20, Collections.frequency(budapest.reasons, AgentMetrics.RejectReason.NOT_ENOUGH_PARTS));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testSidecarIndexSkipsRegionsUntilTheFileChanges() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String city : new String[]{"Budapest", "Debrecen", "Szeged", "Eger"}) {
+            for (int i = 0; i < 200; i++) {
+                lines.add((i % 3 == 0 ? "PANEL#" : "REALESTATE#") + city + "#" + (100000 + i) + "#50#2#"
+                        + Genre.values()[i % 3] + "#1#yes");
+            }
+        }
+        File file = write(lines);
+        java.nio.file.Path path = file.toPath();
+        java.nio.file.Path sidecar = ListingFileIndex.sidecarOf(path);
+        ChunkedListingLoader loader =
+                new ChunkedListingLoader(ForkJoinPool.commonPool(), 4096, java.nio.charset.StandardCharsets.UTF_8);
+        try {
+            ListingFilter filter = new ListingFilter().cities("szeged").panels(true);
+            ChunkedListingLoader.ScanResult unindexed = loader.scan(path, filter);
+            assertFalse(unindexed.indexed);
+            assertEquals(67, unindexed.properties.size());
+
+            loader.index(path, 512).write(sidecar);
+            ChunkedListingLoader.ScanResult indexed = loader.scan(path, filter);
+            assertTrue(indexed.indexed);
+            assertEquals(strings(unindexed.properties), strings(indexed.properties));
+            assertTrue(indexed.bytesScanned < file.length() / 3, indexed.bytesScanned + " of " + file.length());
+            assertTrue(loader.scan(path, new ListingFilter().cities("Miskolc")).bytesScanned == 0);
+
+            java.nio.file.Files.write(path, "PANEL#Szeged#1#1#1#FARM#1#no\n".getBytes(),
+                    java.nio.file.StandardOpenOption.APPEND);
+            ChunkedListingLoader.ScanResult stale = loader.scan(path, filter);
+            assertFalse(stale.indexed);
+            assertEquals(68, stale.properties.size());
+        } finally {
+            java.nio.file.Files.deleteIfExists(sidecar);
+            file.delete();
+        }
+    }
+}
+
+// ==========================================================
+// 🧪 ComparablesIndex Tests
+// ==========================================================
+
+class ComparablesIndexTest {
+    // Distances of the k nearest by brute force, for comparing regardless of ties
+    private static List<Double> bruteForce(Collection<RealEstate> listings, RealEstate reference, int k) {
+        List<Double> distances = new ArrayList<>();
+        for (RealEstate property : listings) {
+            if (property != reference && property.getGenre() == reference.getGenre()) {
+                distances.add(ComparablesIndex.distance(reference, property));
+            }
+        }
+        Collections.sort(distances);
+        return distances.subList(0, Math.min(k, distances.size()));
+    }
+
+    private static List<Double> distances(List<RealEstate> nearest, RealEstate reference) {
+        List<Double> distances = new ArrayList<>();
+        for (RealEstate property : nearest) {
+            assertEquals(reference.getGenre(), property.getGenre());
+            distances.add(ComparablesIndex.distance(reference, property));
+        }
+        return distances;
+    }
+
+    @Test
+    void testNearestMatchesBruteForceThroughAddsAndRemovals() {
+        Random random = new Random(22);
+        List<RealEstate> listings = randomListings(22, 3000, "Budapest", "Debrecen", "Szeged");
+        listings.sort(null);  // sorted insertion is the worst case for a naive k-d tree
+        ComparablesIndex index = new ComparablesIndex();
+        index.addAll(listings.subList(0, 1000).toArray(new RealEstate[0]));
+        for (RealEstate property : listings.subList(1000, listings.size())) {
+            index.add(property);
+        }
+        Set<RealEstate> live = Collections.newSetFromMap(new IdentityHashMap<>());
+        live.addAll(listings);
+        for (int i = 0; i < listings.size(); i += 3) {
+            index.remove(listings.get(i));
+            live.remove(listings.get(i));
+        }
+        assertEquals(live.size(), index.size());
+
+        for (int q = 0; q < 50; q++) {
+            RealEstate reference = listings.get(random.nextInt(listings.size()));
+            List<RealEstate> nearest = index.nearest(reference, 20);
+            assertFalse(nearest.stream().anyMatch(property -> property == reference));
+            assertTrue(live.containsAll(nearest));
+            assertEquals(bruteForce(live, reference, 20), distances(nearest, reference));
+        }
+        assertTrue(index.nearest(new RealEstate("Eger", 1, 1, 1, null), 5).isEmpty());
+    }
+
+    @Test
+    void testAgentKeepsComparablesInStep() {
+        RealEstateAgent agent = new RealEstateAgent();
+        RealEstate reference = new RealEstate("Budapest", 200000, 60, 2, Genre.CONDOMINIUM);
+        RealEstate similar = new RealEstate("Szeged", 210000, 62, 2, Genre.CONDOMINIUM);
+        RealEstate other = new RealEstate("Szeged", 90000, 150, 5, Genre.CONDOMINIUM);
+        agent.addProperty(reference);
+        agent.addProperty(similar);
+        agent.addProperty(new RealEstate("Budapest", 200000, 60, 2, Genre.FARM));
+        assertEquals(Collections.singletonList(similar), agent.findComparables(reference, 5));
+
+        agent.addProperty(other);
+        assertEquals(Arrays.asList(similar, other), agent.findComparables(reference, 5));
+        similar.setPrice(20000);  // now far cheaper per sqm than the reference
+        assertEquals(Arrays.asList(other, similar), agent.findComparables(reference, 5));
+
+        agent.clear();
+        assertTrue(agent.findComparables(reference, 5).isEmpty());
+    }
+}
+
+// ==========================================================
+// 🧪 EqualPriceGroups Tests
+// ==========================================================
+
+class EqualPriceGroupsTest {
+    @Test
+    void testGroupsMatchPairwiseComparison() {
+        Random random = new Random(23);
+        List<RealEstate> listings = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            // Coarse prices so that many listings share a total price
+            listings.add(new Panel(random.nextBoolean() ? "Budapest" : "Eger", 1000 * (1 + random.nextInt(50)),
+                    10 * (1 + random.nextInt(10)), 2, Genre.CONDOMINIUM, random.nextInt(5), random.nextBoolean()));
+        }
+        EqualPriceGroups result = EqualPriceGroups.of(listings.toArray(new RealEstate[0]), Collections.emptyList(), 0);
+
+        Map<Integer, Integer> expected = new TreeMap<>();
+        for (int i = 0; i < listings.size(); i++) {
+            int same = 0;
+            for (int j = 0; j < listings.size(); j++) {
+                if (((Panel) listings.get(i)).hasSameAmount(listings.get(j))) {
+                    same++;
+                }
+            }
+            if (same >= 2) {
+                expected.put(listings.get(i).getTotalPrice(), same);
+            }
+        }
+        Map<Integer, Integer> actual = new LinkedHashMap<>();
+        for (EqualPriceGroups.Group group : result.getGroups()) {
+            for (RealEstate property : group.getStored()) {
+                assertEquals(group.getTotalPrice(), property.getTotalPrice());
+            }
+            actual.put(group.getTotalPrice(), group.size());
+        }
+        assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(actual.entrySet()));  // cheapest first
+    }
+
+    @Test
+    void testDroppedListingsAreCountedAndGrouped() {
+        RealEstateAgent agent = new RealEstateAgent();
+        RealEstate kept = new RealEstate("Eger", 100000, 50, 2, Genre.FARM);
+        RealEstate duplicate = new RealEstate("Eger", 100000, 50, 3, Genre.CONDOMINIUM);
+        agent.bulkLoad(Arrays.asList(kept, duplicate, new RealEstate("Eger", 200000, 50, 2, Genre.FARM)));
+        assertEquals(2, agent.getCollectionSize());
+        assertEquals(1, agent.getDroppedCount());
+
+        RealEstate again = new RealEstate("Eger", 100000, 50, 1, Genre.FAMILYHOUSE);
+        agent.addProperty(again);
+        RealEstate repriced = new RealEstate("Eger", 150000, 50, 2, Genre.FARM);
+        agent.addProperty(repriced);
+        repriced.setPrice(100000);  // now equal to kept, so the collection drops it
+        assertEquals(3, agent.getDroppedCount());
+
+        EqualPriceGroups groups = agent.findEqualPriceGroups();
+        assertEquals(3, groups.getDroppedCount());
+        assertEquals(1, groups.getGroups().size());
+        EqualPriceGroups.Group group = groups.getGroups().get(0);
+        assertEquals(kept.getTotalPrice(), group.getTotalPrice());
+        assertEquals(Collections.singletonList(kept), group.getStored());
+        assertEquals(Arrays.asList(duplicate, again, repriced), group.getDropped());
+
+        agent.clear();
+        assertEquals(0, agent.getDroppedCount());
+        assertTrue(agent.findEqualPriceGroups().getGroups().isEmpty());
+    }
+}
+
+// ============================================================================
+// 🧪 ExternalListingSorter Tests
+// ============================================================================
+
+class ExternalListingSorterTest {
+    private static File write(List<String> lines) throws IOException {
+        File file = File.createTempFile("listings", ".txt");
+        try (PrintWriter writer = new PrintWriter(file)) {
+            for (String line : lines) {
+                writer.print(line + "\n");
+            }
+        }
+        return file;
+    }
+
+    private static String displayed(RealEstateAgent agent) {
+        PrintStream original = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true));
+        try {
+            agent.displayAllProperties();
+        } finally {
+            System.setOut(original);
+        }
+        return captured.toString();
+    }
+
+    @Test
+    void testSortedExportMatchesLoadedCollection() throws IOException {
+        Random random = new Random(24);
+        String[] cities = {"Budapest", "Eger", "Debrecen"};
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            // Coarse values so that equal listings fall into different runs
+            String city = cities[random.nextInt(cities.length)];
+            int price = 1000 * (1 + random.nextInt(20));
+            int sqm = 10 * (1 + random.nextInt(5));
+            lines.add(random.nextBoolean()
+                    ? "REALESTATE#" + city + "#" + price + "#" + sqm + "#" + i + "#FARM"
+                    : "PANEL#" + city + "#" + price + "#" + sqm + "#2#CONDOMINIUM#" + (i % 11) + "#" + (i % 3 == 0 ? "yes" : "no"));
+        }
+        lines.add("REALESTATE#Eger#oops#50#2#FARM");
+        File input = write(lines);
+        File output = File.createTempFile("sorted", ".txt");
+        java.nio.file.Path runs = java.nio.file.Files.createTempDirectory("runs");
+
+        RealEstateAgent agent = new RealEstateAgent();
+        PrintStream originalOut = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream(), true));
+        long written;
+        try {
+            // 72 runs of 7 merged 3 at a time: several merge passes
+            written = agent.exportSorted(input.getPath(), output.getPath(), new ExternalListingSorter(7, 3, runs));
+            agent.loadFromFile(input.getPath());
+        } finally {
+            System.setOut(originalOut);
+        }
+
+        assertEquals(agent.getCollectionSize(), written);
+        assertEquals(displayed(agent), new String(java.nio.file.Files.readAllBytes(output.toPath())));
+        try (java.util.stream.Stream<java.nio.file.Path> left = java.nio.file.Files.list(runs)) {
+            assertEquals(0, left.count());  // run files deleted
+        }
+        input.delete();
+        output.delete();
+        runs.toFile().delete();
+    }
+
+    @Test
+    void testSingleRunAndDroppedCount() throws IOException {
+        File input = write(Arrays.asList(
+                "REALESTATE#Eger#200000#50#2#FARM",
+                "PANEL#Eger#50000#50#2#CONDOMINIUM#3#yes",
+                "REALESTATE#Eger#200000#50#4#FAMILYHOUSE"));  // equal to the first, dropped
+        try (ExternalListingSorter.Sorted sorted = new ExternalListingSorter().sort(input.toPath(), null)) {
+            assertTrue(sorted.next());
+            assertTrue(sorted.isPanel());
+            assertEquals(3, sorted.getFloor());
+            assertTrue(sorted.next());
+            assertEquals(Genre.FARM, sorted.getGenre());
+            assertFalse(sorted.next());
+            assertEquals(1, sorted.getDroppedCount());
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> new ExternalListingSorter(0, 2, input.toPath().getParent()));
+        input.delete();
+    }
+}
+
+// ============================================================================
+// 🧪 ListingDiff Tests
+// ============================================================================
+
+class ListingDiffTest {
+    private static File write(String... lines) throws IOException {
+        File file = File.createTempFile("listings", ".txt");
+        try (PrintWriter writer = new PrintWriter(file)) {
+            for (String line : lines) {
+                writer.print(line + "\n");
+            }
+        }
+        return file;
+    }
+
+    @Test
+    void testAddedRemovedAndRepriced() throws IOException {
+        File before = write(
+                "REALESTATE#Eger#100000#50#2#FARM",
+                "PANEL#Eger#90000#40#2#CONDOMINIUM#3#yes",
+                "REALESTATE#Szeged#120000#60#3#FAMILYHOUSE",
+                "REALESTATE#Szeged#120000#60#3#FAMILYHOUSE",  // same listing twice
+                "REALESTATE#Pécs#80000#45#2#FARM");
+        File after = write(
+                "REALESTATE#Szeged#120000#60#3#FAMILYHOUSE",
+                "PANEL#Eger#95000#40#2#CONDOMINIUM#3#yes",
+                "REALESTATE#Debrecen#70000#55#2#FARM",
+                "REALESTATE#Eger#100000#50#2#FARM",
+                "REALESTATE#Pécs#80000#45#2#FARM#");
+        List<ListingDiff.Difference> differences = new ArrayList<>();
+        // One listing per run, merged two at a time: every path through the sorter
+        ListingDiff diff = new ListingDiff(new ExternalListingSorter(1, 2, before.toPath().getParent()));
+        ListingDiff.Summary summary = diff.diff(before.toPath(), after.toPath(), null, differences::add);
+
+        assertEquals(1, summary.getAdded());
+        assertEquals(1, summary.getRemoved());
+        assertEquals(1, summary.getChanged());
+        assertEquals(3, summary.getUnchanged());
+        Map<ListingDiff.Change, ListingDiff.Difference> byChange = new EnumMap<>(ListingDiff.Change.class);
+        for (ListingDiff.Difference difference : differences) {
+            byChange.put(difference.getChange(), difference);
+        }
+        assertEquals("Debrecen", byChange.get(ListingDiff.Change.ADDED).getListing().getCity());
+        assertEquals(-1, byChange.get(ListingDiff.Change.ADDED).getOldTotalPrice());
+        assertEquals("Szeged", byChange.get(ListingDiff.Change.REMOVED).getListing().getCity());
+        ListingDiff.Difference repriced = byChange.get(ListingDiff.Change.CHANGED);
+        assertEquals(new Panel("Eger", 90000, 40, 2, Genre.CONDOMINIUM, 3, true).getTotalPrice(), repriced.getOldTotalPrice());
+        assertEquals(new Panel("Eger", 95000, 40, 2, Genre.CONDOMINIUM, 3, true).getTotalPrice(), repriced.getNewTotalPrice());
+        before.delete();
+        after.delete();
+    }
+
+    @Test
+    void testAgentWritesDifferences() throws IOException {
+        File before = write("REALESTATE#Eger#100000#50#2#FARM", "REALESTATE#Gyor#50000#30#1#CONDOMINIUM");
+        File after = write("REALESTATE#Eger#110000#50#2#FARM", "REALESTATE#Sopron#60000#30#1#CONDOMINIUM");
+        File output = File.createTempFile("diff", ".txt");
+        RealEstateAgent agent = new RealEstateAgent();
+        PrintStream originalOut = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream(), true));
+        ListingDiff.Summary summary;
+        try {
+            summary = agent.diffFiles(before.getPath(), after.getPath(), output.getPath());
+            assertNull(agent.diffFiles(before.getPath() + ".missing", after.getPath(), output.getPath()));
+        } finally {
+            System.setOut(originalOut);
+        }
+        assertEquals(1, summary.getChanged());
+
+        List<String> lines = java.nio.file.Files.readAllLines(output.toPath(), java.nio.charset.Charset.defaultCharset());
+        assertEquals(3, lines.size());
+        assertTrue(lines.contains("- " + new RealEstate("Gyor", 50000, 30, 1, Genre.CONDOMINIUM)));
+        assertTrue(lines.contains("+ " + new RealEstate("Sopron", 60000, 30, 1, Genre.CONDOMINIUM)));
+        RealEstate repriced = new RealEstate("Eger", 110000, 50, 2, Genre.FARM);
+        assertTrue(lines.contains("~ " + repriced + " (total price: "
+                + new RealEstate("Eger", 100000, 50, 2, Genre.FARM).getTotalPrice() + " -> " + repriced.getTotalPrice() + ")"));
+        before.delete();
+        after.delete();
+        output.delete();
     }
 }